@@ -13,7 +13,11 @@ import java.util.function.Function;
  *
  * @param <IN> The Java type returned by the source {@code Future}.
  * @param <OUT> The Java type that the result of the source {@code Future} will be adapted to.
+ * @deprecated Commands now return a {@link java.util.concurrent.CompletableFuture} that is
+ *       completed directly by the command executor. Use
+ *       {@link java.util.concurrent.CompletableFuture#thenApply(Function)} to adapt results.
  */
+@Deprecated
 public class AdaptingFuture<IN, OUT> implements Future<OUT>
 {
    private final Future<IN> delegate;
@@ -92,9 +92,7 @@ public class BasicEditItemCommand implements EditItemCommand
    {
       try
       {
-         return itemMutator.getKey() == null || itemMutator.getKey().isEmpty()
-                ? library.creatItem(itemMutator)
-                : library.updateItem(itemMutator);
+         return library.saveItem(itemMutator);
       }
       catch (ZoteroRestException e)
       {
@@ -1,7 +1,9 @@
 package edu.tamu.tcat.zotero.basic.v3;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.client.Invocation;
@@ -11,12 +13,17 @@ import edu.tamu.tcat.zotero.ZoteroGroup;
 import edu.tamu.tcat.zotero.ZoteroLibrary;
 import edu.tamu.tcat.zotero.ZoteroRestException;
 import edu.tamu.tcat.zotero.basic.v3.RestApiV3.ZoteroGroupLibrary;
+import edu.tamu.tcat.zotero.basic.v3.cache.ItemStore;
+import edu.tamu.tcat.zotero.basic.v3.cache.NearCache;
 import edu.tamu.tcat.zotero.basic.v3.commands.GetAssociatedGroupsCommand;
 import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroCommandExecutor;
 import edu.tamu.tcat.zotero.types.ItemTypeProvider;
 
 public class BasicUserAccount implements ZoteroAccount
 {
+   /** The key under which the groups associated with this account are cached. */
+   private static final String GROUPS = "groups";
+
    private final String id;
    private final String authToken;
    private final ZoteroClientService client;
@@ -43,11 +50,27 @@ public class BasicUserAccount implements ZoteroAccount
    @Override
    public Set<ZoteroGroup> getGroups()
    {
-      // TODO provide in-memory caching and retrieve only those groups that have been modified since the latest update.
+      // TODO retrieve only those groups that have been modified since the latest update.
       GetAssociatedGroupsCommand cmd = new GetAssociatedGroupsCommand(this);
+
+      // re-use the previously retrieved groups if they have not changed
+      NearCache cache = client.getNearCache(ZoteroLibrary.Type.User, id);
+      if (cache != null)
+      {
+         ZoteroGroupLibrary[] cached = cache.peek(GROUPS, ZoteroGroupLibrary[].class);
+         if (cached != null)
+            cmd.setCachedResult(Arrays.asList(cached), cache.getVersion(GROUPS));
+      }
+
       try
       {
          List<ZoteroGroupLibrary> groupData = client.getExecutor().unwrap(cmd.execute(), () -> "Failed to retrieve groups for account " + id);
+         if (cache != null && !cmd.isNotModified())
+         {
+            ZoteroGroupLibrary[] groups = groupData.toArray(new ZoteroGroupLibrary[groupData.size()]);
+            cache.put(GROUPS, cmd.getLastModifiedVersion(), groups, 64 + 512L * groups.length);
+         }
+
          return groupData.stream().map(BasicZoteroGroup::new).collect(Collectors.toSet());
 
       }
@@ -76,6 +99,35 @@ public class BasicUserAccount implements ZoteroAccount
       return client.getTypeProvider();
    }
 
+   /**
+    * Intended for internal use only.
+    * @return A future that completes once the item type schema has been loaded.
+    */
+   public CompletableFuture<Void> loadItemTypes()
+   {
+      return client.loadItemTypes();
+   }
+
+   /**
+    * Intended for internal use only.
+    * @return The persistent store used to cache items retrieved for this account. May be
+    *       <code>null</code> if no item store has been configured.
+    */
+   public ItemStore getItemStore()
+   {
+      return client.getItemStore();
+   }
+
+   /**
+    * Intended for internal use only.
+    * @return The in-memory cache for the identified library. May be <code>null</code> if no
+    *       in-memory cache has been configured.
+    */
+   public NearCache getNearCache(ZoteroLibrary.Type type, String libraryId)
+   {
+      return client.getNearCache(type, libraryId);
+   }
+
    /**
     * Indicates whether an authentication token is available for this account. This does not
     * check the validity of that token or provide other guarantees about whether that token
@@ -89,6 +141,16 @@ public class BasicUserAccount implements ZoteroAccount
       return authToken != null;
    }
 
+   /**
+    * Intended for internal use only.
+    * @return The API key used to authenticate requests for this account. May be
+    *       <code>null</code> if no authentication token is available.
+    */
+   public String getApiKey()
+   {
+      return authToken;
+   }
+
    /**
     * Appends headers to support Zotero authorization bearer token, if available for this
     * account. If not authentication header is available, the account can still be used to
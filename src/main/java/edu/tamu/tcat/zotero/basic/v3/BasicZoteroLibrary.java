@@ -2,15 +2,24 @@ package edu.tamu.tcat.zotero.basic.v3;
 
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import edu.tamu.tcat.zotero.EditCollectionCommand;
 import edu.tamu.tcat.zotero.EditItemCommand;
@@ -21,17 +30,23 @@ import edu.tamu.tcat.zotero.ZoteroLibrary;
 import edu.tamu.tcat.zotero.ZoteroRestException;
 import edu.tamu.tcat.zotero.basic.v3.BasicEditCollectionCommand.ZoteroCollectionMutator;
 import edu.tamu.tcat.zotero.basic.v3.BasicEditItemCommand.EditItemMutator;
-import edu.tamu.tcat.zotero.basic.v3.RestApiV3.Collection;
-import edu.tamu.tcat.zotero.basic.v3.RestApiV3.CollectionList;
+import edu.tamu.tcat.zotero.basic.v3.commands.CommandPriority;
 import edu.tamu.tcat.zotero.basic.v3.commands.DeleteCollectionsCommand;
 import edu.tamu.tcat.zotero.basic.v3.commands.DeleteItemCommand;
 import edu.tamu.tcat.zotero.basic.v3.commands.GetCollectionCommand;
 import edu.tamu.tcat.zotero.basic.v3.commands.GetCollectionsCommand;
+import edu.tamu.tcat.zotero.basic.v3.cache.ItemStore;
+import edu.tamu.tcat.zotero.basic.v3.cache.LibraryChanges;
+import edu.tamu.tcat.zotero.basic.v3.cache.NearCache;
 import edu.tamu.tcat.zotero.basic.v3.commands.GetItemCommand;
+import edu.tamu.tcat.zotero.basic.v3.commands.GetItemsByKeyCommand;
 import edu.tamu.tcat.zotero.basic.v3.commands.SaveCollectionCommand;
 import edu.tamu.tcat.zotero.basic.v3.commands.SaveItemCommand;
+import edu.tamu.tcat.zotero.basic.v3.commands.SaveItemsCommand;
 import edu.tamu.tcat.zotero.basic.v3.commands.UpdateCollectionCommand;
 import edu.tamu.tcat.zotero.basic.v3.commands.UpdateItemCommand;
+import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroCommandAdapter;
+import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroResponseException;
 import edu.tamu.tcat.zotero.basic.v3.model.BasicCollection;
 import edu.tamu.tcat.zotero.basic.v3.model.BasicItem;
 import edu.tamu.tcat.zotero.basic.v3.search.BasicItemQuery;
@@ -42,8 +57,16 @@ import edu.tamu.tcat.zotero.search.ItemQueryBuilder;
 
 public class BasicZoteroLibrary implements ZoteroLibrary
 {
-   private final long timeout;
-   private final TimeUnit timeoutUnits;
+   private static final Logger logger = Logger.getLogger(BasicZoteroLibrary.class.getName());
+
+   /** The minimum interval between checks for objects that have been modified since they were cached. */
+   private static final long STORE_VALIDATION_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+   /** Key prefixes identifying the type of object held in the in-memory cache and in-flight request table. */
+   private static final String ITEMS = "items/";
+   private static final String COLLECTIONS = "collections/";
+   private static final String SUBCOLLECTIONS = "subcollections/";
+
    // HACK: cannot be null. May be anonymous, but cannot be null
    private final BasicUserAccount account;
 
@@ -52,6 +75,26 @@ public class BasicZoteroLibrary implements ZoteroLibrary
    private final int version;
    private final String name;
 
+   // NOTE: may be NULL if no persistent item store has been configured.
+   private final ItemStore itemStore;
+   // NOTE: may be NULL if no in-memory cache has been configured.
+   private final NearCache nearCache;
+   private CompletableFuture<Boolean> storeValidation;
+   private long storeValidated;
+
+   /**
+    * Requests for individual items and collections that are currently in progress, keyed by
+    * object type and key. Used to ensure that concurrent requests for the same object share
+    * a single request to the Zotero API.
+    */
+   private final ConcurrentHashMap<String, SharedRequest<?>> inFlight = new ConcurrentHashMap<>();
+
+   // NOTE: NULL unless item batching has been enabled.
+   private volatile ItemBatchLoader itemLoader;
+
+   // NOTE: NULL unless deferred writes have been enabled.
+   private volatile ItemWriteQueue writeQueue;
+
    public BasicZoteroLibrary(BasicUserAccount account)
    {
       this.type = ZoteroLibrary.Type.User;
@@ -61,10 +104,8 @@ public class BasicZoteroLibrary implements ZoteroLibrary
       // TODO: need to obtain these or else update them based on retrieved data.
       this.version = -1;
       this.name = "User library for " + this.id;
-
-      // HACK: make these configurable
-      this.timeout = 10;
-      this.timeoutUnits = TimeUnit.SECONDS;
+      this.itemStore = account.getItemStore();
+      this.nearCache = account.getNearCache(type, id);
    }
 
 
@@ -76,10 +117,8 @@ public class BasicZoteroLibrary implements ZoteroLibrary
       this.id = Integer.toString(group.getId());
       this.version = group.getVersion();
       this.name = group.getName();
-
-      // HACK: make these configurable
-      this.timeout = 10;
-      this.timeoutUnits = TimeUnit.SECONDS;
+      this.itemStore = account.getItemStore();
+      this.nearCache = account.getNearCache(type, id);
    }
 
    /**
@@ -118,11 +157,84 @@ public class BasicZoteroLibrary implements ZoteroLibrary
       return unwrap(getItemAsync(id), () -> MessageFormat.format(message, id, this.name));
    }
 
+   /**
+    * @implNote Item keys are requested in batches of {@link GetItemsByKeyCommand#MAX_KEYS}.
+    *       All batches are submitted to the command executor before waiting on any of the
+    *       results so that they will be retrieved concurrently.
+    */
    @Override
    public Map<String, Item> getItems(String... ids) throws ZoteroRestException, IllegalStateException
    {
-      // TODO Auto-generated method stub
-      throw new UnsupportedOperationException();
+      String message = "Could not retrieve bibliographic items from library {0}";
+      return unwrap(getItemsAsync(ids), () -> MessageFormat.format(message, this.name));
+   }
+
+   /**
+    * Retrieves multiple bibliographic items by their id. The future will complete
+    * exceptionally with a {@link ZoteroResponseException} if any of the requested items could
+    * not be found.
+    *
+    * @param ids The ids of the items to retrieve.
+    * @return A future that resolves to a map from item id to item, in the order requested.
+    * @see #getItems(String...)
+    */
+   public CompletableFuture<Map<String, Item>> getItemsAsync(String... ids)
+   {
+      List<String> keys = new ArrayList<>(new LinkedHashSet<>(Arrays.asList(ids)));
+      if (itemStore == null)
+         return fetchItems(keys, new HashMap<>());
+
+      return validateCaches().thenCompose(current -> {
+         Map<String, RestApiV3.Item> results = new HashMap<>();
+         if (current.booleanValue())
+         {
+            for (String key : keys)
+            {
+               RestApiV3.Item dto = itemStore.get(type, id, key);
+               if (dto != null)
+                  results.put(key, dto);
+            }
+         }
+
+         return fetchItems(keys, results);
+      });
+   }
+
+   /**
+    * Requests any of the supplied keys that are not already present in {@code results}.
+    */
+   private CompletableFuture<Map<String, Item>> fetchItems(List<String> keys, Map<String, RestApiV3.Item> results)
+   {
+      List<String> remaining = keys.stream().filter(key -> !results.containsKey(key)).collect(Collectors.toList());
+      int storeVersion = getStoreVersion();
+
+      List<CompletableFuture<List<RestApiV3.Item>>> batches = new ArrayList<>();
+      for (int start = 0; start < remaining.size(); start += GetItemsByKeyCommand.MAX_KEYS)
+      {
+         int end = Math.min(start + GetItemsByKeyCommand.MAX_KEYS, remaining.size());
+         batches.add(execute(new GetItemsByKeyCommand(this, remaining.subList(start, end))));
+      }
+
+      return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[batches.size()]))
+            .thenApply(ignored -> {
+               batches.forEach(batch -> batch.join().forEach(dto -> results.put(dto.key, store(dto, storeVersion))));
+               return adapt(keys, results);
+            });
+   }
+
+   private Map<String, Item> adapt(List<String> keys, Map<String, RestApiV3.Item> results)
+   {
+      List<String> missing = keys.stream().filter(key -> !results.containsKey(key)).collect(Collectors.toList());
+      if (!missing.isEmpty())
+      {
+         String notFound = "Could not find bibliographic items {0} in library {1}";
+         throw new CompletionException(new ZoteroResponseException(MessageFormat.format(notFound, missing, this.name)));
+      }
+
+      // return items in the order requested
+      Map<String, Item> items = new LinkedHashMap<>();
+      keys.forEach(key -> items.put(key, adapt(results.get(key))));
+      return items;
    }
 
    @Override
@@ -174,42 +286,193 @@ public class BasicZoteroLibrary implements ZoteroLibrary
       removeCollection(deleteItems);
    }
 
-   public Future<Item> creatItem(EditItemMutator itemData) throws ZoteroRestException, IllegalStateException
+   public CompletableFuture<Item> creatItem(EditItemMutator itemData) throws ZoteroRestException, IllegalStateException
    {
       SaveItemCommand cmd = new SaveItemCommand(this, itemData);
-      Future<edu.tamu.tcat.zotero.basic.v3.RestApiV3.Item> results = cmd.execute();
-      return new AdaptingFuture<RestApiV3.Item, Item>(results, this::adapt);
+      return cmd.execute().thenApply(this::adapt);
    }
 
-   public Future<Item> updateItem(EditItemMutator itemData) throws ZoteroRestException, IllegalStateException
+   public CompletableFuture<Item> updateItem(EditItemMutator itemData) throws ZoteroRestException, IllegalStateException
    {
       UpdateItemCommand cmd = new UpdateItemCommand(this, itemData);
-      Future<EditItemMutator> updatedItem = cmd.execute();
-      return new AdaptingFuture<EditItemMutator, Item>(updatedItem, this::adapt);
+      return cmd.execute().thenApply(mutator -> {
+         evict(mutator.getKey());
+         return adapt(mutator);
+      });
+   }
+
+   /**
+    * Creates or updates an item. If deferred writes have been enabled using
+    * {@link #setWriteBehind(int, long, TimeUnit)}, the item is queued and written together
+    * with other pending items. Otherwise, the item is written immediately.
+    *
+    * @param itemData The item to save.
+    * @return A future that resolves to the saved item.
+    */
+   public CompletableFuture<Item> saveItem(EditItemMutator itemData) throws ZoteroRestException, IllegalStateException
+   {
+      ItemWriteQueue queue = writeQueue;
+      if (queue != null)
+         return queue.enqueue(itemData);
+
+      return itemData.getKey() == null || itemData.getKey().isEmpty()
+             ? creatItem(itemData)
+             : updateItem(itemData);
+   }
+
+   /**
+    * Enables deferred (write-behind) item writes for this library instance. Items saved
+    * using {@link #saveItem(EditItemMutator)} are queued rather than written immediately.
+    * Repeated edits of a queued item are merged into a single write, and pending items are
+    * written together using {@link #saveItems(List)}.
+    *
+    * <p>Pending items are written once {@code maxPending} items are queued, once the oldest
+    * pending item has waited for {@code maxDelay}, when {@link #flushWrites()} is called, or
+    * when the command executor is closed.
+    *
+    * @param maxPending The number of queued items that causes pending writes to be submitted
+    *       immediately. Values greater than {@link SaveItemsCommand#MAX_ITEMS} are reduced
+    *       to that limit.
+    * @param maxDelay The maximum time an item will be queued before it is written.
+    * @param unit The units of the supplied delay.
+    */
+   public synchronized void setWriteBehind(int maxPending, long maxDelay, TimeUnit unit)
+   {
+      disableWriteBehind();
+      writeQueue = new ItemWriteQueue(this, account.getExecutor(), maxPending, maxDelay, unit);
+   }
+
+   /**
+    * Disables deferred item writes. Any pending writes are submitted and this method blocks
+    * until they have completed.
+    */
+   public synchronized void disableWriteBehind()
+   {
+      ItemWriteQueue queue = writeQueue;
+      writeQueue = null;
+      if (queue != null)
+         queue.close();
+   }
+
+   /**
+    * Submits any pending deferred writes without waiting for them to complete.
+    */
+   public void flushWrites()
+   {
+      ItemWriteQueue queue = writeQueue;
+      if (queue != null)
+         queue.flush();
+   }
+
+   /**
+    * Creates or updates multiple items. Items are written in batches of
+    * {@link SaveItemsCommand#MAX_ITEMS}, so that many items can be saved using a small
+    * number of requests. Items without a key are created, all others are updated.
+    *
+    * <p>The outcome of each item is reported independently. The future for an item will
+    * complete exceptionally with a {@link ZoteroResponseException} if the Zotero API
+    * rejected that item, or if the batch containing it could not be written.
+    *
+    * @param items The items to save.
+    * @return A future for each of the supplied items, in the order supplied. Each future
+    *       resolves to the saved item.
+    */
+   public List<CompletableFuture<Item>> saveItems(List<EditItemMutator> items)
+   {
+      List<CompletableFuture<Item>> results = new ArrayList<>();
+      items.forEach(item -> results.add(new CompletableFuture<>()));
+
+      for (int start = 0; start < items.size(); start += SaveItemsCommand.MAX_ITEMS)
+      {
+         int end = Math.min(start + SaveItemsCommand.MAX_ITEMS, items.size());
+         List<EditItemMutator> batch = items.subList(start, end);
+         List<CompletableFuture<Item>> futures = results.subList(start, end);
+
+         new SaveItemsCommand(this, batch).execute()
+               .whenComplete((response, ex) -> completeBatch(batch, futures, response, ex));
+      }
+
+      return results;
+   }
+
+   /**
+    * Completes the futures for a batch of saved items based on the outcome reported for each
+    * item's index within the batch.
+    */
+   private void completeBatch(List<EditItemMutator> batch, List<CompletableFuture<Item>> futures,
+                              RestApiV3.ZoteroItemResponse response, Throwable ex)
+   {
+      for (int i = 0; i < batch.size(); i++)
+      {
+         CompletableFuture<Item> result = futures.get(i);
+         if (ex != null)
+         {
+            result.completeExceptionally(ex);
+            continue;
+         }
+
+         EditItemMutator mutator = batch.get(i);
+         String index = Integer.toString(i);
+         try
+         {
+            if (response.successful != null && response.successful.containsKey(index))
+            {
+               result.complete(cache(adapt(store(response.successful.get(index)))));
+            }
+            else if (response.unchanged != null && response.unchanged.containsKey(index))
+            {
+               evict(mutator.getKey());
+               result.complete(adapt(mutator));
+            }
+            else if (response.failed != null && response.failed.containsKey(index))
+            {
+               RestApiV3.FailedWrite failure = response.failed.get(index);
+               String message = "Failed to save item {0} to library {1}. [{2}] {3}";
+               String key = mutator.getKey() != null ? mutator.getKey() : "#" + index;
+               result.completeExceptionally(new ZoteroResponseException(
+                     MessageFormat.format(message, key, this.name, Integer.toString(failure.code), failure.message)));
+            }
+            else
+            {
+               String message = "No result was returned for item {0} saved to library {1}.";
+               result.completeExceptionally(new ZoteroResponseException(MessageFormat.format(message, index, this.name)));
+            }
+         }
+         catch (RuntimeException e)
+         {
+            result.completeExceptionally(e);
+         }
+      }
    }
 
-   public Future<Void> removeItems(Set<String> deleteItems)
+   public CompletableFuture<Void> removeItems(Set<String> deleteItems)
    {
-      return new DeleteItemCommand(this, deleteItems).execute();
+      return new DeleteItemCommand(this, deleteItems).execute()
+            .thenApply(ignored -> {
+               deleteItems.forEach(this::evict);
+               return null;
+            });
    }
 
-   public Future<ZoteroCollection> addCollection(ZoteroCollectionMutator collection) throws ZoteroRestException, IllegalStateException
+   public CompletableFuture<ZoteroCollection> addCollection(ZoteroCollectionMutator collection) throws ZoteroRestException, IllegalStateException
    {
       SaveCollectionCommand cmd = new SaveCollectionCommand(this, collection);
-      Future<Collection> result = cmd.execute();
-      return new AdaptingFuture<RestApiV3.Collection, ZoteroCollection>(result, this::adapt);
+      return cmd.execute().thenApply(this::adapt);
    }
 
-   public Future<ZoteroCollection> updateCollection(ZoteroCollectionMutator collection) throws ZoteroRestException, IllegalStateException
+   public CompletableFuture<ZoteroCollection> updateCollection(ZoteroCollectionMutator collection) throws ZoteroRestException, IllegalStateException
    {
       UpdateCollectionCommand cmd = new UpdateCollectionCommand(this, collection);
-      Future<ZoteroCollectionMutator> updatedCollection = cmd.execute();
-      return new AdaptingFuture<ZoteroCollectionMutator, ZoteroCollection>(updatedCollection, this::adapt);
+      return cmd.execute().thenApply(mutator -> {
+         evictCollection(mutator.getId());
+         return adapt(mutator);
+      });
    }
 
    public void removeCollection(Set<String> collectionKey)
    {
-      new DeleteCollectionsCommand(this, collectionKey).execute();
+      new DeleteCollectionsCommand(this, collectionKey).execute()
+            .thenAccept(ignored -> collectionKey.forEach(this::evictCollection));
    }
 
    @Override
@@ -239,22 +502,284 @@ public class BasicZoteroLibrary implements ZoteroLibrary
       return unwrap(getCollectionAsync(id), () -> MessageFormat.format(message, id, this.name));
    }
 
-   public Future<Item> getItemAsync(String itemId) throws ZoteroRestException, IllegalStateException
+   /**
+    * Retrieves a bibliographic item by its id. If a persistent {@link ItemStore} has been
+    * configured and the stored version of the item is current, the stored item will be
+    * returned without requesting it from the Zotero API. Similarly, items held in the
+    * in-memory {@link NearCache}, if configured, are returned directly. Concurrent requests
+    * for the same item share a single request to the Zotero API.
+    *
+    * @param itemId The id of the item to retrieve.
+    * @return A future that resolves to the requested item.
+    */
+   public CompletableFuture<Item> getItemAsync(String itemId) throws ZoteroRestException, IllegalStateException
    {
-      GetItemCommand command = new GetItemCommand(this);
-      command.setItemId(itemId);
+      if (itemStore == null && nearCache == null)
+         return fetchItem(itemId);
+
+      return validateCaches().thenCompose(current -> {
+         if (!current.booleanValue())
+            return fetchItem(itemId);
 
-      Future<RestApiV3.Item> result = command.execute();
-      return new AdaptingFuture<RestApiV3.Item, Item>(result, this::adapt);
+         Item item = nearCache != null ? nearCache.get(ITEMS + itemId, Item.class) : null;
+         if (item != null)
+            return CompletableFuture.completedFuture(item);
+
+         RestApiV3.Item dto = itemStore != null ? itemStore.get(type, id, itemId) : null;
+         return dto != null ? CompletableFuture.completedFuture(cache(adapt(dto))) : fetchItem(itemId);
+      });
    }
 
-   public Future<ZoteroCollection> getCollectionAsync(String id) throws ZoteroRestException
+   private CompletableFuture<Item> fetchItem(String itemId)
    {
-      GetCollectionCommand command = new GetCollectionCommand(this);
-      command.setCollectionId(id);
+      int storeVersion = getStoreVersion();
+      return singleFlight(ITEMS + itemId, () -> {
+         ItemBatchLoader loader = itemLoader;
+         if (loader != null)
+            return loader.load(itemId);
+
+         GetItemCommand command = new GetItemCommand(this);
+         command.setItemId(itemId);
+         command.setPriority(CommandPriority.INTERACTIVE);
 
-      Future<RestApiV3.Collection> result = command.execute();
-      return new AdaptingFuture<RestApiV3.Collection, ZoteroCollection>(result, this::adapt);
+         // if a stored copy exists (but could not be validated), request it conditionally
+         RestApiV3.Item stored = itemStore != null ? itemStore.get(type, id, itemId) : null;
+         if (stored != null)
+            command.setCachedResult(stored, stored.version);
+
+         return execute(command);
+      }, dto -> cache(adapt(store(dto, storeVersion))));
+   }
+
+   /**
+    * Enables batching of requests for individual items. Items requested using
+    * {@link #getItemAsync(String)} (and {@link #getItem(String)}) are collected for up to the
+    * supplied window, or until {@link GetItemsByKeyCommand#MAX_KEYS} items are pending, and
+    * are then retrieved with a single request. This reduces the number of requests made by
+    * code that retrieves related items one at a time, at the cost of delaying each request
+    * by up to the supplied window.
+    *
+    * @param window The maximum time to wait for further requests before retrieving the
+    *       collected items. A value of zero or less disables batching.
+    * @param unit The units of the supplied window.
+    */
+   public void setItemBatching(long window, TimeUnit unit)
+   {
+      ItemBatchLoader previous = itemLoader;
+      itemLoader = window > 0 ? new ItemBatchLoader(this, account.getExecutor(), window, unit) : null;
+      if (previous != null)
+         previous.dispatch();
+   }
+
+   /**
+    * Issues a request unless an identical request is already in progress, in which case the
+    * result of that request is shared. The request is removed from the in-flight table once
+    * it completes, so subsequent calls will issue a new request.
+    *
+    * @param key Identifies the requested object, including its type.
+    * @param request Issues the request if none is in progress. Cancelling the returned future
+    *       must abort the request.
+    * @param adapter Converts the response into the shared result.
+    * @return A future for the result of the shared request. Each caller receives a distinct
+    *       future, so cancelling one does not affect the others. The request is cancelled once
+    *       every caller has cancelled its future.
+    */
+   @SuppressWarnings("unchecked")
+   private <R, X> CompletableFuture<X> singleFlight(String key, Supplier<CompletableFuture<R>> request, Function<R, X> adapter)
+   {
+      while (true)
+      {
+         SharedRequest<X> shared = new SharedRequest<>(key);
+         SharedRequest<X> existing = (SharedRequest<X>)inFlight.putIfAbsent(key, shared);
+         if (existing == null)
+         {
+            CompletableFuture<X> result = shared.join();
+            shared.start(request, adapter);
+            return result;
+         }
+
+         CompletableFuture<X> result = existing.join();
+         if (result != null)
+            return result;
+
+         // every caller of the existing request has cancelled it
+         inFlight.remove(key, existing);
+      }
+   }
+
+   /**
+    * Removes items from the persistent item store, and items and collections from the
+    * in-memory cache, that have been modified or deleted on the server since they were
+    * cached. To avoid issuing requests for every object retrieved, this check is performed at
+    * most once per {@link #STORE_VALIDATION_INTERVAL}.
+    *
+    * @return A future that resolves to {@code true} if the cached objects are known to be
+    *       current or {@code false} if they could not be validated.
+    */
+   private synchronized CompletableFuture<Boolean> validateCaches()
+   {
+      if (storeValidation != null)
+      {
+         if (!storeValidation.isDone() || System.nanoTime() - storeValidated < STORE_VALIDATION_INTERVAL)
+            return storeValidation;
+      }
+
+      storeValidated = System.nanoTime();
+      storeValidation = LibraryChanges.fetch(this, getValidatedVersion(), nearCache != null, CommandPriority.NORMAL)
+            .thenApply(changes -> {
+               changes.getDeletedItems().forEach(this::evict);
+               if (itemStore != null)
+                  changes.applyTo(itemStore, type, id);
+
+               if (nearCache != null)
+               {
+                  changes.getDeletedCollections().forEach(key -> nearCache.remove(COLLECTIONS + key));
+                  changes.getItemVersions().forEach((key, version) -> nearCache.invalidate(ITEMS + key, version.intValue()));
+                  changes.getCollectionVersions().forEach((key, version) -> nearCache.invalidate(COLLECTIONS + key, version.intValue()));
+                  nearCache.setLibraryVersion(changes.getLibraryVersion());
+               }
+
+               return Boolean.TRUE;
+            }).exceptionally(ex -> {
+               logger.log(Level.WARNING, "Failed to validate cached objects for library " + this.name, ex);
+               return Boolean.FALSE;
+            });
+
+      return storeValidation;
+   }
+
+   /**
+    * @return The library version from which changes must be requested in order to validate
+    *       all cached objects.
+    */
+   private int getValidatedVersion()
+   {
+      int storeVersion = itemStore != null ? itemStore.getLibraryVersion(type, id) : -1;
+      if (nearCache == null)
+         return storeVersion;
+
+      // The in-memory cache is only populated after it has first been validated, so there are
+      // no changes to request if it has not yet been validated.
+      int cacheVersion = nearCache.getLibraryVersion();
+      if (cacheVersion < 0)
+         cacheVersion = Integer.MAX_VALUE;
+
+      return itemStore != null ? Math.min(storeVersion, cacheVersion) : cacheVersion;
+   }
+
+   /**
+    * Adds an item to the in-memory cache, if configured.
+    */
+   private Item cache(Item item)
+   {
+      if (nearCache != null)
+         nearCache.put(ITEMS + item.getId(), item.getVersion(), item, NearCache.estimateSize(item));
+
+      return item;
+   }
+
+   /**
+    * Adds a collection to the in-memory cache, if configured.
+    */
+   private ZoteroCollection cache(ZoteroCollection collection)
+   {
+      if (nearCache != null)
+         nearCache.put(COLLECTIONS + collection.getId(), collection.getVersion(), collection, NearCache.estimateSize(collection));
+
+      return collection;
+   }
+
+   /**
+    * Intended for internal use only.
+    * @return The in-memory cache for this library. May be <code>null</code> if no in-memory
+    *       cache has been configured.
+    */
+   public NearCache getNearCache()
+   {
+      return nearCache;
+   }
+
+   /**
+    * @return A snapshot of the usage statistics of the in-memory cache for this library, or
+    *       {@code null} if no in-memory cache has been configured.
+    */
+   public NearCache.Stats getNearCacheStats()
+   {
+      return nearCache != null ? nearCache.getStats() : null;
+   }
+
+   private RestApiV3.Item store(RestApiV3.Item dto)
+   {
+      if (itemStore != null)
+         itemStore.put(type, id, dto);
+
+      return dto;
+   }
+
+   /**
+    * Stores an item that was requested when the persistent item store had been validated as
+    * of the supplied library version. The item is not stored if the store has been validated
+    * again since, as the item may pre-date changes accounted for by that validation.
+    */
+   private RestApiV3.Item store(RestApiV3.Item dto, int storeVersion)
+   {
+      if (itemStore != null)
+         itemStore.put(type, id, dto, storeVersion);
+
+      return dto;
+   }
+
+   /**
+    * @return The library version as of which the persistent item store was last validated,
+    *       or {@code -1} if there is no store.
+    */
+   private int getStoreVersion()
+   {
+      return itemStore != null ? itemStore.getLibraryVersion(type, id) : -1;
+   }
+
+   private void evict(String itemKey)
+   {
+      if (itemStore != null && itemKey != null)
+         itemStore.remove(type, id, itemKey);
+      if (nearCache != null && itemKey != null)
+         nearCache.remove(ITEMS + itemKey);
+   }
+
+   /**
+    * Retrieves a collection by its id. Collections held in the in-memory {@link NearCache},
+    * if configured, are returned directly. Concurrent requests for the same collection share
+    * a single request to the Zotero API.
+    *
+    * @param id The id of the collection to retrieve.
+    * @return A future that resolves to the requested collection.
+    */
+   public CompletableFuture<ZoteroCollection> getCollectionAsync(String id) throws ZoteroRestException
+   {
+      if (nearCache == null)
+         return fetchCollection(id);
+
+      return validateCaches().thenCompose(current -> {
+         ZoteroCollection collection = current.booleanValue() ? nearCache.get(COLLECTIONS + id, ZoteroCollection.class) : null;
+         return collection != null ? CompletableFuture.completedFuture(collection) : fetchCollection(id);
+      });
+   }
+
+   private CompletableFuture<ZoteroCollection> fetchCollection(String collectionId)
+   {
+      return singleFlight(COLLECTIONS + collectionId, () -> {
+         GetCollectionCommand command = new GetCollectionCommand(this);
+         command.setCollectionId(collectionId);
+         command.setPriority(CommandPriority.INTERACTIVE);
+
+         return execute(command);
+      }, dto -> cache(adapt(dto)));
+   }
+
+   private void evictCollection(String collectionKey)
+   {
+      if (nearCache != null && collectionKey != null)
+         nearCache.remove(COLLECTIONS + collectionKey);
    }
 
 
@@ -279,12 +804,25 @@ public class BasicZoteroLibrary implements ZoteroLibrary
             () -> MessageFormat.format("Failed to retrieve sub collections for {0}", parentId));
    }
 
-   public Future<List<ZoteroCollection>> getSubCollectionsAsync(String parentId)
+   public CompletableFuture<List<ZoteroCollection>> getSubCollectionsAsync(String parentId)
    {
       GetCollectionsCommand cmd = new GetCollectionsCommand(this);
       cmd.setParentCollection(parentId);
-      Future<CollectionList> results = cmd.execute();
-      return new AdaptingFuture<RestApiV3.CollectionList, List<ZoteroCollection>>(results, this::adapt);
+      if (nearCache == null)
+         return execute(cmd).thenApply(this::adapt);
+
+      // re-use the previously retrieved list if the library has not changed
+      String key = SUBCOLLECTIONS + parentId;
+      RestApiV3.CollectionList cached = nearCache.peek(key, RestApiV3.CollectionList.class);
+      if (cached != null)
+         cmd.setCachedResult(cached, nearCache.getVersion(key));
+
+      return execute(cmd).thenApply(dtos -> {
+         if (!cmd.isNotModified())
+            nearCache.put(key, cmd.getLastModifiedVersion(), dtos, 64 + 256L * dtos.collections.size());
+
+         return adapt(dtos);
+      });
    }
 
    private Item adapt(RestApiV3.Item dto)
@@ -301,7 +839,7 @@ public class BasicZoteroLibrary implements ZoteroLibrary
    {
       List<ZoteroCollection> collection = new ArrayList<>();
       dtos.collections.forEach((i)->{
-         collection.add(adapt(i));
+         collection.add(cache(adapt(i)));
       });
       return collection;
    }
@@ -318,24 +856,104 @@ public class BasicZoteroLibrary implements ZoteroLibrary
 
    private <X> X unwrap(Future<X> result, Supplier<String> message) throws ZoteroRestException
    {
-      try
+      return account.getExecutor().unwrap(result, message);
+   }
+
+   /**
+    * Issues read requests with the executor's default deadline, so that a stalled request does
+    * not hold the callers that share it indefinitely.
+    */
+   private <X> CompletableFuture<X> execute(ZoteroCommandAdapter<X> command)
+   {
+      return command.execute(account.getExecutor().getDefaultTimeout(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+   }
+
+   /**
+    * A request whose result is shared by the callers that request the same object while it is
+    * in progress. The request is cancelled once all of those callers have cancelled their
+    * results.
+    */
+   private class SharedRequest<X>
+   {
+      private final String key;
+      private final CompletableFuture<X> result = new CompletableFuture<>();
+
+      // guarded by this
+      private CompletableFuture<?> request;
+      private int waiters;
+      private boolean abandoned;
+
+      SharedRequest(String key)
       {
-         return result.get(timeout, timeoutUnits);
+         this.key = key;
       }
-      catch (InterruptedException | TimeoutException e)
+
+      /**
+       * @return A future for the shared result, or {@code null} if every previous caller has
+       *       cancelled the request.
+       */
+      synchronized CompletableFuture<X> join()
       {
-         throw new IllegalStateException(message.get(), e);
+         if (abandoned)
+            return null;
+
+         waiters++;
+         CompletableFuture<X> waiter = result.thenApply(Function.identity());
+         waiter.whenComplete((r, ex) -> {
+            if (waiter.isCancelled())
+               leave();
+         });
+         return waiter;
       }
-      catch (ExecutionException ex)
-      {
-         Throwable cause = ex.getCause();
-         if (cause instanceof ZoteroRestException)
-            throw (ZoteroRestException)cause;
 
-         if  (cause instanceof RuntimeException)
-            throw (RuntimeException)cause;
+      <R> void start(Supplier<CompletableFuture<R>> issue, Function<R, X> adapter)
+      {
+         CompletableFuture<R> pending;
+         try
+         {
+            pending = issue.get();
+         }
+         catch (RuntimeException ex)
+         {
+            inFlight.remove(key, this);
+            result.completeExceptionally(ex);
+            return;
+         }
+
+         boolean cancelled;
+         synchronized (this)
+         {
+            request = pending;
+            cancelled = abandoned;
+         }
+
+         if (cancelled)
+            pending.cancel(true);
+
+         pending.thenApply(adapter).whenComplete((value, ex) -> {
+            inFlight.remove(key, this);
+            if (ex != null)
+               result.completeExceptionally(ex);
+            else
+               result.complete(value);
+         });
+      }
 
-         throw new IllegalStateException(message.get(), cause);
+      private void leave()
+      {
+         CompletableFuture<?> pending;
+         synchronized (this)
+         {
+            if (--waiters > 0 || result.isDone())
+               return;
+
+            abandoned = true;
+            pending = request;
+         }
+
+         inFlight.remove(key, this);
+         if (pending != null)
+            pending.cancel(true);
       }
    }
 }
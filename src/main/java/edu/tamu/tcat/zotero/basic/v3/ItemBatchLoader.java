@@ -0,0 +1,193 @@
+package edu.tamu.tcat.zotero.basic.v3;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import edu.tamu.tcat.zotero.basic.v3.commands.CommandPriority;
+import edu.tamu.tcat.zotero.basic.v3.commands.GetItemsByKeyCommand;
+import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroCommandExecutor;
+import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroResponseException;
+
+/**
+ * Combines requests for individual items into batched requests.
+ *
+ * <p>Keys requested using {@link #load(String)} are collected until either the configured
+ * window has elapsed since the first key was requested or {@link GetItemsByKeyCommand#MAX_KEYS}
+ * keys are pending. The collected keys are then retrieved using a single
+ * {@link GetItemsByKeyCommand} and the returned items are used to complete the individual
+ * requests. This allows code that walks item relationships one item at a time to be served
+ * using a small number of requests.
+ */
+class ItemBatchLoader
+{
+   private final BasicZoteroLibrary library;
+   private final ZoteroCommandExecutor executor;
+   private final long window;
+
+   // guarded by this
+   private final Map<String, CompletableFuture<RestApiV3.Item>> pending = new LinkedHashMap<>();
+   private ScheduledFuture<?> scheduledDispatch;
+
+   /**
+    * @param library The library to retrieve items from.
+    * @param executor The executor used to schedule dispatch of collected keys.
+    * @param window The maximum time a key will wait for other keys before being requested.
+    * @param unit The units of the supplied window.
+    */
+   ItemBatchLoader(BasicZoteroLibrary library, ZoteroCommandExecutor executor, long window, TimeUnit unit)
+   {
+      this.library = library;
+      this.executor = executor;
+      this.window = unit.toNanos(window);
+   }
+
+   /**
+    * Requests an item. Requests for the same key that are collected in the same batch share
+    * a single result.
+    *
+    * @param key The key of the item to retrieve.
+    * @return A future that resolves to the requested item, or completes exceptionally with a
+    *       {@link ZoteroResponseException} if no item with this key exists in the library.
+    *       Cancelling the future withdraws the key from its batch. The batch's request is
+    *       aborted once every key in it has been withdrawn.
+    */
+   CompletableFuture<RestApiV3.Item> load(String key)
+   {
+      CompletableFuture<RestApiV3.Item> result;
+      Map<String, CompletableFuture<RestApiV3.Item>> batch = null;
+      synchronized (this)
+      {
+         result = pending.computeIfAbsent(key, k -> {
+            CompletableFuture<RestApiV3.Item> created = new CompletableFuture<>();
+            created.whenComplete((dto, ex) -> {
+               if (created.isCancelled())
+                  withdraw(k, created);
+            });
+            return created;
+         });
+
+         if (pending.size() >= GetItemsByKeyCommand.MAX_KEYS)
+            batch = takePending();
+         else if (scheduledDispatch == null)
+            scheduleDispatch(key);
+      }
+
+      if (batch != null)
+         dispatch(batch);
+
+      return result;
+   }
+
+   /**
+    * Requests all keys that have been collected.
+    */
+   void dispatch()
+   {
+      Map<String, CompletableFuture<RestApiV3.Item>> batch;
+      synchronized (this)
+      {
+         batch = takePending();
+      }
+
+      dispatch(batch);
+   }
+
+   /**
+    * Removes a cancelled request that has not yet been dispatched.
+    */
+   private synchronized void withdraw(String key, CompletableFuture<RestApiV3.Item> result)
+   {
+      if (pending.remove(key, result) && pending.isEmpty() && scheduledDispatch != null)
+      {
+         scheduledDispatch.cancel(false);
+         scheduledDispatch = null;
+      }
+   }
+
+   /**
+    * Must be called while holding this object's lock.
+    */
+   private void scheduleDispatch(String key)
+   {
+      try
+      {
+         scheduledDispatch = executor.schedule(this::dispatch, window, TimeUnit.NANOSECONDS);
+      }
+      catch (IllegalStateException ex)
+      {
+         pending.remove(key);
+         throw ex;
+      }
+   }
+
+   /**
+    * Must be called while holding this object's lock.
+    */
+   private Map<String, CompletableFuture<RestApiV3.Item>> takePending()
+   {
+      if (scheduledDispatch != null)
+      {
+         scheduledDispatch.cancel(false);
+         scheduledDispatch = null;
+      }
+
+      Map<String, CompletableFuture<RestApiV3.Item>> batch = new LinkedHashMap<>(pending);
+      pending.clear();
+      return batch;
+   }
+
+   private void dispatch(Map<String, CompletableFuture<RestApiV3.Item>> batch)
+   {
+      if (batch.isEmpty())
+         return;
+
+      List<String> keys = new ArrayList<>(batch.keySet());
+      try
+      {
+         // the batch stands in for individual lookups, which callers are waiting on
+         GetItemsByKeyCommand command = new GetItemsByKeyCommand(library, keys);
+         command.setPriority(CommandPriority.INTERACTIVE);
+         CompletableFuture<List<RestApiV3.Item>> request =
+               command.execute(executor.getDefaultTimeout(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+         request.whenComplete((items, ex) -> complete(batch, items, ex));
+
+         // abort the request if every key is withdrawn
+         batch.values().forEach(result -> result.whenComplete((dto, ex) -> {
+            if (batch.values().stream().allMatch(CompletableFuture::isCancelled))
+               request.cancel(true);
+         }));
+      }
+      catch (RuntimeException ex)
+      {
+         complete(batch, null, ex);
+      }
+   }
+
+   private void complete(Map<String, CompletableFuture<RestApiV3.Item>> batch, List<RestApiV3.Item> items, Throwable ex)
+   {
+      if (ex != null)
+      {
+         batch.values().forEach(result -> result.completeExceptionally(ex));
+         return;
+      }
+
+      Map<String, RestApiV3.Item> found = new HashMap<>();
+      items.forEach(dto -> found.put(dto.key, dto));
+
+      String notFound = "Could not find bibliographic item {0} in library {1}";
+      batch.forEach((key, result) -> {
+         RestApiV3.Item dto = found.get(key);
+         if (dto != null)
+            result.complete(dto);
+         else
+            result.completeExceptionally(new ZoteroResponseException(MessageFormat.format(notFound, key, library.getId())));
+      });
+   }
+}
@@ -0,0 +1,324 @@
+package edu.tamu.tcat.zotero.basic.v3;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.tamu.tcat.zotero.Item;
+import edu.tamu.tcat.zotero.basic.v3.BasicEditItemCommand.EditItemMutator;
+import edu.tamu.tcat.zotero.basic.v3.commands.SaveItemsCommand;
+import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroCommandExecutor;
+
+/**
+ * Defers item writes so that they can be combined into a small number of requests.
+ *
+ * <p>Edits to an item that has not yet been written are merged with the pending edits for
+ * that item, so repeated edits result in a single write. Pending writes are submitted
+ * using {@link BasicZoteroLibrary#saveItems(List)} once a configured number of items are
+ * pending or once the oldest pending write has waited for the configured delay.
+ *
+ * <p>At most one write for any item is in progress at a time. Edits made while an item is
+ * being written are held until that write completes, and are then written using the version
+ * returned by the server in order to avoid spurious {@code 412 Precondition Failed}
+ * responses.
+ *
+ * <p>Pending writes are flushed when the {@link ZoteroCommandExecutor} is closed.
+ */
+class ItemWriteQueue
+{
+   private static final Logger logger = Logger.getLogger(ItemWriteQueue.class.getName());
+
+   private final BasicZoteroLibrary library;
+   private final ZoteroCommandExecutor executor;
+   private final int maxPending;
+   private final long maxDelay;
+   private final Runnable closeListener = this::close;
+
+   // all guarded by this
+   /** Updates to existing items, keyed by item key. */
+   private final Map<String, PendingWrite> updates = new LinkedHashMap<>();
+   private final List<PendingWrite> creates = new ArrayList<>();
+   private final Set<String> writing = new HashSet<>();
+   private final Set<CompletableFuture<Item>> inProgress = new HashSet<>();
+   private ScheduledFuture<?> scheduledFlush;
+   private boolean closed = false;
+
+   /**
+    * @param library The library to write items to.
+    * @param executor The executor used to schedule flushes.
+    * @param maxPending The number of pending items that will cause writes to be flushed
+    *       immediately.
+    * @param maxDelay The maximum time a write will be deferred.
+    * @param unit The units of the supplied delay.
+    */
+   ItemWriteQueue(BasicZoteroLibrary library, ZoteroCommandExecutor executor, int maxPending, long maxDelay, TimeUnit unit)
+   {
+      if (maxPending < 1)
+         throw new IllegalArgumentException("The maximum number of pending writes must be positive.");
+
+      this.library = library;
+      this.executor = executor;
+      this.maxPending = Math.min(maxPending, SaveItemsCommand.MAX_ITEMS);
+      this.maxDelay = unit.toNanos(maxDelay);
+
+      executor.addCloseListener(closeListener);
+   }
+
+   /**
+    * Queues an item to be written.
+    *
+    * @param mutator The item to create or update.
+    * @return A future that resolves to the saved item once the write has been completed.
+    *       If the item was edited several times before being written, all edits share the
+    *       same result.
+    */
+   CompletableFuture<Item> enqueue(EditItemMutator mutator)
+   {
+      CompletableFuture<Item> result = new CompletableFuture<>();
+      boolean flush;
+      synchronized (this)
+      {
+         if (closed)
+         {
+            result.completeExceptionally(new IllegalStateException("The write queue for this library has been closed."));
+            return result;
+         }
+
+         String key = mutator.getKey();
+         if (key == null || key.isEmpty())
+         {
+            creates.add(new PendingWrite(mutator, result));
+         }
+         else
+         {
+            PendingWrite pending = updates.get(key);
+            if (pending == null)
+               updates.put(key, new PendingWrite(mutator, result));
+            else
+               pending.merge(mutator, result);
+         }
+
+         flush = countReady() >= maxPending;
+         if (!flush)
+            scheduleFlush();
+      }
+
+      if (flush)
+         flush();
+
+      return result;
+   }
+
+   /**
+    * Submits all pending writes, other than those for items that are currently being written.
+    */
+   void flush()
+   {
+      List<PendingWrite> batch = new ArrayList<>();
+      synchronized (this)
+      {
+         if (scheduledFlush != null)
+         {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+         }
+
+         batch.addAll(creates);
+         creates.clear();
+
+         Iterator<Map.Entry<String, PendingWrite>> iterator = updates.entrySet().iterator();
+         while (iterator.hasNext())
+         {
+            Map.Entry<String, PendingWrite> entry = iterator.next();
+            if (writing.add(entry.getKey()))
+            {
+               batch.add(entry.getValue());
+               iterator.remove();
+            }
+         }
+      }
+
+      if (batch.isEmpty())
+         return;
+
+      List<EditItemMutator> mutators = new ArrayList<>();
+      batch.forEach(write -> mutators.add(write.mutator));
+
+      List<CompletableFuture<Item>> results;
+      try
+      {
+         results = library.saveItems(mutators);
+      }
+      catch (RuntimeException ex)
+      {
+         batch.forEach(write -> complete(write, null, ex));
+         return;
+      }
+
+      for (int i = 0; i < batch.size(); i++)
+      {
+         PendingWrite write = batch.get(i);
+         CompletableFuture<Item> result = results.get(i);
+         synchronized (this)
+         {
+            inProgress.add(result);
+         }
+
+         result.whenComplete((item, ex) -> {
+            complete(write, item, ex);
+            synchronized (this)
+            {
+               inProgress.remove(result);
+            }
+         });
+      }
+   }
+
+   /**
+    * Flushes all pending writes and waits for them to complete. Edits that are submitted
+    * after the queue has been closed will be rejected.
+    */
+   void close()
+   {
+      executor.removeCloseListener(closeListener);
+      while (true)
+      {
+         synchronized (this)
+         {
+            closed = true;
+            if (updates.isEmpty() && creates.isEmpty() && inProgress.isEmpty())
+               return;
+         }
+
+         flush();
+
+         CompletableFuture<?> outstanding;
+         synchronized (this)
+         {
+            outstanding = CompletableFuture.allOf(inProgress.toArray(new CompletableFuture<?>[inProgress.size()]));
+         }
+
+         try
+         {
+            outstanding.handle((r, ex) -> null).get();
+         }
+         catch (Exception ex)
+         {
+            logger.log(Level.WARNING, "Interrupted while waiting for pending item writes.", ex);
+            return;
+         }
+      }
+   }
+
+   private void complete(PendingWrite write, Item item, Throwable ex)
+   {
+      write.waiters.forEach(result -> {
+         if (ex != null)
+            result.completeExceptionally(ex);
+         else
+            result.complete(item);
+      });
+
+      String key = write.mutator.getKey();
+      if (key == null || key.isEmpty())
+         return;
+
+      boolean flush = false;
+      synchronized (this)
+      {
+         writing.remove(key);
+         PendingWrite next = updates.get(key);
+         if (next != null && item != null)
+            next.mutator.setVersion(item.getVersion());
+
+         // edits made while closing are flushed by close() itself
+         if (next != null && !closed)
+         {
+            flush = countReady() >= maxPending;
+            if (!flush)
+               scheduleFlush();
+         }
+      }
+
+      if (flush)
+         flush();
+   }
+
+   /**
+    * @return The number of pending writes that can be submitted immediately.
+    */
+   private int countReady()
+   {
+      int count = creates.size();
+      for (String key : updates.keySet())
+      {
+         if (!writing.contains(key))
+            count++;
+      }
+      return count;
+   }
+
+   /**
+    * Ensures that a flush has been scheduled. Must be called while holding this object's lock.
+    */
+   private void scheduleFlush()
+   {
+      if (scheduledFlush != null)
+         return;
+
+      try
+      {
+         scheduledFlush = executor.schedule(this::flush, maxDelay, TimeUnit.NANOSECONDS);
+      }
+      catch (IllegalStateException ex)
+      {
+         logger.log(Level.FINE, "Unable to schedule item writes. The command executor has been shut down.", ex);
+      }
+   }
+
+   private static class PendingWrite
+   {
+      private final EditItemMutator mutator;
+      private final List<CompletableFuture<Item>> waiters = new ArrayList<>();
+
+      PendingWrite(EditItemMutator mutator, CompletableFuture<Item> result)
+      {
+         this.mutator = mutator;
+         this.waiters.add(result);
+      }
+
+      /**
+       * Applies a later edit of the same item to this pending write. The later edit replaces
+       * the item's type, creators, collections and tags. Field values are combined, with
+       * those from the later edit taking precedence.
+       */
+      void merge(EditItemMutator edit, CompletableFuture<Item> result)
+      {
+         mutator.getFields().putAll(edit.getFields());
+
+         if (edit.getItemType() != null)
+            mutator.setItemType(edit.getItemType());
+         mutator.setCreators(edit.getCreators());
+         mutator.setCollections(edit.getCollections());
+         mutator.setTags(edit.getTags());
+         mutator.setRelations(edit.getRelations());
+         if (edit.getParent() != null)
+            mutator.setParentItem(edit.getParent());
+
+         // retain the version the first pending edit was based on, unless the later edit
+         // was made against a more recent version of the item
+         mutator.setVersion(Math.max(mutator.getVersion(), edit.getVersion()));
+
+         waiters.add(result);
+      }
+   }
+}
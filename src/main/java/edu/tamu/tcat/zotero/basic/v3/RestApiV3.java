@@ -3,6 +3,9 @@ package edu.tamu.tcat.zotero.basic.v3;
 import java.util.List;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 /**
  * Represents the REST data vehicles supplied by V3 of the Zotero rest API.
  */
@@ -204,7 +207,7 @@ public class RestApiV3
       public Map<String,Item> successful;
       public Map<String,String> success;
       public Map<String,String> unchanged;
-      public Map<String,String> failed;
+      public Map<String,FailedWrite> failed;
 
 //    {   successful={},
 //          success={},
@@ -217,7 +220,47 @@ public class RestApiV3
       public Map<String,Collection> successful;
       public Map<String,String> success;
       public Map<String,String> unchanged;
-      public Map<String,String> failed;
+      public Map<String,FailedWrite> failed;
+   }
+
+   /**
+    * Describes why a single object of a multi-object write request could not be saved.
+    */
+   @JsonIgnoreProperties(ignoreUnknown = true)
+   public static class FailedWrite
+   {
+      public String key;
+      public int code;
+      public String message;
+   }
+
+   /**
+    * The versions of the objects in a library that have been modified since a given library
+    * version, as returned by requests with {@code format=versions}. The response body is a
+    * map from object key to object version. The library version as of the response is
+    * supplied by the {@code Last-Modified-Version} header.
+    */
+   public static class VersionList
+   {
+      public Map<String, Integer> versions;
+      public int lastModifiedVersion;
+   }
+
+   /**
+    * The keys of the objects in a library that have been deleted since a given library
+    * version, as returned by the {@code <userOrGroupPrefix>/deleted?since=<version>} resource.
+    */
+   public static class DeletedObjects
+   {
+      public List<String> collections;
+      public List<String> searches;
+      public List<String> items;
+      public List<String> tags;
+      public List<String> settings;
+
+      /** The library version as of the response, supplied by the {@code Last-Modified-Version} header. */
+      @JsonIgnore
+      public int lastModifiedVersion;
    }
 
 
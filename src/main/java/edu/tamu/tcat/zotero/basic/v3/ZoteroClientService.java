@@ -1,11 +1,19 @@
 package edu.tamu.tcat.zotero.basic.v3;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import edu.tamu.tcat.zotero.ZoteroAccount;
 import edu.tamu.tcat.zotero.ZoteroClient;
+import edu.tamu.tcat.zotero.ZoteroLibrary;
 import edu.tamu.tcat.zotero.ZoteroRestException;
+import edu.tamu.tcat.zotero.basic.v3.cache.ItemStore;
+import edu.tamu.tcat.zotero.basic.v3.cache.NearCache;
 import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroCommandExecutor;
+import edu.tamu.tcat.zotero.basic.v3.types.CachingItemTypeProvider;
 import edu.tamu.tcat.zotero.basic.v3.types.ItemTypeProviderService;
 import edu.tamu.tcat.zotero.types.ItemTypeProvider;
 
@@ -13,7 +21,13 @@ public class ZoteroClientService implements ZoteroClient
 {
    private ZoteroCommandExecutor exec;
 
-   private ItemTypeProvider typeProvider;
+   private CachingItemTypeProvider typeProvider;
+
+   private Path cacheDirectory;
+   private ItemStore itemStore;
+
+   private long nearCacheSize = 0;
+   private final ConcurrentHashMap<String, NearCache> nearCaches = new ConcurrentHashMap<>();
 
    public ZoteroClientService()
    {
@@ -25,17 +39,57 @@ public class ZoteroClientService implements ZoteroClient
       this.exec = exec;
    }
 
+   /**
+    * Sets the directory in which items retrieved from the Zotero API will be persisted so
+    * that they may be reused across restarts. Must be called prior to {@link #activate()}.
+    * If no directory is set, items will not be persisted.
+    *
+    * @param cacheDirectory The directory in which to store items.
+    */
+   public void setCacheDirectory(Path cacheDirectory)
+   {
+      this.cacheDirectory = cacheDirectory;
+   }
+
+   /**
+    * Sets the maximum estimated size in bytes of the in-memory cache of items and
+    * collections maintained for each library. Must be called prior to {@link #activate()}.
+    * By default, no in-memory cache is used.
+    *
+    * @param maxBytes The maximum size of each library's cache. A value of zero or less
+    *       disables the cache.
+    */
+   public void setNearCacheSize(long maxBytes)
+   {
+      this.nearCacheSize = maxBytes;
+   }
+
    public void activate()
    {
       Objects.requireNonNull(exec, "No command executor is available");
 
-      typeProvider = new ItemTypeProviderService(exec);
+      // load the item type schema up front, so that responses containing items can be
+      // decoded without waiting on further requests
+      typeProvider = new CachingItemTypeProvider(new ItemTypeProviderService(exec));
+      typeProvider.load();
+      if (cacheDirectory != null)
+      {
+         try
+         {
+            itemStore = ItemStore.open(cacheDirectory);
+         }
+         catch (IOException e)
+         {
+            throw new IllegalStateException("Failed to open item cache in " + cacheDirectory, e);
+         }
+      }
    }
 
    @Override
    public void close()
    {
-
+      if (itemStore != null)
+         itemStore.close();
    }
 
    public ZoteroCommandExecutor getExecutor()
@@ -65,6 +119,39 @@ public class ZoteroClientService implements ZoteroClient
       return new BasicUserAccount(userId, authToken, this);
    }
 
+   /**
+    * Intended for internal use only.
+    * @return The persistent store for retrieved items. May be <code>null</code> if no cache
+    *       directory has been configured.
+    */
+   public ItemStore getItemStore()
+   {
+      return itemStore;
+   }
+
+   /**
+    * Intended for internal use only.
+    * @return The in-memory cache for the identified library. May be <code>null</code> if no
+    *       in-memory cache has been configured.
+    */
+   public NearCache getNearCache(ZoteroLibrary.Type type, String libraryId)
+   {
+      if (nearCacheSize <= 0)
+         return null;
+
+      return nearCaches.computeIfAbsent(type + "/" + libraryId, k -> new NearCache(nearCacheSize));
+   }
+
+   /**
+    * Intended for internal use only.
+    * @return A future that completes once the item type schema has been loaded. If a
+    *       previous attempt to load the schema failed, it is re-attempted.
+    */
+   public CompletableFuture<Void> loadItemTypes()
+   {
+      return typeProvider.load();
+   }
+
    @Override
    public ItemTypeProvider getTypeProvider()
    {
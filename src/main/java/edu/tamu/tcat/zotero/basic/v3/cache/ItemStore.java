@@ -0,0 +1,598 @@
+package edu.tamu.tcat.zotero.basic.v3.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.tamu.tcat.zotero.ZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.RestApiV3;
+
+/**
+ * A persistent, on-disk store of {@link RestApiV3.Item} payloads that allows previously
+ * retrieved items to be reused across process restarts.
+ *
+ * <p>Items are identified by library type, library id and item key, and each stored item
+ * records the item version it was retrieved at. Only the most recent version of an item is
+ * retained. In addition, the store records a version for each library. All items stored for
+ * a library are known to be current as of that library version. Clients are responsible for
+ * advancing the library version, using {@link #validate(ZoteroLibrary.Type, String, Map, boolean, int)},
+ * once they have determined which items have changed on the server.
+ *
+ * <p>Item payloads are appended to a single segment file and are never modified in place. An
+ * append-only index file records the location of the current version of each item within the
+ * segment and is loaded into memory when the store is opened. Superseded and removed payloads
+ * are reclaimed by {@link #compact()}, which is performed automatically when the store is
+ * opened if most of the segment is no longer referenced.
+ *
+ * <p>A store holds an exclusive lock on its directory while it is open, so a directory may be
+ * used by at most one store, in this or any other process, at a time.
+ *
+ * <p>The store is intended as a cache. Failures to read or write the underlying files are
+ * logged and otherwise treated as a cache miss rather than being reported to callers.
+ */
+public class ItemStore implements AutoCloseable
+{
+   private static final Logger logger = Logger.getLogger(ItemStore.class.getName());
+
+   private static final String SEGMENT_FILE = "items.seg";
+   private static final String INDEX_FILE = "items.idx";
+   private static final String LIBRARIES_FILE = "libraries.properties";
+   private static final String LOCK_FILE = "store.lock";
+
+   /** The minimum segment size, in bytes, at which the store will be compacted on open. */
+   private static final long COMPACTION_THRESHOLD = 1024 * 1024;
+
+   private static final int REMOVED = -1;
+
+   private final Path directory;
+   private final ObjectMapper mapper;
+
+   private final ConcurrentHashMap<String, Entry> index = new ConcurrentHashMap<>();
+   private final ConcurrentHashMap<String, Integer> libraryVersions = new ConcurrentHashMap<>();
+
+   private final FileLock lock;
+
+   /**
+    * Guards replacement of the segment file. Reads hold the read lock so that they may proceed
+    * concurrently, while {@link #compact()} and {@link #close()} hold the write lock while the
+    * segment channel and the offsets recorded in the index are swapped.
+    */
+   private final ReadWriteLock segmentLock = new ReentrantReadWriteLock();
+
+   private volatile FileChannel segment;
+   private DataOutputStream indexOut;
+
+   private ItemStore(Path directory, FileLock lock)
+   {
+      this.directory = directory;
+      this.lock = lock;
+      this.mapper = new ObjectMapper();
+      this.mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+   }
+
+   /**
+    * Opens the item store in the supplied directory, creating it if necessary.
+    *
+    * @param directory The directory in which to store items.
+    * @return The opened store. Must be closed when no longer needed.
+    * @throws IOException If the store could not be created, its index could not be read, or
+    *       the directory is already in use by another store.
+    */
+   public static ItemStore open(Path directory) throws IOException
+   {
+      Objects.requireNonNull(directory, "No cache directory supplied");
+      Files.createDirectories(directory);
+
+      FileLock lock = lock(directory);
+      ItemStore store = new ItemStore(directory, lock);
+      try
+      {
+         store.load();
+         if (store.segment.size() > COMPACTION_THRESHOLD && store.getLiveBytes() < store.segment.size() / 2)
+            store.compact();
+      }
+      catch (IOException | RuntimeException ex)
+      {
+         store.close();
+         throw ex;
+      }
+
+      return store;
+   }
+
+   /**
+    * Acquires an exclusive lock on the supplied directory.
+    *
+    * @throws IOException If the lock is held by another store.
+    */
+   private static FileLock lock(Path directory) throws IOException
+   {
+      FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      try
+      {
+         FileLock lock = channel.tryLock();
+         if (lock != null)
+            return lock;
+      }
+      catch (OverlappingFileLockException ex)
+      {
+         // held by another store within this process
+      }
+      catch (IOException | RuntimeException ex)
+      {
+         channel.close();
+         throw ex;
+      }
+
+      channel.close();
+      throw new IOException("The item store in " + directory + " is already in use.");
+   }
+
+   /**
+    * @return The directory in which this store is persisted.
+    */
+   public Path getDirectory()
+   {
+      return directory;
+   }
+
+   /**
+    * @return The number of items held in this store.
+    */
+   public int size()
+   {
+      return index.size();
+   }
+
+   /**
+    * @param type The type of library.
+    * @param libraryId The id of the library.
+    * @return The library version as of which all items stored for the library are known to
+    *       be current, or {@code -1} if no items have been validated for the library.
+    */
+   public int getLibraryVersion(ZoteroLibrary.Type type, String libraryId)
+   {
+      return libraryVersions.getOrDefault(libraryKey(type, libraryId), Integer.valueOf(-1)).intValue();
+   }
+
+   /**
+    * @param type The type of library.
+    * @param libraryId The id of the library.
+    * @param itemKey The key of the item.
+    * @return The version of the stored item or {@code -1} if no item is stored for this key.
+    */
+   public int getVersion(ZoteroLibrary.Type type, String libraryId, String itemKey)
+   {
+      Entry entry = index.get(itemKey(type, libraryId, itemKey));
+      return entry != null ? entry.version : -1;
+   }
+
+   /**
+    * @param type The type of library.
+    * @param libraryId The id of the library.
+    * @param itemKey The key of the item.
+    * @return The stored item or {@code null} if no item is stored for this key or it could not
+    *       be read.
+    */
+   public RestApiV3.Item get(ZoteroLibrary.Type type, String libraryId, String itemKey)
+   {
+      String key = itemKey(type, libraryId, itemKey);
+      Entry entry = null;
+      segmentLock.readLock().lock();
+      try
+      {
+         entry = index.get(key);
+         if (entry == null)
+            return null;
+
+         ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+         long position = entry.offset;
+         while (buffer.hasRemaining())
+         {
+            int read = segment.read(buffer, position);
+            if (read < 0)
+               throw new EOFException("Unexpected end of segment file " + directory.resolve(SEGMENT_FILE));
+            position += read;
+         }
+
+         return mapper.readValue(buffer.array(), RestApiV3.Item.class);
+      }
+      catch (IOException ex)
+      {
+         logger.log(Level.WARNING, "Failed to read cached item " + key, ex);
+         index.remove(key, entry);
+         return null;
+      }
+      finally
+      {
+         segmentLock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Stores the supplied item, replacing any previously stored version of it. Items older
+    * than the currently stored version are ignored.
+    *
+    * @param type The type of library.
+    * @param libraryId The id of the library.
+    * @param item The item to store.
+    */
+   public void put(ZoteroLibrary.Type type, String libraryId, RestApiV3.Item item)
+   {
+      put(type, libraryId, item, false, 0);
+   }
+
+   /**
+    * Stores the supplied item, provided that the library has not been validated since the
+    * item was requested. Otherwise, the item may pre-date a change that the validation has
+    * already accounted for, and storing it would cause a stale copy to be treated as current.
+    * Items older than the currently stored version are ignored.
+    *
+    * @param type The type of library.
+    * @param libraryId The id of the library.
+    * @param item The item to store.
+    * @param libraryVersion The library version returned by
+    *       {@link #getLibraryVersion(ZoteroLibrary.Type, String)} before the item was requested.
+    */
+   public void put(ZoteroLibrary.Type type, String libraryId, RestApiV3.Item item, int libraryVersion)
+   {
+      put(type, libraryId, item, true, libraryVersion);
+   }
+
+   private void put(ZoteroLibrary.Type type, String libraryId, RestApiV3.Item item, boolean checkVersion, int libraryVersion)
+   {
+      String key = itemKey(type, libraryId, item.key);
+      try
+      {
+         byte[] payload = mapper.writeValueAsBytes(item);
+         synchronized (this)
+         {
+            if (checkVersion && getLibraryVersion(type, libraryId) != libraryVersion)
+               return;
+
+            Entry current = index.get(key);
+            if (current != null && current.version > item.version)
+               return;
+
+            long offset = segment.size();
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            while (buffer.hasRemaining())
+               segment.write(buffer, offset + buffer.position());
+
+            Entry entry = new Entry(item.version, offset, payload.length);
+            writeIndex(key, entry);
+            index.put(key, entry);
+         }
+      }
+      catch (IOException ex)
+      {
+         logger.log(Level.WARNING, "Failed to store item " + key, ex);
+      }
+   }
+
+   /**
+    * Removes an item from the store.
+    *
+    * @param type The type of library.
+    * @param libraryId The id of the library.
+    * @param itemKey The key of the item to remove.
+    */
+   public void remove(ZoteroLibrary.Type type, String libraryId, String itemKey)
+   {
+      String key = itemKey(type, libraryId, itemKey);
+      synchronized (this)
+      {
+         if (index.remove(key) == null)
+            return;
+
+         try
+         {
+            writeIndex(key, new Entry(REMOVED, -1, 0));
+         }
+         catch (IOException ex)
+         {
+            logger.log(Level.WARNING, "Failed to remove item " + key, ex);
+         }
+      }
+   }
+
+   /**
+    * Removes any stored items that are no longer current and advances the version of the
+    * library.
+    *
+    * @param type The type of library.
+    * @param libraryId The id of the library.
+    * @param versions The current versions of items in the library that have been modified
+    *       since the library version returned by {@link #getLibraryVersion(ZoteroLibrary.Type, String)},
+    *       keyed by item key.
+    * @param complete {@code true} if the supplied versions include every item in the library
+    *       rather than only those that have been modified. If so, stored items that are not
+    *       present in {@code versions} will be removed.
+    * @param libraryVersion The library version as of which the supplied item versions were
+    *       retrieved.
+    */
+   public void validate(ZoteroLibrary.Type type, String libraryId, Map<String, Integer> versions, boolean complete, int libraryVersion)
+   {
+      String prefix = libraryKey(type, libraryId) + "/";
+      synchronized (this)
+      {
+         if (complete)
+         {
+            index.keySet().stream()
+                  .filter(key -> key.startsWith(prefix))
+                  .filter(key -> !versions.containsKey(key.substring(prefix.length())))
+                  .forEach(key -> remove(type, libraryId, key.substring(prefix.length())));
+         }
+
+         versions.forEach((itemKey, version) -> {
+            if (getVersion(type, libraryId, itemKey) != version.intValue())
+               remove(type, libraryId, itemKey);
+         });
+
+         libraryVersions.put(libraryKey(type, libraryId), Integer.valueOf(libraryVersion));
+         saveLibraryVersions();
+      }
+   }
+
+   /**
+    * Rewrites the segment and index files so that they contain only the current version of
+    * each stored item.
+    *
+    * @throws IOException If the store could not be rewritten. The existing files are
+    *       retained in this case.
+    */
+   public synchronized void compact() throws IOException
+   {
+      Path segmentTmp = directory.resolve(SEGMENT_FILE + ".tmp");
+      Path indexTmp = directory.resolve(INDEX_FILE + ".tmp");
+
+      Map<String, Entry> compacted = new HashMap<>();
+      try (FileChannel out = FileChannel.open(segmentTmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+           DataOutputStream idx = openIndex(indexTmp, false))
+      {
+         long offset = 0;
+         for (Map.Entry<String, Entry> e : index.entrySet())
+         {
+            Entry entry = e.getValue();
+            long transferred = 0;
+            while (transferred < entry.length)
+               transferred += segment.transferTo(entry.offset + transferred, entry.length - transferred, out);
+
+            Entry moved = new Entry(entry.version, offset, entry.length);
+            writeIndex(idx, e.getKey(), moved);
+            compacted.put(e.getKey(), moved);
+            offset += entry.length;
+         }
+
+         out.force(true);
+      }
+
+      // reads continue against the existing segment while it is copied, but must not observe
+      // the index and segment while one refers to the old file and the other to the new one
+      segmentLock.writeLock().lock();
+      try
+      {
+         closeFiles();
+         Files.move(segmentTmp, directory.resolve(SEGMENT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+         Files.move(indexTmp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+         index.clear();
+         index.putAll(compacted);
+         openFiles();
+      }
+      finally
+      {
+         segmentLock.writeLock().unlock();
+      }
+   }
+
+   @Override
+   public synchronized void close()
+   {
+      segmentLock.writeLock().lock();
+      try
+      {
+         if (segment != null)
+         {
+            segment.force(true);
+            closeFiles();
+         }
+      }
+      catch (IOException ex)
+      {
+         logger.log(Level.WARNING, "Failed to close item store " + directory, ex);
+      }
+      finally
+      {
+         segmentLock.writeLock().unlock();
+         try
+         {
+            lock.acquiredBy().close();
+         }
+         catch (IOException ex)
+         {
+            logger.log(Level.WARNING, "Failed to release the lock on item store " + directory, ex);
+         }
+      }
+   }
+
+   private long getLiveBytes()
+   {
+      return index.values().stream().mapToLong(entry -> entry.length).sum();
+   }
+
+   private void load() throws IOException
+   {
+      Path libraries = directory.resolve(LIBRARIES_FILE);
+      if (Files.exists(libraries))
+      {
+         Properties props = new Properties();
+         try (InputStream in = Files.newInputStream(libraries))
+         {
+            props.load(in);
+         }
+
+         for (String key : props.stringPropertyNames())
+         {
+            try
+            {
+               libraryVersions.put(key, Integer.valueOf(props.getProperty(key)));
+            }
+            catch (NumberFormatException ex)
+            {
+               logger.warning(() -> "Ignoring invalid version for cached library " + key);
+            }
+         }
+      }
+
+      openFiles();
+
+      Path indexFile = directory.resolve(INDEX_FILE);
+      long segmentSize = segment.size();
+      long validLength = 0;
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile))))
+      {
+         while (true)
+         {
+            String key = in.readUTF();
+            Entry entry = new Entry(in.readInt(), in.readLong(), in.readInt());
+            if (entry.version == REMOVED)
+               index.remove(key);
+            else if (entry.offset + entry.length <= segmentSize)
+               index.put(key, entry);
+
+            validLength += 2 + key.getBytes("UTF-8").length + 16;
+         }
+      }
+      catch (EOFException eof)
+      {
+         // discard any incomplete record written when the store was last closed
+         if (validLength < Files.size(indexFile))
+         {
+            indexOut.close();
+            try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.WRITE))
+            {
+               channel.truncate(validLength);
+            }
+            indexOut = openIndex(indexFile, true);
+         }
+      }
+   }
+
+   private void openFiles() throws IOException
+   {
+      segment = FileChannel.open(directory.resolve(SEGMENT_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      indexOut = openIndex(directory.resolve(INDEX_FILE), true);
+   }
+
+   private void closeFiles() throws IOException
+   {
+      try
+      {
+         if (indexOut != null)
+            indexOut.close();
+      }
+      finally
+      {
+         segment.close();
+      }
+   }
+
+   private static DataOutputStream openIndex(Path file, boolean append) throws IOException
+   {
+      OutputStream out = append
+            ? Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+            : Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      return new DataOutputStream(new BufferedOutputStream(out));
+   }
+
+   private void writeIndex(String key, Entry entry) throws IOException
+   {
+      writeIndex(indexOut, key, entry);
+      indexOut.flush();
+   }
+
+   private static void writeIndex(DataOutputStream out, String key, Entry entry) throws IOException
+   {
+      // write the record in one block so that a partially written record is detected on load
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream record = new DataOutputStream(bytes);
+      record.writeUTF(key);
+      record.writeInt(entry.version);
+      record.writeLong(entry.offset);
+      record.writeInt(entry.length);
+      bytes.writeTo(out);
+   }
+
+   private void saveLibraryVersions()
+   {
+      Properties props = new Properties();
+      libraryVersions.forEach((key, version) -> props.setProperty(key, version.toString()));
+
+      Path file = directory.resolve(LIBRARIES_FILE);
+      Path tmp = directory.resolve(LIBRARIES_FILE + ".tmp");
+      try
+      {
+         try (OutputStream out = Files.newOutputStream(tmp))
+         {
+            props.store(out, "Library versions of cached items");
+         }
+         Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (IOException ex)
+      {
+         logger.log(Level.WARNING, "Failed to save cached library versions to " + file, ex);
+      }
+   }
+
+   private static String libraryKey(ZoteroLibrary.Type type, String libraryId)
+   {
+      return type.name() + "/" + libraryId;
+   }
+
+   private static String itemKey(ZoteroLibrary.Type type, String libraryId, String itemKey)
+   {
+      return libraryKey(type, libraryId) + "/" + itemKey;
+   }
+
+   private static class Entry
+   {
+      final int version;
+      final long offset;
+      final int length;
+
+      Entry(int version, long offset, int length)
+      {
+         this.version = version;
+         this.offset = offset;
+         this.length = length;
+      }
+   }
+}
@@ -0,0 +1,155 @@
+package edu.tamu.tcat.zotero.basic.v3.cache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import edu.tamu.tcat.zotero.ZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.RestApiV3;
+import edu.tamu.tcat.zotero.basic.v3.commands.CommandPriority;
+import edu.tamu.tcat.zotero.basic.v3.commands.GetCollectionVersionsCommand;
+import edu.tamu.tcat.zotero.basic.v3.commands.GetDeletedCommand;
+import edu.tamu.tcat.zotero.basic.v3.commands.GetItemVersionsCommand;
+
+/**
+ * The changes made to a library since a given library version. This combines the versions of
+ * the items (and, optionally, collections) that have been modified with the keys of the
+ * objects that have been deleted, which the version listings do not report.
+ *
+ * <p>This is the single source of change information for the objects cached from a library,
+ * whether held in an {@link ItemStore} or a {@link NearCache}.
+ */
+public class LibraryChanges
+{
+   private final int since;
+   private final int libraryVersion;
+   private final Map<String, Integer> itemVersions;
+   private final Map<String, Integer> collectionVersions;
+   private final List<String> deletedItems;
+   private final List<String> deletedCollections;
+
+   private LibraryChanges(int since, RestApiV3.VersionList items, Map<String, Integer> collections, RestApiV3.DeletedObjects deleted)
+   {
+      this.since = since;
+      this.libraryVersion = items.lastModifiedVersion;
+      this.itemVersions = Collections.unmodifiableMap(items.versions);
+      this.collectionVersions = Collections.unmodifiableMap(collections);
+      this.deletedItems = deleted.items != null ? Collections.unmodifiableList(deleted.items) : Collections.emptyList();
+      this.deletedCollections = deleted.collections != null ? Collections.unmodifiableList(deleted.collections) : Collections.emptyList();
+   }
+
+   /**
+    * Requests the changes made to a library since the supplied version. If the version is
+    * zero or less, the versions of all objects in the library are requested and no deletions
+    * are reported.
+    *
+    * @param library The library to query.
+    * @param since The library version after which changes are to be reported.
+    * @param includeCollections {@code true} to request the versions of modified collections
+    *       in addition to modified items.
+    * @param priority The priority of the requests.
+    * @return A future that resolves to the changes.
+    */
+   public static CompletableFuture<LibraryChanges> fetch(BasicZoteroLibrary library, int since, boolean includeCollections, CommandPriority priority)
+   {
+      GetItemVersionsCommand versionsCmd = new GetItemVersionsCommand(library);
+      versionsCmd.setSince(since);
+      CompletableFuture<RestApiV3.VersionList> items = versionsCmd.execute(priority);
+
+      // a listing of every object does not need deletions
+      CompletableFuture<RestApiV3.DeletedObjects> deleted = CompletableFuture.completedFuture(new RestApiV3.DeletedObjects());
+      if (since > 0)
+      {
+         GetDeletedCommand deletedCmd = new GetDeletedCommand(library);
+         deletedCmd.setSince(since);
+         deleted = deletedCmd.execute(priority);
+      }
+
+      CompletableFuture<Map<String, Integer>> collections = CompletableFuture.completedFuture(Collections.emptyMap());
+      if (includeCollections)
+      {
+         GetCollectionVersionsCommand collectionsCmd = new GetCollectionVersionsCommand(library);
+         collectionsCmd.setSince(since);
+         collections = collectionsCmd.execute(priority).thenApply(result -> result.versions);
+      }
+
+      CompletableFuture<RestApiV3.DeletedObjects> deletedObjects = deleted;
+      CompletableFuture<Map<String, Integer>> collectionVersions = collections;
+      return CompletableFuture.allOf(items, deletedObjects, collectionVersions)
+            .thenApply(ignored -> new LibraryChanges(since, items.join(), collectionVersions.join(), deletedObjects.join()));
+   }
+
+   /**
+    * @return The library version from which these changes were requested.
+    */
+   public int getSince()
+   {
+      return since;
+   }
+
+   /**
+    * @return {@code true} if these changes list every object in the library rather than only
+    *       those modified since a previous version.
+    */
+   public boolean isComplete()
+   {
+      return since <= 0;
+   }
+
+   /**
+    * @return The version of the library as of these changes.
+    */
+   public int getLibraryVersion()
+   {
+      return libraryVersion;
+   }
+
+   /**
+    * @return The current versions of the modified items, keyed by item key.
+    */
+   public Map<String, Integer> getItemVersions()
+   {
+      return itemVersions;
+   }
+
+   /**
+    * @return The current versions of the modified collections, keyed by collection key. Empty
+    *       if collections were not requested.
+    */
+   public Map<String, Integer> getCollectionVersions()
+   {
+      return collectionVersions;
+   }
+
+   /**
+    * @return The keys of the items that have been deleted.
+    */
+   public List<String> getDeletedItems()
+   {
+      return deletedItems;
+   }
+
+   /**
+    * @return The keys of the collections that have been deleted.
+    */
+   public List<String> getDeletedCollections()
+   {
+      return deletedCollections;
+   }
+
+   /**
+    * Removes deleted and modified items from the supplied store and advances the store's
+    * version of the library to the version of these changes.
+    *
+    * @param store The store to update.
+    * @param type The type of the library.
+    * @param libraryId The id of the library.
+    */
+   public void applyTo(ItemStore store, ZoteroLibrary.Type type, String libraryId)
+   {
+      deletedItems.forEach(key -> store.remove(type, libraryId, key));
+      store.validate(type, libraryId, itemVersions, isComplete(), libraryVersion);
+   }
+}
@@ -0,0 +1,156 @@
+package edu.tamu.tcat.zotero.basic.v3.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import edu.tamu.tcat.zotero.ZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.RestApiV3;
+import edu.tamu.tcat.zotero.basic.v3.commands.CommandPriority;
+import edu.tamu.tcat.zotero.basic.v3.commands.GetItemsByKeyCommand;
+
+/**
+ * Maintains a local replica of the items in a library within an {@link ItemStore}.
+ *
+ * <p>Each call to {@link #synchronize()} retrieves only the changes made to the library since
+ * the library version recorded by the store, as reported by {@link LibraryChanges}. This
+ * requires a request for the versions of the items modified since that version, a request for
+ * the keys of deleted items and one request per {@link GetItemsByKeyCommand#MAX_KEYS}
+ * modified items. The first synchronization of a
+ * library retrieves every item. Requests are issued with {@link CommandPriority#BULK} priority
+ * so that they do not delay interactive requests.
+ *
+ * <p>The library version recorded by the store is advanced only once all modified items have
+ * been stored and all deleted items removed. If a synchronization fails, the next
+ * synchronization will retrieve the same changes again. Items that are modified while a
+ * synchronization is in progress will be retrieved by the following synchronization.
+ *
+ * <p>Synchronizers are not thread safe. Clients should not start a synchronization until the
+ * previous synchronization of the same library has completed.
+ */
+public class LibrarySynchronizer
+{
+   private static final Logger logger = Logger.getLogger(LibrarySynchronizer.class.getName());
+
+   private final BasicZoteroLibrary library;
+   private final ItemStore store;
+
+   private final ZoteroLibrary.Type type;
+   private final String libraryId;
+
+   /**
+    * @param library The library to replicate.
+    * @param store The store in which to maintain the replica.
+    */
+   public LibrarySynchronizer(BasicZoteroLibrary library, ItemStore store)
+   {
+      this.library = Objects.requireNonNull(library, "No library supplied");
+      this.store = Objects.requireNonNull(store, "No item store supplied");
+
+      this.type = library.getType();
+      this.libraryId = library.getId();
+   }
+
+   /**
+    * @return The version of the library as of the most recent successful synchronization, or
+    *       {@code -1} if the library has not been synchronized.
+    */
+   public int getLibraryVersion()
+   {
+      return store.getLibraryVersion(type, libraryId);
+   }
+
+   /**
+    * Retrieves all items that have been modified in the library since the last
+    * synchronization and removes all items that have been deleted.
+    *
+    * @return A future that resolves to a summary of the changes applied to the local replica.
+    */
+   public CompletableFuture<Result> synchronize()
+   {
+      return LibraryChanges.fetch(library, getLibraryVersion(), false, CommandPriority.BULK)
+            .thenCompose(changes -> fetchModifiedItems(changes).thenApply(updatedKeys -> {
+               changes.applyTo(store, type, libraryId);
+
+               List<String> deletedKeys = changes.getDeletedItems();
+               logger.fine(() -> "Synchronized library " + libraryId + " to version " + changes.getLibraryVersion()
+                     + ": " + updatedKeys.size() + " updated, " + deletedKeys.size() + " deleted.");
+               return new Result(changes.getLibraryVersion(), updatedKeys, deletedKeys);
+            }));
+   }
+
+   /**
+    * Requests the items whose current version differs from the version held by the store and
+    * stores them.
+    *
+    * @return A future that resolves to the keys of the stored items.
+    */
+   private CompletableFuture<List<String>> fetchModifiedItems(LibraryChanges changes)
+   {
+      List<String> modified = changes.getItemVersions().entrySet().stream()
+            .filter(e -> store.getVersion(type, libraryId, e.getKey()) != e.getValue().intValue())
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+
+      List<CompletableFuture<List<RestApiV3.Item>>> batches = new ArrayList<>();
+      for (int start = 0; start < modified.size(); start += GetItemsByKeyCommand.MAX_KEYS)
+      {
+         int end = Math.min(start + GetItemsByKeyCommand.MAX_KEYS, modified.size());
+         batches.add(new GetItemsByKeyCommand(library, modified.subList(start, end)).execute(CommandPriority.BULK)
+               .thenApply(items -> {
+                  items.forEach(item -> store.put(type, libraryId, item));
+                  return items;
+               }));
+      }
+
+      return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[batches.size()]))
+            .thenApply(ignored -> modified);
+   }
+
+   /**
+    * Summarizes the changes applied by a single synchronization.
+    */
+   public static class Result
+   {
+      private final int libraryVersion;
+      private final List<String> updated;
+      private final List<String> deleted;
+
+      Result(int libraryVersion, List<String> updated, List<String> deleted)
+      {
+         this.libraryVersion = libraryVersion;
+         this.updated = Collections.unmodifiableList(updated);
+         this.deleted = Collections.unmodifiableList(deleted);
+      }
+
+      /**
+       * @return The version of the library as of this synchronization.
+       */
+      public int getLibraryVersion()
+      {
+         return libraryVersion;
+      }
+
+      /**
+       * @return The keys of items that were added or modified.
+       */
+      public List<String> getUpdatedKeys()
+      {
+         return updated;
+      }
+
+      /**
+       * @return The keys of items that were deleted.
+       */
+      public List<String> getDeletedKeys()
+      {
+         return deleted;
+      }
+   }
+}
@@ -0,0 +1,314 @@
+package edu.tamu.tcat.zotero.basic.v3.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.tamu.tcat.zotero.Item;
+import edu.tamu.tcat.zotero.ItemCreator;
+import edu.tamu.tcat.zotero.ZoteroCollection;
+import edu.tamu.tcat.zotero.types.ItemFieldType;
+
+/**
+ * An in-memory cache of the objects retrieved from a single library.
+ *
+ * <p>The cache is bounded by the estimated size in bytes of the objects it holds rather than
+ * by the number of objects. When adding an object would exceed the configured limit, the
+ * least recently used objects are evicted.
+ *
+ * <p>Each object is stored along with its version. An object will not be replaced by an
+ * older version of the same object, and {@link #invalidate(String, int)} may be used to
+ * discard objects that are older than the current version reported by the server. The
+ * library version up to which the cache has been validated is recorded for use in
+ * subsequent validation requests.
+ *
+ * <p>Hit, miss and eviction counts are maintained so that the cache can be sized
+ * appropriately. See {@link #getStats()}.
+ */
+public class NearCache
+{
+   private final long maxWeight;
+
+   // all guarded by this
+   private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+   private long weight = 0;
+   private int libraryVersion = -1;
+
+   private long hits = 0;
+   private long misses = 0;
+   private long evictions = 0;
+
+   /**
+    * @param maxWeight The maximum estimated size in bytes of the objects held by this cache.
+    */
+   public NearCache(long maxWeight)
+   {
+      if (maxWeight <= 0)
+         throw new IllegalArgumentException("The maximum size of the cache must be positive.");
+
+      this.maxWeight = maxWeight;
+   }
+
+   /**
+    * @param key The key of the object to retrieve.
+    * @param type The expected type of the object.
+    * @return The cached object, or {@code null} if no object of the supplied type is cached
+    *       for this key.
+    */
+   public synchronized <V> V get(String key, Class<V> type)
+   {
+      Entry entry = entries.get(key);
+      if (entry == null || !type.isInstance(entry.value))
+      {
+         misses++;
+         return null;
+      }
+
+      hits++;
+      return type.cast(entry.value);
+   }
+
+   /**
+    * Retrieves an object without recording a hit or miss. This is intended for retrieving
+    * objects that will be re-validated with the server, for example by a conditional request.
+    *
+    * @param key The key of the object to retrieve.
+    * @param type The expected type of the object.
+    * @return The cached object, or {@code null} if no object of the supplied type is cached
+    *       for this key.
+    */
+   public synchronized <V> V peek(String key, Class<V> type)
+   {
+      Entry entry = entries.get(key);
+      return entry != null && type.isInstance(entry.value) ? type.cast(entry.value) : null;
+   }
+
+   /**
+    * @return The version of the cached object, or {@code -1} if the object is not cached.
+    */
+   public synchronized int getVersion(String key)
+   {
+      Entry entry = entries.get(key);
+      return entry == null ? -1 : entry.version;
+   }
+
+   /**
+    * Adds an object to the cache, evicting the least recently used objects as needed. Objects
+    * that are older than the currently cached version, or that are larger than the cache,
+    * are ignored.
+    *
+    * @param key The key of the object.
+    * @param version The version of the object.
+    * @param value The object to cache.
+    * @param size The estimated size of the object in bytes.
+    */
+   public synchronized void put(String key, int version, Object value, long size)
+   {
+      Entry current = entries.get(key);
+      if (current != null && current.version > version)
+         return;
+
+      if (current != null)
+         remove(key);
+
+      if (size > maxWeight)
+         return;
+
+      entries.put(key, new Entry(version, value, size));
+      weight += size;
+
+      Iterator<Entry> lru = entries.values().iterator();
+      while (weight > maxWeight && lru.hasNext())
+      {
+         Entry eldest = lru.next();
+         lru.remove();
+         weight -= eldest.size;
+         evictions++;
+      }
+   }
+
+   /**
+    * Removes an object from the cache if the cached copy is older than the supplied version.
+    *
+    * @param key The key of the object.
+    * @param version The current version of the object.
+    */
+   public synchronized void invalidate(String key, int version)
+   {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.version < version)
+         remove(key);
+   }
+
+   /**
+    * Removes an object from the cache.
+    *
+    * @param key The key of the object.
+    */
+   public synchronized void remove(String key)
+   {
+      Entry entry = entries.remove(key);
+      if (entry != null)
+         weight -= entry.size;
+   }
+
+   /**
+    * @return The library version up to which cached objects have been validated, or
+    *       {@code -1} if they have not yet been validated.
+    */
+   public synchronized int getLibraryVersion()
+   {
+      return libraryVersion;
+   }
+
+   /**
+    * @param version The library version up to which cached objects have been validated.
+    */
+   public synchronized void setLibraryVersion(int version)
+   {
+      this.libraryVersion = Math.max(libraryVersion, version);
+   }
+
+   /**
+    * @return A snapshot of the usage statistics for this cache.
+    */
+   public synchronized Stats getStats()
+   {
+      return new Stats(hits, misses, evictions, entries.size(), weight, maxWeight);
+   }
+
+   /**
+    * @return A rough estimate of the memory used by an item, in bytes.
+    */
+   public static long estimateSize(Item item)
+   {
+      long size = 256 + chars(item.getId());
+      if (item.getItemType() != null)
+      {
+         for (ItemFieldType field : item.getItemType().getFields())
+            size += 48 + chars(item.getFieldValue(field));
+      }
+      for (ItemCreator creator : item.getCreators())
+         size += 64 + chars(creator.getName()) + chars(creator.getGivenName()) + chars(creator.getFamilyName());
+      for (String tag : item.getTags())
+         size += 48 + chars(tag);
+
+      return size;
+   }
+
+   /**
+    * @return A rough estimate of the memory used by a collection, in bytes.
+    */
+   public static long estimateSize(ZoteroCollection collection)
+   {
+      return 128 + chars(collection.getId()) + chars(collection.getName());
+   }
+
+   private static long chars(String value)
+   {
+      return value == null ? 0 : 2L * value.length();
+   }
+
+   private static class Entry
+   {
+      private final int version;
+      private final Object value;
+      private final long size;
+
+      Entry(int version, Object value, long size)
+      {
+         this.version = version;
+         this.value = value;
+         this.size = size;
+      }
+   }
+
+   /**
+    * Usage statistics of a {@link NearCache} at a point in time.
+    */
+   public static class Stats
+   {
+      private final long hitCount;
+      private final long missCount;
+      private final long evictionCount;
+      private final int size;
+      private final long weight;
+      private final long maxWeight;
+
+      Stats(long hitCount, long missCount, long evictionCount, int size, long weight, long maxWeight)
+      {
+         this.hitCount = hitCount;
+         this.missCount = missCount;
+         this.evictionCount = evictionCount;
+         this.size = size;
+         this.weight = weight;
+         this.maxWeight = maxWeight;
+      }
+
+      /**
+       * @return The number of lookups that found a cached object.
+       */
+      public long getHitCount()
+      {
+         return hitCount;
+      }
+
+      /**
+       * @return The number of lookups that did not find a cached object.
+       */
+      public long getMissCount()
+      {
+         return missCount;
+      }
+
+      /**
+       * @return The fraction of lookups that found a cached object, or {@code 0} if no
+       *       lookups have been performed.
+       */
+      public double getHitRate()
+      {
+         long total = hitCount + missCount;
+         return total == 0 ? 0 : (double)hitCount / total;
+      }
+
+      /**
+       * @return The number of objects evicted to keep the cache within its size limit.
+       *       Objects removed because they are out of date are not counted.
+       */
+      public long getEvictionCount()
+      {
+         return evictionCount;
+      }
+
+      /**
+       * @return The number of cached objects.
+       */
+      public int getSize()
+      {
+         return size;
+      }
+
+      /**
+       * @return The estimated size in bytes of the cached objects.
+       */
+      public long getWeight()
+      {
+         return weight;
+      }
+
+      /**
+       * @return The maximum estimated size in bytes of the cached objects.
+       */
+      public long getMaxWeight()
+      {
+         return maxWeight;
+      }
+
+      @Override
+      public String toString()
+      {
+         return "NearCache.Stats [hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount
+               + ", size=" + size + ", weight=" + weight + "/" + maxWeight + "]";
+      }
+   }
+}
@@ -0,0 +1,142 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * Allows a request that is in progress to be aborted from another thread. Aborting a request
+ * shuts down the connection on which it was sent, which releases the thread waiting for the
+ * response and ensures that the connection is not returned to the pool.
+ *
+ * <p>The handle is attached to an invocation using the {@link #PROPERTY} property.
+ * {@link Filter} associates it with the thread that sends the request, and
+ * {@link ConnectionManager} associates it with the connection that is leased by that thread.
+ * Connections leased for a request that has already been aborted (for example, when the
+ * request is re-attempted by the HTTP client) are shut down before they are used.
+ */
+class AbortableRequest
+{
+   private static final Logger logger = Logger.getLogger(AbortableRequest.class.getName());
+
+   /** The request property that holds the handle for an individual request. */
+   static final String PROPERTY = AbortableRequest.class.getName();
+
+   /** The handle for the request being sent by the current thread, if any. */
+   private static final ThreadLocal<AbortableRequest> current = new ThreadLocal<>();
+
+   // guarded by this
+   private HttpClientConnection connection;
+   private boolean aborted = false;
+
+   /**
+    * Aborts the request, shutting down its connection if one has been leased.
+    */
+   void abort()
+   {
+      HttpClientConnection conn;
+      synchronized (this)
+      {
+         aborted = true;
+         conn = connection;
+         connection = null;
+      }
+
+      if (conn != null)
+         shutdown(conn);
+   }
+
+   /**
+    * Detaches the request from its connection once the response has been handled, so that
+    * the connection may be re-used by other requests.
+    */
+   synchronized void release()
+   {
+      connection = null;
+   }
+
+   /**
+    * @return {@code true} if the connection may be used to send the request, {@code false}
+    *       if the request has been aborted.
+    */
+   private synchronized boolean attach(HttpClientConnection conn)
+   {
+      if (aborted)
+         return false;
+
+      connection = conn;
+      return true;
+   }
+
+   private static void shutdown(HttpClientConnection conn)
+   {
+      try
+      {
+         conn.shutdown();
+      }
+      catch (IOException ex)
+      {
+         logger.log(Level.FINE, "Failed to shut down the connection of an aborted request.", ex);
+      }
+   }
+
+   static class Filter implements ClientRequestFilter
+   {
+      @Override
+      public void filter(ClientRequestContext request)
+      {
+         // the connector leases a connection on the thread that runs the request filters
+         Object property = request.getProperty(PROPERTY);
+         current.set(property instanceof AbortableRequest ? (AbortableRequest)property : null);
+      }
+   }
+
+   /**
+    * A connection pool that associates the connections it leases with the request being sent
+    * by the leasing thread.
+    */
+   static class ConnectionManager extends PoolingHttpClientConnectionManager
+   {
+      @Override
+      public ConnectionRequest requestConnection(HttpRoute route, Object state)
+      {
+         ConnectionRequest request = super.requestConnection(route, state);
+         AbortableRequest owner = current.get();
+         if (owner == null)
+            return request;
+
+         return new ConnectionRequest()
+         {
+            @Override
+            public HttpClientConnection get(long timeout, TimeUnit unit)
+                  throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException
+            {
+               HttpClientConnection conn = request.get(timeout, unit);
+               if (owner.attach(conn))
+                  return conn;
+
+               AbortableRequest.shutdown(conn);
+               releaseConnection(conn, null, 0, TimeUnit.MILLISECONDS);
+               throw new ExecutionException(new IOException("The request was aborted."));
+            }
+
+            @Override
+            public boolean cancel()
+            {
+               return request.cancel();
+            }
+         };
+      }
+   }
+}
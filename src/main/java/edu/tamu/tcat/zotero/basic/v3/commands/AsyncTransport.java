@@ -0,0 +1,59 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.core.Response;
+
+/**
+ * Issues requests using the asynchronous invocation API of the JAX-RS client.
+ *
+ * <p>The Apache connector used by the executor performs blocking I/O, so Jersey implements
+ * asynchronous invocation by running the request on a thread from its own pool. This transport
+ * is therefore a thread hop rather than non-blocking I/O: it releases the thread that
+ * dispatched the command, while the request occupies one of Jersey's threads until its
+ * response has been received. The executor bounds Jersey's pool to the size of the
+ * connection pool.
+ */
+class AsyncTransport implements CommandTransport
+{
+   static final AsyncTransport INSTANCE = new AsyncTransport();
+
+   @Override
+   public CompletableFuture<Response> send(Invocation invocation)
+   {
+      CompletableFuture<Response> result = new CompletableFuture<>();
+      try
+      {
+         Future<Response> request = invocation.submit(new InvocationCallback<Response>()
+         {
+            @Override
+            public void completed(Response response)
+            {
+               if (!result.complete(response))
+                  response.close();
+            }
+
+            @Override
+            public void failed(Throwable ex)
+            {
+               result.completeExceptionally(ex);
+            }
+         });
+
+         // propagate cancellation to the underlying request
+         result.whenComplete((resp, ex) -> {
+            if (result.isCancelled())
+               request.cancel(true);
+         });
+      }
+      catch (RuntimeException ex)
+      {
+         result.completeExceptionally(ex);
+      }
+
+      return result;
+   }
+}
@@ -0,0 +1,30 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.util.concurrent.CompletableFuture;
+
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.Response;
+
+/**
+ * Issues requests synchronously on the calling thread.
+ */
+class BlockingTransport implements CommandTransport
+{
+   static final BlockingTransport INSTANCE = new BlockingTransport();
+
+   @Override
+   public CompletableFuture<Response> send(Invocation invocation)
+   {
+      CompletableFuture<Response> result = new CompletableFuture<>();
+      try
+      {
+         result.complete(invocation.invoke());
+      }
+      catch (Throwable ex)
+      {
+         result.completeExceptionally(ex);
+      }
+
+      return result;
+   }
+}
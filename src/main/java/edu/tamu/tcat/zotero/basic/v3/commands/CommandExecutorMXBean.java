@@ -0,0 +1,47 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+/**
+ * Management interface that publishes the current load of a {@link ZoteroCommandExecutor}.
+ */
+public interface CommandExecutorMXBean
+{
+   /**
+    * @return The number of submitted commands whose requests have not yet been sent, including
+    *       commands waiting on rate limits, back-off requests or a retry.
+    */
+   int getQueuedCount();
+
+   /**
+    * @return The number of commands whose requests have been sent but whose responses have
+    *       not yet been handled.
+    */
+   int getInFlightCount();
+
+   /**
+    * @return The number of commands that have completed, successfully or not.
+    */
+   long getCompletedCount();
+
+   /**
+    * @return The number of commands that were rejected or shed because too many commands
+    *       were queued.
+    */
+   long getRejectedCount();
+
+   /**
+    * @return The number of completed commands that exceeded the slow command threshold.
+    */
+   long getSlowCount();
+
+   /**
+    * @return The number of threads that are currently dispatching commands, or {@code -1} if
+    *       commands are not dispatched by a thread pool.
+    */
+   int getActiveThreadCount();
+
+   /**
+    * @return The number of threads available to dispatch commands, or {@code -1} if commands
+    *       are not dispatched by a thread pool.
+    */
+   int getPoolSize();
+}
@@ -0,0 +1,420 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Records metrics for the commands executed by a {@link ZoteroCommandExecutor}. Metrics are
+ * maintained separately for each type of command and each library the command is executed
+ * against, and include the time commands spend waiting to be sent, request latency, the time
+ * taken to handle responses, the size of responses, the HTTP status codes received and the
+ * number of retries.
+ *
+ * <p>Gauges report the number of commands that are queued, in flight and completed, allowing
+ * saturation of the executor to be observed as it occurs.
+ *
+ * <p>Metrics may be retrieved programmatically using {@link #snapshot()}. They are also
+ * published as platform MBeans named
+ * {@code edu.tamu.tcat.zotero:type=CommandMetrics,executor=<name>,command=<command>,library=<library>}
+ * (see {@link CommandMetricsMXBean}) and the gauges as
+ * {@code edu.tamu.tcat.zotero:type=CommandExecutor,executor=<name>} until the executor is
+ * closed.
+ */
+public class CommandMetrics implements CommandExecutorMXBean
+{
+   private static final Logger logger = Logger.getLogger(CommandMetrics.class.getName());
+
+   /** The JMX domain used to publish metrics. */
+   public static final String DOMAIN = "edu.tamu.tcat.zotero";
+
+   private static final AtomicInteger executorCount = new AtomicInteger();
+
+   private final String name;
+   private final ExecutorService dispatcher;
+   private final ConcurrentHashMap<String, Recorder> recorders = new ConcurrentHashMap<>();
+   private volatile boolean closed = false;
+
+   private final AtomicInteger queued = new AtomicInteger();
+   private final AtomicInteger inFlight = new AtomicInteger();
+   private final LongAdder completed = new LongAdder();
+   private final LongAdder slow = new LongAdder();
+   private final LongAdder rejected = new LongAdder();
+
+   /**
+    * @param dispatcher The executor service used to dispatch commands.
+    */
+   CommandMetrics(ExecutorService dispatcher)
+   {
+      this.name = "executor-" + executorCount.incrementAndGet();
+      this.dispatcher = dispatcher;
+
+      register(this, gaugeName());
+   }
+
+   /**
+    * @return The name that identifies these metrics among those published for other
+    *       executors in the same JVM.
+    */
+   public String getName()
+   {
+      return name;
+   }
+
+   @Override
+   public int getQueuedCount()
+   {
+      return queued.get();
+   }
+
+   @Override
+   public int getInFlightCount()
+   {
+      return inFlight.get();
+   }
+
+   @Override
+   public long getCompletedCount()
+   {
+      return completed.sum();
+   }
+
+   @Override
+   public long getRejectedCount()
+   {
+      return rejected.sum();
+   }
+
+   @Override
+   public long getSlowCount()
+   {
+      return slow.sum();
+   }
+
+   @Override
+   public int getActiveThreadCount()
+   {
+      return dispatcher instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor)dispatcher).getActiveCount() : -1;
+   }
+
+   @Override
+   public int getPoolSize()
+   {
+      return dispatcher instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor)dispatcher).getCorePoolSize() : -1;
+   }
+
+   /**
+    * Updates the gauges to reflect a command moving from one phase of execution to another.
+    *
+    * @param from The phase the command is leaving, or {@code null} if it was just submitted.
+    * @param to The phase the command is entering.
+    */
+   void transition(Phase from, Phase to)
+   {
+      if (from == Phase.QUEUED)
+         queued.decrementAndGet();
+      else if (from == Phase.IN_FLIGHT)
+         inFlight.decrementAndGet();
+
+      if (to == Phase.QUEUED)
+         queued.incrementAndGet();
+      else if (to == Phase.IN_FLIGHT)
+         inFlight.incrementAndGet();
+      else
+         completed.increment();
+   }
+
+   void recordRejected()
+   {
+      rejected.increment();
+   }
+
+   void recordSlow()
+   {
+      slow.increment();
+   }
+
+   /**
+    * @return The current metrics for each type of command and library, ordered by command
+    *       and then by library.
+    */
+   public List<CommandStats> snapshot()
+   {
+      List<CommandStats> stats = new ArrayList<>();
+      new TreeMap<>(recorders).values().forEach(recorder -> stats.add(recorder.snapshot()));
+      return stats;
+   }
+
+   /**
+    * @param command The name of the command class.
+    * @param library The library the command was executed against, or {@code null} for
+    *       commands that are not scoped to a library.
+    * @return The current metrics for the identified command, or {@code null} if no such
+    *       command has been executed.
+    */
+   public CommandStats getStats(String command, String library)
+   {
+      Recorder recorder = recorders.get(toKey(command, library));
+      return recorder == null ? null : recorder.snapshot();
+   }
+
+   /**
+    * @return The recorder for the supplied command, creating and publishing it if needed.
+    */
+   Recorder recorder(String command, String library)
+   {
+      return recorders.computeIfAbsent(toKey(command, library), key -> {
+         Recorder recorder = new Recorder(command, library);
+         if (!closed)
+            register(recorder, toObjectName(recorder));
+         return recorder;
+      });
+   }
+
+   /**
+    * Removes the published MBeans. Metrics remain available through {@link #snapshot()}.
+    */
+   void close()
+   {
+      closed = true;
+      unregister(gaugeName());
+      recorders.values().forEach(recorder -> unregister(toObjectName(recorder)));
+   }
+
+   private static String toKey(String command, String library)
+   {
+      return command + "\u0000" + Objects.toString(library, "");
+   }
+
+   private String gaugeName()
+   {
+      return DOMAIN + ":type=CommandExecutor,executor=" + ObjectName.quote(name);
+   }
+
+   private String toObjectName(Recorder recorder)
+   {
+      return DOMAIN + ":type=CommandMetrics"
+            + ",executor=" + ObjectName.quote(name)
+            + ",command=" + ObjectName.quote(recorder.command)
+            + ",library=" + ObjectName.quote(Objects.toString(recorder.library, "none"));
+   }
+
+   private static void register(Object mbean, String objectName)
+   {
+      try
+      {
+         MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+         server.registerMBean(mbean, new ObjectName(objectName));
+      }
+      catch (JMException | RuntimeException ex)
+      {
+         logger.log(Level.FINE, "Failed to publish metrics as " + objectName, ex);
+      }
+   }
+
+   private static void unregister(String objectName)
+   {
+      try
+      {
+         MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+         ObjectName name = new ObjectName(objectName);
+         if (server.isRegistered(name))
+            server.unregisterMBean(name);
+      }
+      catch (JMException | RuntimeException ex)
+      {
+         logger.log(Level.FINE, "Failed to remove metrics published as " + objectName, ex);
+      }
+   }
+
+   /**
+    * The phases of execution tracked by the gauges.
+    */
+   enum Phase
+   {
+      /** Submitted, but the request has not been sent. */
+      QUEUED,
+
+      /** The request has been sent, but the response has not been handled. */
+      IN_FLIGHT,
+
+      /** The command has completed. */
+      DONE
+   }
+
+   /**
+    * Accumulates the metrics for a single type of command and library.
+    */
+   static class Recorder implements CommandMetricsMXBean
+   {
+      private final String command;
+      private final String library;
+
+      private final LongAdder count = new LongAdder();
+      private final LongAdder failures = new LongAdder();
+      private final LongAdder retries = new LongAdder();
+      private final Histogram queueWait = new Histogram();
+      private final Histogram latency = new Histogram();
+      private final Histogram decodeTime = new Histogram();
+      private final TransferCounter.Tally transfer = new TransferCounter.Tally();
+      private final ConcurrentHashMap<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+
+      Recorder(String command, String library)
+      {
+         this.command = command;
+         this.library = library;
+      }
+
+      void recordQueueWait(long nanos)
+      {
+         queueWait.record(nanos);
+      }
+
+      void recordResponse(int status, long nanos)
+      {
+         latency.record(nanos);
+         statusCounts.computeIfAbsent(Integer.valueOf(status), k -> new LongAdder()).increment();
+      }
+
+      void recordDecode(long nanos)
+      {
+         decodeTime.record(nanos);
+      }
+
+      void recordRetry()
+      {
+         retries.increment();
+      }
+
+      void recordCompletion(boolean failed)
+      {
+         count.increment();
+         if (failed)
+            failures.increment();
+      }
+
+      /**
+       * @return The tally to which the bytes of responses to this command are added.
+       */
+      TransferCounter.Tally getTransferTally()
+      {
+         return transfer;
+      }
+
+      CommandStats snapshot()
+      {
+         Map<Integer, Long> statuses = new TreeMap<>();
+         statusCounts.forEach((status, n) -> statuses.put(status, Long.valueOf(n.sum())));
+
+         return new CommandStats(command, library, count.sum(), failures.sum(), retries.sum(),
+               queueWait.snapshot(), latency.snapshot(), decodeTime.snapshot(),
+               transfer.getReceived(), transfer.getDecoded(), statuses);
+      }
+
+      @Override
+      public String getCommand()
+      {
+         return command;
+      }
+
+      @Override
+      public String getLibrary()
+      {
+         return library;
+      }
+
+      @Override
+      public long getCount()
+      {
+         return count.sum();
+      }
+
+      @Override
+      public long getFailureCount()
+      {
+         return failures.sum();
+      }
+
+      @Override
+      public long getRetryCount()
+      {
+         return retries.sum();
+      }
+
+      @Override
+      public double getMeanQueueWait()
+      {
+         return queueWait.snapshot().getMeanMillis();
+      }
+
+      @Override
+      public double getMeanLatency()
+      {
+         return latency.snapshot().getMeanMillis();
+      }
+
+      @Override
+      public double getLatency50thPercentile()
+      {
+         return latency.snapshot().getPercentileMillis(50);
+      }
+
+      @Override
+      public double getLatency95thPercentile()
+      {
+         return latency.snapshot().getPercentileMillis(95);
+      }
+
+      @Override
+      public double getLatency99thPercentile()
+      {
+         return latency.snapshot().getPercentileMillis(99);
+      }
+
+      @Override
+      public double getMaxLatency()
+      {
+         return latency.snapshot().getMaxMillis();
+      }
+
+      @Override
+      public double getMeanDecodeTime()
+      {
+         return decodeTime.snapshot().getMeanMillis();
+      }
+
+      @Override
+      public long getResponseBytes()
+      {
+         return transfer.getReceived();
+      }
+
+      @Override
+      public long getDecodedBytes()
+      {
+         return transfer.getDecoded();
+      }
+
+      @Override
+      public Map<String, Long> getStatusCounts()
+      {
+         Map<String, Long> statuses = new TreeMap<>();
+         statusCounts.forEach((status, n) -> statuses.put(status.toString(), Long.valueOf(n.sum())));
+         return statuses;
+      }
+   }
+}
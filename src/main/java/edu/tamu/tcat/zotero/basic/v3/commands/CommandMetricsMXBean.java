@@ -0,0 +1,40 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.util.Map;
+
+/**
+ * Management interface that publishes the metrics for a type of command executed against a
+ * single library. Durations are reported in milliseconds.
+ */
+public interface CommandMetricsMXBean
+{
+   String getCommand();
+
+   String getLibrary();
+
+   long getCount();
+
+   long getFailureCount();
+
+   long getRetryCount();
+
+   double getMeanQueueWait();
+
+   double getMeanLatency();
+
+   double getLatency50thPercentile();
+
+   double getLatency95thPercentile();
+
+   double getLatency99thPercentile();
+
+   double getMaxLatency();
+
+   double getMeanDecodeTime();
+
+   long getResponseBytes();
+
+   long getDecodedBytes();
+
+   Map<String, Long> getStatusCounts();
+}
@@ -0,0 +1,26 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+/**
+ * The relative importance of a command. When the {@link ZoteroCommandExecutor} is
+ * overloaded, commands with a higher priority are favored over those with a lower priority.
+ */
+public enum CommandPriority
+{
+   /** Commands that a user is waiting on, for example to display an item. */
+   INTERACTIVE,
+
+   /** The default priority. */
+   NORMAL,
+
+   /** Background work such as synchronizing or exporting a library. */
+   BULK;
+
+   /**
+    * @param other The priority to compare to.
+    * @return {@code true} if this priority is more important than the supplied priority.
+    */
+   public boolean isHigherThan(CommandPriority other)
+   {
+      return ordinal() < other.ordinal();
+   }
+}
@@ -0,0 +1,378 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.text.MessageFormat;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Tracks the commands that have been submitted to a {@link ZoteroCommandExecutor} but whose
+ * requests have not yet been sent, enforces a limit on their number and determines the order
+ * in which they are dispatched.
+ *
+ * <p>Commands are admitted using {@link #admit(Entry, boolean)}, which applies the configured
+ * {@link OverloadPolicy} if the limit has been reached. Commands leave the queue when their
+ * request is sent or they complete, and re-enter it without an admission check if they must
+ * be retried, so that work that has already been accepted is not rejected.
+ *
+ * <p>Queued commands that are ready to be run (i.e., that are not waiting on a timer) are held
+ * in a separate lane for each {@link CommandPriority}. Lanes are served using smooth weighted
+ * round-robin: each lane with ready commands accrues credit in proportion to its weight, and
+ * the lane with the most credit is served next. Higher priority commands therefore overtake
+ * a backlog of lower priority commands without starving them. Commands that are held back by
+ * a rate limit remain in their lanes until they can be sent, so the order in which they are
+ * released is also determined by priority.
+ */
+class CommandQueue<T extends CommandQueue.Entry>
+{
+   /**
+    * A command held by the queue.
+    */
+   interface Entry
+   {
+      CommandPriority getPriority();
+
+      /**
+       * Completes this command with the supplied exception after it has been shed from the
+       * queue. Called without holding the queue's lock.
+       */
+      void shed(CommandRejectedException ex);
+   }
+
+   private final ReentrantLock lock = new ReentrantLock();
+   private final Condition notFull = lock.newCondition();
+
+   // guarded by lock
+   private final Map<CommandPriority, LinkedHashSet<T>> queued = new EnumMap<>(CommandPriority.class);
+   // insertion ordered sets, so that commands leave a lane in constant time however they leave
+   private final Map<CommandPriority, LinkedHashSet<T>> ready = new EnumMap<>(CommandPriority.class);
+   private final Map<CommandPriority, Integer> weights = new EnumMap<>(CommandPriority.class);
+   private final Map<CommandPriority, Integer> credits = new EnumMap<>(CommandPriority.class);
+   private int size = 0;
+   private int limit = 0;
+   private OverloadPolicy policy = OverloadPolicy.REJECT;
+   private boolean closed = false;
+
+   CommandQueue()
+   {
+      for (CommandPriority priority : CommandPriority.values())
+      {
+         queued.put(priority, new LinkedHashSet<>());
+         ready.put(priority, new LinkedHashSet<>());
+         credits.put(priority, Integer.valueOf(0));
+      }
+
+      weights.put(CommandPriority.INTERACTIVE, Integer.valueOf(8));
+      weights.put(CommandPriority.NORMAL, Integer.valueOf(3));
+      weights.put(CommandPriority.BULK, Integer.valueOf(1));
+   }
+
+   /**
+    * @param priority The priority to configure.
+    * @param weight The share of dispatches given to the lane for this priority, relative to
+    *       the weights of the other lanes. Must be positive.
+    */
+   void setWeight(CommandPriority priority, int weight)
+   {
+      if (weight <= 0)
+         throw new IllegalArgumentException("The weight of a priority lane must be positive.");
+
+      lock.lock();
+      try
+      {
+         weights.put(priority, Integer.valueOf(weight));
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Marks a queued command as ready to be run.
+    */
+   void offer(T entry)
+   {
+      lock.lock();
+      try
+      {
+         ready.get(entry.getPriority()).add(entry);
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Takes the next command to be run. Lanes are considered in weighted round-robin order and
+    * the command at the head of a lane is taken only if it may be sent now, as determined by
+    * the supplied function. A command that may not be sent yet, for example because its
+    * account's rate limit has been reached, keeps its place in its lane, and the lane is not
+    * charged for the attempt. Commands are therefore released to the rate limit in priority
+    * order as permits become available.
+    *
+    * @param acquire Returns zero if the supplied command may be sent now, taking whatever
+    *       permit it requires, or otherwise the time in nanoseconds until it may be sent.
+    * @param wait Receives the shortest time until a command that was held back may be sent,
+    *       or zero if no command was held back.
+    * @return The next command to be run, or {@code null} if no commands are ready or none
+    *       may be sent yet.
+    */
+   T poll(ToLongFunction<? super T> acquire, long[] wait)
+   {
+      lock.lock();
+      try
+      {
+         wait[0] = 0;
+
+         // the credit each lane would hold if it were served by this call
+         CommandPriority[] priorities = CommandPriority.values();
+         int[] accrued = new int[priorities.length];
+         boolean[] candidate = new boolean[priorities.length];
+         int total = 0;
+         for (CommandPriority priority : priorities)
+         {
+            if (ready.get(priority).isEmpty())
+            {
+               // lanes do not accrue credit while idle
+               credits.put(priority, Integer.valueOf(0));
+               continue;
+            }
+
+            int weight = weights.get(priority).intValue();
+            total += weight;
+            accrued[priority.ordinal()] = credits.get(priority).intValue() + weight;
+            candidate[priority.ordinal()] = true;
+         }
+
+         while (true)
+         {
+            CommandPriority next = null;
+            for (CommandPriority priority : priorities)
+            {
+               if (candidate[priority.ordinal()] && (next == null || accrued[priority.ordinal()] > accrued[next.ordinal()]))
+                  next = priority;
+            }
+
+            if (next == null)
+               return null;
+
+            Iterator<T> lane = ready.get(next).iterator();
+            T entry = lane.next();
+            long delay = acquire.applyAsLong(entry);
+            if (delay > 0)
+            {
+               wait[0] = wait[0] == 0 ? delay : Math.min(wait[0], delay);
+               candidate[next.ordinal()] = false;
+               continue;
+            }
+
+            for (CommandPriority priority : priorities)
+            {
+               if (!ready.get(priority).isEmpty())
+                  credits.put(priority, Integer.valueOf(accrued[priority.ordinal()]));
+            }
+
+            credits.put(next, Integer.valueOf(accrued[next.ordinal()] - total));
+            lane.remove();
+            return entry;
+         }
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * @param limit The maximum number of queued commands, or zero or less for no limit.
+    * @param policy The policy applied to commands submitted while the queue is full.
+    */
+   void setLimit(int limit, OverloadPolicy policy)
+   {
+      lock.lock();
+      try
+      {
+         this.limit = Math.max(0, limit);
+         this.policy = policy;
+         notFull.signalAll();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Adds a newly submitted command to the queue, applying the overload policy if needed.
+    *
+    * @param mayBlock {@code false} if the submitting thread must not wait for room in the
+    *       queue. If so, the command is rejected where the policy would block.
+    * @throws CommandRejectedException If the command was not admitted.
+    * @throws IllegalStateException If the queue has been closed.
+    */
+   void admit(T entry, boolean mayBlock) throws CommandRejectedException
+   {
+      T victim = null;
+      lock.lock();
+      try
+      {
+         while (isFull() && policy == OverloadPolicy.BLOCK && mayBlock && !closed)
+         {
+            try
+            {
+               notFull.await();
+            }
+            catch (InterruptedException ex)
+            {
+               Thread.currentThread().interrupt();
+               throw reject(entry, "Interrupted while waiting to submit a {0} priority command.");
+            }
+         }
+
+         if (closed)
+            throw new IllegalStateException("This command executor has been shut down.");
+
+         if (isFull())
+         {
+            if (policy == OverloadPolicy.SHED)
+               victim = takeLowest(entry.getPriority());
+
+            if (victim == null)
+               throw reject(entry, "Too many commands are queued ({1}). The {0} priority command was rejected; "
+                                 + "reduce the rate at which commands are submitted.");
+         }
+
+         add(entry);
+      }
+      finally
+      {
+         lock.unlock();
+      }
+
+      if (victim != null)
+      {
+         String msg = "The {0} priority command was discarded from the queue to make room for a {1} priority command.";
+         victim.shed(new CommandRejectedException(MessageFormat.format(msg, victim.getPriority(), entry.getPriority()),
+               victim.getPriority(), true));
+      }
+   }
+
+   /**
+    * Returns a command that had been sent to the queue, for example to be retried. The
+    * command is not subject to the queue's limit.
+    */
+   void requeue(T entry)
+   {
+      lock.lock();
+      try
+      {
+         add(entry);
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Removes a command from the queue once its request has been sent or it has completed.
+    */
+   void remove(T entry)
+   {
+      lock.lock();
+      try
+      {
+         ready.get(entry.getPriority()).remove(entry);
+         if (queued.get(entry.getPriority()).remove(entry))
+         {
+            size--;
+            notFull.signal();
+         }
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * @return The number of queued commands.
+    */
+   int size()
+   {
+      lock.lock();
+      try
+      {
+         return size;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Stops admitting commands and releases any blocked submitters.
+    */
+   void close()
+   {
+      lock.lock();
+      try
+      {
+         closed = true;
+         notFull.signalAll();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   private boolean isFull()
+   {
+      return limit > 0 && size >= limit;
+   }
+
+   private void add(T entry)
+   {
+      if (queued.get(entry.getPriority()).add(entry))
+         size++;
+   }
+
+   /**
+    * @return The most recently queued command with the lowest priority, provided that its
+    *       priority is lower than the supplied priority, or {@code null} if there is none.
+    */
+   private T takeLowest(CommandPriority priority)
+   {
+      CommandPriority[] priorities = CommandPriority.values();
+      for (int i = priorities.length - 1; i >= 0 && priority.isHigherThan(priorities[i]); i--)
+      {
+         LinkedHashSet<T> lane = queued.get(priorities[i]);
+         if (lane.isEmpty())
+            continue;
+
+         T last = null;
+         for (Iterator<T> it = lane.iterator(); it.hasNext(); )
+            last = it.next();
+
+         lane.remove(last);
+         ready.get(priorities[i]).remove(last);
+         size--;
+         return last;
+      }
+
+      return null;
+   }
+
+   private CommandRejectedException reject(T entry, String msg)
+   {
+      return new CommandRejectedException(MessageFormat.format(msg, entry.getPriority(), Integer.valueOf(size)), entry.getPriority(), false);
+   }
+}
@@ -0,0 +1,40 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Indicates that the {@link ZoteroCommandExecutor} declined to execute a command because too
+ * many commands were queued. Callers should reduce the rate at which they submit commands,
+ * or submit less important work at a lower {@link CommandPriority}.
+ */
+public class CommandRejectedException extends RejectedExecutionException
+{
+   private static final long serialVersionUID = 1L;
+
+   private final CommandPriority priority;
+   private final boolean shed;
+
+   public CommandRejectedException(String message, CommandPriority priority, boolean shed)
+   {
+      super(message);
+      this.priority = priority;
+      this.shed = shed;
+   }
+
+   /**
+    * @return The priority of the rejected command.
+    */
+   public CommandPriority getPriority()
+   {
+      return priority;
+   }
+
+   /**
+    * @return {@code true} if the command had been accepted, but was later discarded to make
+    *       room for a more important command.
+    */
+   public boolean isShed()
+   {
+      return shed;
+   }
+}
@@ -2,6 +2,7 @@ package edu.tamu.tcat.zotero.basic.v3.commands;
 
 import java.io.InputStream;
 import java.net.URI;
+import java.util.concurrent.CompletionStage;
 
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
@@ -43,4 +44,85 @@ public interface CommandRunnerContext<T>
     */
    URI getUri(URI zoteroEndpoint);
 
+   /**
+    * Identifies the API key used to authenticate this request. The command executor uses
+    * this to scope any back-off requested by the Zotero API to the key that was throttled.
+    *
+    * @return The API key used to authenticate this request. May be {@code null} for
+    *       unauthenticated requests.
+    */
+   default String getApiKey()
+   {
+      return null;
+   }
+
+   /**
+    * @return The relative importance of this command. When the command executor is
+    *       overloaded, commands with a higher priority are favored.
+    */
+   default CommandPriority getPriority()
+   {
+      return CommandPriority.NORMAL;
+   }
+
+   /**
+    * Limits the time allowed for this command to complete, measured from the time it is
+    * submitted. Once the time has elapsed, the command executor completes the command with a
+    * {@link java.util.concurrent.TimeoutException} and aborts any request that is in progress.
+    *
+    * @return The time allowed for this command to complete in nanoseconds, or zero or less if
+    *       the time is not limited.
+    */
+   default long getTimeout()
+   {
+      return 0;
+   }
+
+   /**
+    * Identifies work that must be complete before this command's request is sent, such as
+    * loading data that is needed to handle the response. The command executor holds the
+    * command, without occupying a thread, until this stage completes and fails the command if
+    * it completes exceptionally. The command's deadline includes the time spent waiting.
+    *
+    * @return The stage that must complete before this command is dispatched, or {@code null}
+    *       if the command may be dispatched immediately.
+    */
+   default CompletionStage<?> getPrerequisite()
+   {
+      return null;
+   }
+
+   /**
+    * Identifies the type of this command. The command executor records metrics separately
+    * for each type of command.
+    *
+    * @return The name of the type of command.
+    */
+   default String getCommandName()
+   {
+      return getClass().getName();
+   }
+
+   /**
+    * Identifies the library this command is executed against. The command executor records
+    * metrics separately for each library.
+    *
+    * @return The path of the library, for example {@code users/123}. May be {@code null} for
+    *       commands that are not scoped to a library.
+    */
+   default String getLibraryName()
+   {
+      return null;
+   }
+
+   /**
+    * Indicates whether this request may be safely re-issued if the Zotero API declines to
+    * process it due to throttling or temporary unavailability.
+    *
+    * @return {@code true} if the request may be retried.
+    */
+   default boolean isRetryable()
+   {
+      return true;
+   }
 }
@@ -0,0 +1,140 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Metrics for a type of command executed against a single library at a point in time. See
+ * {@link CommandMetrics#snapshot()}.
+ */
+public class CommandStats
+{
+   private final String command;
+   private final String library;
+   private final long count;
+   private final long failureCount;
+   private final long retryCount;
+   private final HistogramSnapshot queueWait;
+   private final HistogramSnapshot latency;
+   private final HistogramSnapshot decodeTime;
+   private final long responseBytes;
+   private final long decodedBytes;
+   private final Map<Integer, Long> statusCounts;
+
+   CommandStats(String command, String library, long count, long failureCount, long retryCount,
+                HistogramSnapshot queueWait, HistogramSnapshot latency, HistogramSnapshot decodeTime,
+                long responseBytes, long decodedBytes, Map<Integer, Long> statusCounts)
+   {
+      this.command = command;
+      this.library = library;
+      this.count = count;
+      this.failureCount = failureCount;
+      this.retryCount = retryCount;
+      this.queueWait = queueWait;
+      this.latency = latency;
+      this.decodeTime = decodeTime;
+      this.responseBytes = responseBytes;
+      this.decodedBytes = decodedBytes;
+      this.statusCounts = Collections.unmodifiableMap(statusCounts);
+   }
+
+   /**
+    * @return The name of the command class.
+    */
+   public String getCommand()
+   {
+      return command;
+   }
+
+   /**
+    * @return The library the commands were executed against (for example, {@code users/123}),
+    *       or {@code null} for commands that are not scoped to a library.
+    */
+   public String getLibrary()
+   {
+      return library;
+   }
+
+   /**
+    * @return The number of commands that have completed, successfully or not.
+    */
+   public long getCount()
+   {
+      return count;
+   }
+
+   /**
+    * @return The number of commands that completed exceptionally.
+    */
+   public long getFailureCount()
+   {
+      return failureCount;
+   }
+
+   /**
+    * @return The number of times commands were re-issued because the Zotero API throttled
+    *       them or was temporarily unavailable.
+    */
+   public long getRetryCount()
+   {
+      return retryCount;
+   }
+
+   /**
+    * @return The time from the submission of each command until its request was first sent,
+    *       including any delay imposed by rate limits or back-off requests.
+    */
+   public HistogramSnapshot getQueueWait()
+   {
+      return queueWait;
+   }
+
+   /**
+    * @return The time from sending each request until its response was received. Each
+    *       attempt of a retried command is recorded separately.
+    */
+   public HistogramSnapshot getLatency()
+   {
+      return latency;
+   }
+
+   /**
+    * @return The time taken by commands to handle the response from the server.
+    */
+   public HistogramSnapshot getDecodeTime()
+   {
+      return decodeTime;
+   }
+
+   /**
+    * @return The number of bytes of response bodies received from the server.
+    */
+   public long getResponseBytes()
+   {
+      return responseBytes;
+   }
+
+   /**
+    * @return The number of bytes of response bodies after compressed responses were decoded.
+    */
+   public long getDecodedBytes()
+   {
+      return decodedBytes;
+   }
+
+   /**
+    * @return The number of responses received for each HTTP status code.
+    */
+   public Map<Integer, Long> getStatusCounts()
+   {
+      return statusCounts;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "CommandStats [" + command + (library == null ? "" : " " + library) + ", count=" + count
+            + ", failures=" + failureCount + ", retries=" + retryCount + ", latency=" + latency
+            + ", bytes=" + responseBytes + "/" + decodedBytes + ", status=" + statusCounts + "]";
+   }
+}
@@ -0,0 +1,54 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.util.concurrent.CompletableFuture;
+
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.Response;
+
+/**
+ * Sends the requests prepared by a {@link CommandRunnerContext} to the Zotero API. The
+ * {@link ZoteroCommandExecutor} is responsible for scheduling commands, honoring rate limits
+ * and back-off requests and handling responses; the transport is responsible only for
+ * issuing a single request and supplying its response.
+ *
+ * <p>Transports may complete the returned future on any thread. The executor handles the
+ * response on the thread that completes the future, so transports that complete futures from
+ * I/O callbacks should not expect response handling to be free.
+ */
+public interface CommandTransport
+{
+   /**
+    * Issues a request.
+    *
+    * @param invocation The request to issue, as configured by the command.
+    * @return A future that resolves to the response from the server. The caller is
+    *       responsible for closing the response. The future should complete exceptionally if
+    *       no response could be obtained.
+    */
+   CompletableFuture<Response> send(Invocation invocation);
+
+   /**
+    * @return A transport that issues each request synchronously on the thread that dispatches
+    *       the command. The number of concurrent requests is limited by the size of the
+    *       executor's thread pool. This is the default transport.
+    */
+   static CommandTransport blocking()
+   {
+      return BlockingTransport.INSTANCE;
+   }
+
+   /**
+    * @return A transport that hands each request off to the JAX-RS client's asynchronous
+    *       invocation API and completes the response from the client's callback. The thread
+    *       that dispatches a command is released as soon as the request has been submitted,
+    *       so the number of concurrent requests is limited by the client's connection pool
+    *       (see {@link ConnectionSettings}) rather than by the size of the executor's thread
+    *       pool. This is not non-blocking I/O: the client issues each request on a thread
+    *       from its own pool, which is bounded by the maximum number of connections, and that
+    *       thread is occupied until the response is received.
+    */
+   static CommandTransport async()
+   {
+      return AsyncTransport.INSTANCE;
+   }
+}
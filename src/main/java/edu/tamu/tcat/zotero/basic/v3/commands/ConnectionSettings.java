@@ -0,0 +1,133 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configures the HTTP connections used by the {@link ZoteroCommandExecutor} to communicate
+ * with the Zotero API.
+ *
+ * <p>Connections are pooled and kept alive between requests so that the cost of establishing
+ * a connection (including the TLS handshake) is paid once per connection rather than once
+ * per request. The pool is bounded both per route (i.e., per host) and in total. Connections
+ * that have been idle for longer than the configured idle timeout are closed periodically.
+ *
+ * <p>Instances are immutable. Use the {@code with} methods to derive modified settings.
+ */
+public class ConnectionSettings
+{
+   /**
+    * The default settings. The number of connections per route matches the size of the
+    * executor's thread pool, idle connections are closed after 30 seconds, connections must
+    * be established within 10 seconds and responses must begin to arrive within 30 seconds.
+    */
+   public static final ConnectionSettings DEFAULT = new ConnectionSettings(0, 0,
+         TimeUnit.SECONDS.toMillis(30), TimeUnit.SECONDS.toMillis(10), TimeUnit.SECONDS.toMillis(30));
+
+   private final int maxPerRoute;
+   private final int maxTotal;
+   private final long idleTimeout;
+   private final long connectTimeout;
+   private final long readTimeout;
+
+   private ConnectionSettings(int maxPerRoute, int maxTotal, long idleTimeout, long connectTimeout, long readTimeout)
+   {
+      this.maxPerRoute = maxPerRoute;
+      this.maxTotal = maxTotal;
+      this.idleTimeout = idleTimeout;
+      this.connectTimeout = connectTimeout;
+      this.readTimeout = readTimeout;
+   }
+
+   /**
+    * @param maxPerRoute The maximum number of connections to a single host. A value of zero
+    *       or less sizes the pool to match the executor's thread pool.
+    * @param maxTotal The maximum number of connections across all hosts. A value of zero or
+    *       less uses the maximum number of connections per route.
+    * @return Settings with the supplied pool limits.
+    */
+   public ConnectionSettings withPoolSize(int maxPerRoute, int maxTotal)
+   {
+      return new ConnectionSettings(Math.max(0, maxPerRoute), Math.max(0, maxTotal), idleTimeout, connectTimeout, readTimeout);
+   }
+
+   /**
+    * @param timeout The time after which an idle connection will be closed. A value of zero
+    *       or less keeps idle connections open until the server closes them.
+    * @param units The units of the supplied timeout.
+    * @return Settings with the supplied idle timeout.
+    */
+   public ConnectionSettings withIdleTimeout(long timeout, TimeUnit units)
+   {
+      return new ConnectionSettings(maxPerRoute, maxTotal, toMillis(timeout, units), connectTimeout, readTimeout);
+   }
+
+   /**
+    * @param timeout The maximum time to wait for a connection to be established. A value of
+    *       zero or less waits indefinitely.
+    * @param units The units of the supplied timeout.
+    * @return Settings with the supplied connect timeout.
+    */
+   public ConnectionSettings withConnectTimeout(long timeout, TimeUnit units)
+   {
+      return new ConnectionSettings(maxPerRoute, maxTotal, idleTimeout, toMillis(timeout, units), readTimeout);
+   }
+
+   /**
+    * @param timeout The maximum time to wait for data from the server once a request has
+    *       been sent. A value of zero or less waits indefinitely.
+    * @param units The units of the supplied timeout.
+    * @return Settings with the supplied read timeout.
+    */
+   public ConnectionSettings withReadTimeout(long timeout, TimeUnit units)
+   {
+      return new ConnectionSettings(maxPerRoute, maxTotal, idleTimeout, connectTimeout, toMillis(timeout, units));
+   }
+
+   /**
+    * @param poolSize The size of the executor's thread pool.
+    * @return The maximum number of connections to a single host.
+    */
+   public int getMaxPerRoute(int poolSize)
+   {
+      return maxPerRoute > 0 ? maxPerRoute : Math.max(1, poolSize);
+   }
+
+   /**
+    * @param poolSize The size of the executor's thread pool.
+    * @return The maximum number of connections across all hosts.
+    */
+   public int getMaxTotal(int poolSize)
+   {
+      return Math.max(maxTotal, getMaxPerRoute(poolSize));
+   }
+
+   /**
+    * @return The time in milliseconds after which an idle connection will be closed, or
+    *       {@code 0} if idle connections are not closed.
+    */
+   public long getIdleTimeout()
+   {
+      return idleTimeout;
+   }
+
+   /**
+    * @return The connect timeout in milliseconds, or {@code 0} to wait indefinitely.
+    */
+   public int getConnectTimeout()
+   {
+      return (int)Math.min(Integer.MAX_VALUE, connectTimeout);
+   }
+
+   /**
+    * @return The read timeout in milliseconds, or {@code 0} to wait indefinitely.
+    */
+   public int getReadTimeout()
+   {
+      return (int)Math.min(Integer.MAX_VALUE, readTimeout);
+   }
+
+   private static long toMillis(long timeout, TimeUnit units)
+   {
+      return timeout <= 0 ? 0 : Math.max(1, units.toMillis(timeout));
+   }
+}
@@ -0,0 +1,56 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.RestApiV3;
+
+/**
+ * Command to retrieve the keys of objects that have been deleted from a library since a
+ * given library version.
+ *
+ * <p>This corresponds to the REST resource {@code <userOrGroupPrefix>/deleted?since=<version>}.
+ */
+public class GetDeletedCommand extends ZoteroCommandAdapter<RestApiV3.DeletedObjects>
+{
+   private static final String DELETED = "deleted";
+
+   private int since = 0;
+
+   public GetDeletedCommand(BasicZoteroLibrary library)
+   {
+      super(library);
+   }
+
+   /**
+    * @param version The library version after which objects must have been deleted in order
+    *       to be returned.
+    */
+   public void setSince(int version)
+   {
+      this.since = Math.max(0, version);
+   }
+
+   @Override
+   protected Invocation buildInvocation(WebTarget apiRoot)
+   {
+      WebTarget target = apiRoot.path(DELETED).queryParam("since", since);
+      cmdLogger.fine(() -> "[Get Deleted]: " + target.getUri());
+
+      return appendHeaders(target.request(MediaType.APPLICATION_JSON)).buildGet();
+   }
+
+   @Override
+   protected RestApiV3.DeletedObjects handleResponse(Response response)
+   {
+      if (response.getStatus() != 200)
+         throw new IllegalStateException(response.getStatusInfo().getReasonPhrase());
+
+      RestApiV3.DeletedObjects result = response.readEntity(RestApiV3.DeletedObjects.class);
+      result.lastModifiedVersion = parseLastModifiedVersion(response);
+      return result;
+   }
+}
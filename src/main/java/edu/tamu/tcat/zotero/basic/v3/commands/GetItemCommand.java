@@ -1,5 +1,7 @@
 package edu.tamu.tcat.zotero.basic.v3.commands;
 
+import java.util.concurrent.CompletionStage;
+
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
@@ -26,6 +28,12 @@ public class GetItemCommand extends ZoteroCommandAdapter<RestApiV3.Item>
       this.itemId = itemId;
    }
 
+   @Override
+   protected CompletionStage<?> getPrerequisite()
+   {
+      return requireItemTypes();
+   }
+
    @Override
    protected Invocation buildInvocation(WebTarget apiRoot)
    {
@@ -2,21 +2,22 @@ package edu.tamu.tcat.zotero.basic.v3.commands;
 
 import static java.util.stream.Collectors.toList;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletionStage;
 
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
-import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
-import edu.tamu.tcat.zotero.basic.v3.RestApiV3;
-import edu.tamu.tcat.zotero.basic.v3.model.BasicItem;
+import edu.tamu.tcat.zotero.basic.v3.cache.NearCache;
 import edu.tamu.tcat.zotero.basic.v3.model.BasicItemSet.ItemSetPageData;
+import edu.tamu.tcat.zotero.basic.v3.model.ItemStreamDecoder;
 import edu.tamu.tcat.zotero.basic.v3.search.ItemQueryData;
 import edu.tamu.tcat.zotero.types.ItemTypeProvider;
 
@@ -27,8 +28,11 @@ public class GetItemQueryPageCommand extends ZoteroCommandAdapter<ItemSetPageDat
       //       re-sort, etc.
       private static final String API_ITEMS = "items";
       private static final String API_COLLECTIONS = "collections";
+      private static final String PAGES = "pages/";
 
       private ItemQueryData data;
+      private NearCache pageCache;
+      private String cacheKey;
 
       public GetItemQueryPageCommand(BasicZoteroLibrary library)
       {
@@ -65,6 +69,25 @@ public class GetItemQueryPageCommand extends ZoteroCommandAdapter<ItemSetPageDat
          this.data.start = page * this.data.limit;
       }
 
+      /**
+       * Supplies a cache in which retrieved pages will be stored. If a page for the same
+       * request is already cached, the request will be made conditional on the library having
+       * been modified since that page was retrieved. If it has not, the cached page will be
+       * returned.
+       *
+       * @param cache The cache to use. May be {@code null}.
+       */
+      public void setPageCache(NearCache cache)
+      {
+         this.pageCache = cache;
+      }
+
+      @Override
+      protected CompletionStage<?> getPrerequisite()
+      {
+         return requireItemTypes();
+      }
+
       @Override
       protected Invocation buildInvocation(WebTarget apiRoot)
       {
@@ -77,6 +100,14 @@ public class GetItemQueryPageCommand extends ZoteroCommandAdapter<ItemSetPageDat
          WebTarget target = configureBaseUri(apiRoot);
          target = apply(target);
 
+         if (pageCache != null)
+         {
+            cacheKey = PAGES + target.getUri();
+            ItemSetPageData cached = pageCache.peek(cacheKey, ItemSetPageData.class);
+            if (cached != null)
+               setCachedResult(cached, cached.lastModifiedVersion);
+         }
+
          return appendHeaders(target.request(MediaType.APPLICATION_JSON)).buildGet();
       }
 
@@ -110,20 +141,31 @@ public class GetItemQueryPageCommand extends ZoteroCommandAdapter<ItemSetPageDat
          if (response.getStatus() != 200)
             throw handleError(response);
 
-         GenericType<List<RestApiV3.Item>> type = new GenericType<List<RestApiV3.Item>>(){};
          String numResults = response.getHeaderString("Total-Results");
          String lastVersion = response.getHeaderString("Last-Modified-Version");
 
          ItemSetPageData page = new ItemSetPageData();
-         List<RestApiV3.Item> items = response.readEntity(type);
          BasicZoteroLibrary library = getLibrary();
          ItemTypeProvider typeProvider = library.getAccount().getItemTypeProvider();
          page.data = new ItemQueryData(data);
-         page.items = items.stream()
-                           .map(dto -> new BasicItem(library, typeProvider, dto))
-                           .collect(Collectors.toList());
+         try (InputStream in = response.readEntity(InputStream.class))
+         {
+            // decode items as the response is read rather than binding to RestApiV3.Item
+            page.items = new ItemStreamDecoder(library, typeProvider).decodeItems(in);
+         }
+         catch (IOException ex)
+         {
+            throw new IllegalStateException("Failed to read items returned for query " + data, ex);
+         }
+         page.offset = data.start;
          page.totalResults = parseIntSafe(numResults, -1);
-         page.totalResults = parseIntSafe(lastVersion, 0);
+         page.lastModifiedVersion = parseIntSafe(lastVersion, 0);
+
+         if (pageCache != null)
+         {
+            long size = page.items.stream().mapToLong(NearCache::estimateSize).sum();
+            pageCache.put(cacheKey, page.lastModifiedVersion, page, size);
+         }
 
          return page;
 
@@ -0,0 +1,65 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.util.Map;
+
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.RestApiV3;
+
+/**
+ * Command to retrieve the current version of every item in a library that has been modified
+ * since a given library version.
+ *
+ * <p>This corresponds to the REST resource
+ * {@code <userOrGroupPrefix>/items?since=<version>&format=versions}. Unlike other item
+ * queries, this response is not paged; all modified items are returned in a single response.
+ */
+public class GetItemVersionsCommand extends ZoteroCommandAdapter<RestApiV3.VersionList>
+{
+   private static final String ITEMS = "items";
+
+   private int since = 0;
+
+   public GetItemVersionsCommand(BasicZoteroLibrary library)
+   {
+      super(library);
+   }
+
+   /**
+    * @param version The library version after which items must have been modified in order
+    *       to be returned. Use {@code 0} (the default) to retrieve the versions of all items
+    *       in the library.
+    */
+   public void setSince(int version)
+   {
+      this.since = Math.max(0, version);
+   }
+
+   @Override
+   protected Invocation buildInvocation(WebTarget apiRoot)
+   {
+      WebTarget target = apiRoot.path(ITEMS)
+                                .queryParam("since", since)
+                                .queryParam("format", "versions");
+      cmdLogger.fine(() -> "[Get Item Versions]: " + target.getUri());
+
+      return appendHeaders(target.request(MediaType.APPLICATION_JSON)).buildGet();
+   }
+
+   @Override
+   protected RestApiV3.VersionList handleResponse(Response response)
+   {
+      if (response.getStatus() != 200)
+         throw new IllegalStateException(response.getStatusInfo().getReasonPhrase());
+
+      RestApiV3.VersionList result = new RestApiV3.VersionList();
+      result.versions = response.readEntity(new GenericType<Map<String, Integer>>(){});
+      result.lastModifiedVersion = parseLastModifiedVersion(response);
+      return result;
+   }
+}
@@ -0,0 +1,115 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.RestApiV3;
+
+/**
+ * Command to retrieve multiple items by key in a single request.
+ *
+ * <p>This corresponds to the REST resource {@code <userOrGroupPrefix>/items?itemKey=<keys>}.
+ * The Zotero API accepts at most {@link #MAX_KEYS} keys per request. Callers with more keys
+ * than this should partition them and execute one command per partition.
+ *
+ * <p>Keys that do not identify an item in the library are silently omitted from the result.
+ * If the Zotero API rejects the request, the command completes exceptionally with a
+ * {@link ZoteroResponseException} that describes the reason.
+ */
+public class GetItemsByKeyCommand extends ZoteroCommandAdapter<List<RestApiV3.Item>>
+{
+   /** The maximum number of item keys that may be supplied in a single request. */
+   public static final int MAX_KEYS = 50;
+
+   private static final String ITEMS = "items";
+   private static final String ITEM_KEY = "itemKey";
+
+   private static final String BAD_REQUEST = "Invalid item keys or query parameters";
+   private static final String FORBIDDEN = "The API key does not grant access to the library";
+   private static final String NOT_FOUND = "The library does not exist";
+
+   private static final String message = "An error occurred while attempting to retrieve {0} items. Reason: {1}";
+
+   private final List<String> itemKeys;
+
+   public GetItemsByKeyCommand(BasicZoteroLibrary library, Collection<String> itemKeys)
+   {
+      super(library);
+      this.itemKeys = new ArrayList<>(itemKeys);
+   }
+
+   @Override
+   protected Set<String> checkStatus()
+   {
+      if (itemKeys.isEmpty())
+         return Collections.singleton("No item keys have been supplied.");
+
+      Set<String> errors = new HashSet<>();
+      if (itemKeys.size() > MAX_KEYS)
+         errors.add("At most " + MAX_KEYS + " item keys may be requested at once. Found " + itemKeys.size() + ".");
+
+      return errors;
+   }
+
+   @Override
+   protected CompletionStage<?> getPrerequisite()
+   {
+      return requireItemTypes();
+   }
+
+   @Override
+   protected Invocation buildInvocation(WebTarget apiRoot)
+   {
+      // NOTE: the default limit is 25, request the full set of keys
+      WebTarget target = apiRoot.path(ITEMS)
+                                .queryParam(ITEM_KEY, String.join(",", itemKeys))
+                                .queryParam("limit", itemKeys.size());
+      cmdLogger.fine(() -> "[Get Items]: " + target.getUri());
+
+      return appendHeaders(target.request(MediaType.APPLICATION_JSON)).buildGet();
+   }
+
+   @Override
+   protected List<RestApiV3.Item> handleResponse(Response response)
+   {
+      if (response.getStatus() == Response.Status.OK.getStatusCode())
+         return response.readEntity(new GenericType<List<RestApiV3.Item>>(){});
+
+      throw new CompletionException(handleError(response));
+   }
+
+   private ZoteroResponseException handleError(Response response)
+   {
+      String reason;
+      switch (response.getStatus())
+      {
+         case 400:
+            reason = BAD_REQUEST;
+            break;
+         case 403:
+            reason = FORBIDDEN;
+            break;
+         case 404:
+            reason = NOT_FOUND;
+            break;
+         default:
+            reason = response.getStatusInfo().getReasonPhrase();
+      }
+
+      return new ZoteroResponseException(MessageFormat.format(message, Integer.valueOf(itemKeys.size()), reason));
+   }
+}
@@ -0,0 +1,46 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations using fixed, roughly logarithmic buckets. Recording is lock-free
+ * and inexpensive enough to be performed for every request.
+ */
+class Histogram
+{
+   /** Upper bounds (inclusive) of each bucket in milliseconds. The last bucket is unbounded. */
+   static final long[] BOUNDS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000 };
+
+   private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+   private final LongAdder total = new LongAdder();
+   private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+   /**
+    * @param nanos The duration to record, in nanoseconds.
+    */
+   void record(long nanos)
+   {
+      nanos = Math.max(0, nanos);
+      long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+
+      int bucket = 0;
+      while (bucket < BOUNDS.length && millis > BOUNDS[bucket])
+         bucket++;
+
+      counts.incrementAndGet(bucket);
+      total.add(nanos);
+      max.accumulate(nanos);
+   }
+
+   HistogramSnapshot snapshot()
+   {
+      long[] snapshot = new long[counts.length()];
+      for (int i = 0; i < snapshot.length; i++)
+         snapshot[i] = counts.get(i);
+
+      return new HistogramSnapshot(snapshot, total.sum(), max.get());
+   }
+}
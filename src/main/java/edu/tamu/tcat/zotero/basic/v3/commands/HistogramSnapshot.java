@@ -0,0 +1,99 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The distribution of recorded durations at a point in time. Durations are grouped into
+ * buckets, so percentiles are estimates given as the upper bound of the bucket that contains
+ * the requested percentile.
+ */
+public class HistogramSnapshot
+{
+   private final long[] counts;
+   private final long count;
+   private final long total;
+   private final long max;
+
+   HistogramSnapshot(long[] counts, long total, long max)
+   {
+      this.counts = counts;
+      this.count = Arrays.stream(counts).sum();
+      this.total = total;
+      this.max = max;
+   }
+
+   /**
+    * @return The number of recorded durations.
+    */
+   public long getCount()
+   {
+      return count;
+   }
+
+   /**
+    * @return The mean of the recorded durations in milliseconds, or {@code 0} if none have
+    *       been recorded.
+    */
+   public double getMeanMillis()
+   {
+      return count == 0 ? 0 : (double)total / count / TimeUnit.MILLISECONDS.toNanos(1);
+   }
+
+   /**
+    * @return The longest recorded duration in milliseconds.
+    */
+   public double getMaxMillis()
+   {
+      return (double)max / TimeUnit.MILLISECONDS.toNanos(1);
+   }
+
+   /**
+    * @param percentile The percentile to estimate, between {@code 0} and {@code 100}.
+    * @return An upper bound in milliseconds for the requested percentile of the recorded
+    *       durations, or {@code 0} if none have been recorded. Durations beyond the largest
+    *       bucket are reported using the longest recorded duration.
+    */
+   public double getPercentileMillis(double percentile)
+   {
+      if (count == 0)
+         return 0;
+
+      long rank = (long)Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count);
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++)
+      {
+         seen += counts[i];
+         if (seen >= Math.max(1, rank))
+            return i < Histogram.BOUNDS.length ? Math.min(Histogram.BOUNDS[i], getMaxMillis()) : getMaxMillis();
+      }
+
+      return getMaxMillis();
+   }
+
+   /**
+    * @return The upper bounds in milliseconds of each bucket, excluding the final, unbounded
+    *       bucket.
+    */
+   public long[] getBucketBounds()
+   {
+      return Histogram.BOUNDS.clone();
+   }
+
+   /**
+    * @return The number of durations recorded in each bucket. The final element counts
+    *       durations that exceed the largest bucket bound.
+    */
+   public long[] getBucketCounts()
+   {
+      return counts.clone();
+   }
+
+   @Override
+   public String toString()
+   {
+      return String.format("[count=%d, mean=%.1fms, p50=%.0fms, p95=%.0fms, p99=%.0fms, max=%.1fms]",
+            Long.valueOf(count), Double.valueOf(getMeanMillis()), Double.valueOf(getPercentileMillis(50)),
+            Double.valueOf(getPercentileMillis(95)), Double.valueOf(getPercentileMillis(99)), Double.valueOf(getMaxMillis()));
+   }
+}
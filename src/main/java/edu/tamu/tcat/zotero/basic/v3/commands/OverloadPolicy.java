@@ -0,0 +1,29 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+/**
+ * Determines how the {@link ZoteroCommandExecutor} responds to a command submitted while
+ * the number of queued commands is at its limit.
+ *
+ * @see ZoteroCommandExecutor#setQueueLimit(int, OverloadPolicy)
+ */
+public enum OverloadPolicy
+{
+   /**
+    * Blocks the submitting thread until a queued command has been sent. Commands submitted
+    * from the executor's own threads, including from callbacks on command results that those
+    * threads complete, are rejected instead, since blocking them could stall the dispatch of
+    * the queued commands.
+    */
+   BLOCK,
+
+   /** Completes the submitted command with a {@link CommandRejectedException}. */
+   REJECT,
+
+   /**
+    * Discards the most recently queued command with the lowest priority to make room, provided
+    * that its priority is lower than the submitted command's. The discarded command is
+    * completed with a {@link CommandRejectedException}. If no queued command has a lower
+    * priority, the submitted command is rejected.
+    */
+   SHED
+}
@@ -0,0 +1,210 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A client-side token-bucket rate limiter that maintains a separate bucket for each API key.
+ * Used by the {@link ZoteroCommandExecutor} to keep the requests issued on behalf of each
+ * account within the limits imposed by the Zotero API, without allowing one busy account to
+ * starve the others.
+ *
+ * <p>Each bucket is refilled continuously at the configured rate and may hold at most
+ * {@code burst} tokens. Callers do not block waiting for a token. {@link #tryAcquire(String)}
+ * takes a token only if one is available and otherwise reports how long the caller must wait
+ * before trying again, so a caller that gives up while waiting leaves no token claimed.
+ * Alternatively, {@link #reserve(String)} claims the next available token and returns the
+ * time the caller must wait before using it, queueing callers in arrival order.
+ *
+ * <p>A bucket that has been refilled and left idle for longer than its refill period is
+ * indistinguishable from a new bucket, so such buckets are discarded periodically. The
+ * number of buckets therefore tracks the API keys that are in active use rather than every
+ * key seen since the limiter was created.
+ */
+public class RateLimiter
+{
+   private final double permitsPerSecond;
+   private final int burst;
+   private final long nanosPerPermit;
+
+   /** The time taken to refill an empty bucket, in nanoseconds. */
+   private final long refillTime;
+
+   private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+   /** Time (per {@link System#nanoTime()}) of the next scan for idle buckets. */
+   private final AtomicLong nextEviction;
+
+   /**
+    * @return A rate limiter that does not restrict the rate of requests.
+    */
+   public static RateLimiter unlimited()
+   {
+      return new RateLimiter(0, 1);
+   }
+
+   /**
+    * @param permitsPerSecond The sustained number of requests per second allowed for each API
+    *       key. A value of zero or less disables rate limiting.
+    * @param burst The maximum number of requests that may be issued for an API key in
+    *       immediate succession after a period of inactivity. Must be at least 1.
+    */
+   public RateLimiter(double permitsPerSecond, int burst)
+   {
+      if (burst < 1)
+         throw new IllegalArgumentException("The burst size must be at least 1.");
+
+      this.permitsPerSecond = permitsPerSecond;
+      this.burst = burst;
+      this.nanosPerPermit = permitsPerSecond > 0 ? (long)(TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+      this.refillTime = burst * nanosPerPermit;
+      this.nextEviction = new AtomicLong(System.nanoTime() + refillTime);
+   }
+
+   /**
+    * @return The sustained number of requests per second allowed for each API key, or a
+    *       value of zero or less if rate limiting is disabled.
+    */
+   public double getPermitsPerSecond()
+   {
+      return permitsPerSecond;
+   }
+
+   /**
+    * @return The maximum number of requests that may be issued for an API key in immediate
+    *       succession.
+    */
+   public int getBurst()
+   {
+      return burst;
+   }
+
+   /**
+    * Reserves a single request for the supplied API key.
+    *
+    * @param apiKey The API key that will be used for the request. May be {@code null} for
+    *       unauthenticated requests, which share a single bucket.
+    * @return The time in nanoseconds that the caller must wait before issuing the request.
+    *       Zero if the request may be issued immediately.
+    */
+   public long reserve(String apiKey)
+   {
+      if (nanosPerPermit <= 0)
+         return 0;
+
+      String key = apiKey == null ? "" : apiKey;
+      long now = System.nanoTime();
+
+      // reserve while holding the map entry so that the bucket cannot be evicted concurrently
+      long[] wait = new long[1];
+      buckets.compute(key, (k, bucket) -> {
+         TokenBucket current = bucket != null ? bucket : new TokenBucket(now);
+         wait[0] = current.reserve(now);
+         return current;
+      });
+
+      evictIdleBuckets(now);
+      return wait[0];
+   }
+
+   /**
+    * Takes a token for a single request for the supplied API key, if one is available now.
+    * Unlike {@link #reserve(String)}, no token is claimed if the request must wait.
+    *
+    * @param apiKey The API key that will be used for the request. May be {@code null} for
+    *       unauthenticated requests, which share a single bucket.
+    * @return Zero if a token was taken and the request may be issued. Otherwise, the time in
+    *       nanoseconds until a token becomes available.
+    */
+   public long tryAcquire(String apiKey)
+   {
+      if (nanosPerPermit <= 0)
+         return 0;
+
+      String key = apiKey == null ? "" : apiKey;
+      long now = System.nanoTime();
+
+      long[] wait = new long[1];
+      buckets.compute(key, (k, bucket) -> {
+         TokenBucket current = bucket != null ? bucket : new TokenBucket(now);
+         wait[0] = current.tryAcquire(now);
+         return current;
+      });
+
+      evictIdleBuckets(now);
+      return wait[0];
+   }
+
+   /**
+    * @return The number of API keys for which a bucket is currently held.
+    */
+   public int getBucketCount()
+   {
+      return buckets.size();
+   }
+
+   /**
+    * Discards buckets that are full and have been idle for longer than the refill period.
+    * Scans at most once per refill period.
+    */
+   private void evictIdleBuckets(long now)
+   {
+      long due = nextEviction.get();
+      if (now - due < 0 || !nextEviction.compareAndSet(due, now + refillTime))
+         return;
+
+      for (String key : buckets.keySet())
+         buckets.computeIfPresent(key, (k, bucket) -> bucket.isIdle(now) ? null : bucket);
+   }
+
+   /**
+    * Tracks the time at which the next token becomes available rather than the number of
+    * tokens. A bucket with {@code n} tokens available is represented by a next-free time
+    * {@code n - 1} permit intervals in the past.
+    */
+   private class TokenBucket
+   {
+      private long nextFree;
+
+      TokenBucket(long now)
+      {
+         nextFree = now - (burst - 1) * nanosPerPermit;
+      }
+
+      /**
+       * @return {@code true} if the bucket is full and no token has been reserved for at
+       *       least the refill period.
+       */
+      synchronized boolean isIdle(long now)
+      {
+         return now - nextFree >= refillTime;
+      }
+
+      synchronized long reserve(long now)
+      {
+         refill(now);
+         long slot = nextFree;
+         nextFree += nanosPerPermit;
+         return Math.max(0, slot - now);
+      }
+
+      synchronized long tryAcquire(long now)
+      {
+         refill(now);
+         if (nextFree - now > 0)
+            return nextFree - now;
+
+         nextFree += nanosPerPermit;
+         return 0;
+      }
+
+      private void refill(long now)
+      {
+         // cap the number of tokens accumulated while idle at the burst size
+         long earliest = now - (burst - 1) * nanosPerPermit;
+         if (nextFree - earliest < 0)
+            nextFree = earliest;
+      }
+   }
+}
@@ -0,0 +1,58 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.net.URI;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+
+/**
+ * Captures the method and URI of the request issued for a command, as built by the command's
+ * {@link CommandRunnerContext#configure(javax.ws.rs.client.WebTarget)} method. The trace is
+ * attached to an invocation using the {@link #PROPERTY} property and populated by
+ * {@link Filter} when the request is sent.
+ */
+class RequestTrace
+{
+   /** The request property that holds the trace for an individual request. */
+   static final String PROPERTY = RequestTrace.class.getName();
+
+   private volatile String method;
+   private volatile URI uri;
+
+   /**
+    * @return The HTTP method of the request, or {@code null} if it has not been sent.
+    */
+   String getMethod()
+   {
+      return method;
+   }
+
+   /**
+    * @return The URI of the request, or {@code null} if it has not been sent.
+    */
+   URI getUri()
+   {
+      return uri;
+   }
+
+   @Override
+   public String toString()
+   {
+      return uri == null ? "<not sent>" : method + " " + uri;
+   }
+
+   static class Filter implements ClientRequestFilter
+   {
+      @Override
+      public void filter(ClientRequestContext request)
+      {
+         Object property = request.getProperty(PROPERTY);
+         if (property instanceof RequestTrace)
+         {
+            RequestTrace trace = (RequestTrace)property;
+            trace.method = request.getMethod();
+            trace.uri = request.getUri();
+         }
+      }
+   }
+}
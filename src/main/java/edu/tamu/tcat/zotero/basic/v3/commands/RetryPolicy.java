@@ -0,0 +1,75 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Defines how the {@link ZoteroCommandExecutor} retries commands that the Zotero API has
+ * declined to process due to throttling or temporary unavailability (for example,
+ * {@code 429 Too Many Requests} or {@code 503 Service Unavailable}).
+ *
+ * <p>Each command is given a retry budget. Retries are delayed using exponential backoff
+ * with jitter so that commands that were throttled together do not retry in lock-step. If
+ * the server supplies an explicit delay (e.g., via a {@code Retry-After} header), that delay
+ * is used as the lower bound.
+ *
+ * <p>Instances are immutable.
+ */
+public class RetryPolicy
+{
+   /** The default policy. Retries up to 4 times, starting at 1 second and backing off up to 60 seconds. */
+   public static final RetryPolicy DEFAULT = new RetryPolicy(4, 1, 60, TimeUnit.SECONDS);
+
+   /** A policy that never retries commands. */
+   public static final RetryPolicy NONE = new RetryPolicy(0, 0, 0, TimeUnit.SECONDS);
+
+   private final int maxRetries;
+   private final long initialDelay;
+   private final long maxDelay;
+
+   /**
+    * @param maxRetries The maximum number of times a single command will be retried. The
+    *       command is executed at most {@code maxRetries + 1} times.
+    * @param initialDelay The base delay before the first retry.
+    * @param maxDelay The maximum computed delay between retries. Note that delays requested
+    *       by the server may exceed this value.
+    * @param units The time units for the supplied delays.
+    */
+   public RetryPolicy(int maxRetries, long initialDelay, long maxDelay, TimeUnit units)
+   {
+      if (maxRetries < 0)
+         throw new IllegalArgumentException("The maximum number of retries must not be negative.");
+
+      this.maxRetries = maxRetries;
+      this.initialDelay = units.toNanos(Math.max(0, initialDelay));
+      this.maxDelay = Math.max(this.initialDelay, units.toNanos(Math.max(0, maxDelay)));
+   }
+
+   /**
+    * @return The maximum number of times a single command will be retried.
+    */
+   public int getMaxRetries()
+   {
+      return maxRetries;
+   }
+
+   /**
+    * Computes the delay before the next attempt of a command.
+    *
+    * @param retry The number of the retry to be attempted, starting at 1.
+    * @param minDelay A minimum delay in nanoseconds, typically supplied by the server.
+    * @return The delay in nanoseconds before the command should be re-attempted.
+    */
+   public long getDelay(int retry, long minDelay)
+   {
+      int exp = Math.min(Math.max(0, retry - 1), 30);
+      long ceiling = initialDelay << exp;
+      if (ceiling <= 0 || ceiling > maxDelay)
+         ceiling = maxDelay;
+
+      // "equal jitter" - wait at least half of the computed delay
+      long half = ceiling / 2;
+      long jittered = half + (half > 0 ? ThreadLocalRandom.current().nextLong(half + 1) : 0);
+      return Math.max(minDelay, jittered);
+   }
+}
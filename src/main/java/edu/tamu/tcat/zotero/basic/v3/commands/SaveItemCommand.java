@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -52,6 +53,12 @@ public class SaveItemCommand extends ZoteroCommandAdapter<RestApiV3.Item>
       this.key = itemTypeData.getKey();
    }
 
+   @Override
+   protected CompletionStage<?> getPrerequisite()
+   {
+      return requireItemTypes();
+   }
+
    @Override
    protected Invocation buildInvocation(WebTarget apiRoot)
    {
@@ -0,0 +1,204 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import edu.tamu.tcat.zotero.ItemCreator;
+import edu.tamu.tcat.zotero.ZoteroCollection;
+import edu.tamu.tcat.zotero.basic.v3.BasicEditItemCommand.EditItemMutator;
+import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.RestApiV3;
+
+/**
+ * Creates or updates multiple bibliographic items in a single request.
+ *
+ * <p>This corresponds to a POST of an array of items to {@code <userOrGroupPrefix>/items}.
+ * Items without a key are created. Items with a key are updated, provided that the supplied
+ * version matches the current version of the item. The Zotero API accepts at most
+ * {@link #MAX_ITEMS} items per request.
+ *
+ * <p>The outcome for each item is reported in the returned {@link RestApiV3.ZoteroItemResponse}
+ * keyed by the (string-valued) index of the item in the supplied list. A successful response
+ * does not imply that every item was saved.
+ */
+public class SaveItemsCommand extends ZoteroCommandAdapter<RestApiV3.ZoteroItemResponse>
+{
+   /** The maximum number of items that may be written in a single request. */
+   public static final int MAX_ITEMS = 50;
+
+   private static final String KEY = "key";
+   private static final String VERSION = "version";
+   private static final String ITEM_TYPE = "itemType";
+   private static final String CREATORS = "creators";
+   private static final String CREATOR_TYPE = "creatorType";
+   private static final String CREATOR_NAME = "name";
+   private static final String CREATOR_LAST_NAME = "lastName";
+   private static final String CREATOR_FIRST_NAME = "firstName";
+   private static final String COLLECTIONS = "collections";
+   private static final String TAGS = "tags";
+   private static final String RELATIONS = "relations";
+
+   private static final String ITEMS = "items";
+
+   private final List<EditItemMutator> items;
+
+   public SaveItemsCommand(BasicZoteroLibrary library, Collection<EditItemMutator> items)
+   {
+      super(library);
+      this.items = new ArrayList<>(items);
+   }
+
+   @Override
+   protected Set<String> checkStatus()
+   {
+      if (items.isEmpty())
+         return Collections.singleton("No items have been supplied.");
+
+      Set<String> errors = new HashSet<>();
+      if (items.size() > MAX_ITEMS)
+         errors.add("At most " + MAX_ITEMS + " items may be saved at once. Found " + items.size() + ".");
+
+      return errors;
+   }
+
+   @Override
+   protected CompletionStage<?> getPrerequisite()
+   {
+      return requireItemTypes();
+   }
+
+   @Override
+   protected Invocation buildInvocation(WebTarget apiRoot)
+   {
+      WebTarget target = apiRoot.path(ITEMS);
+      List<Map<String, Object>> data = items.stream().map(SaveItemsCommand::unwrap).collect(Collectors.toList());
+      cmdLogger.fine(() -> "[Save Items]: " + data.size() + " items to " + target.getUri());
+
+      return appendHeaders(target.request(MediaType.APPLICATION_JSON))
+                          .buildPost(Entity.entity(data, MediaType.APPLICATION_JSON));
+   }
+
+   @Override
+   protected RestApiV3.ZoteroItemResponse handleResponse(Response response)
+   {
+      if (response.getStatus() == Response.Status.OK.getStatusCode())
+         return response.readEntity(RestApiV3.ZoteroItemResponse.class);
+
+      throw new CompletionException(handleError(response));
+   }
+
+   private static Map<String, Object> unwrap(EditItemMutator mutator)
+   {
+      Map<String, Object> dataMap = new HashMap<>();
+
+      String key = mutator.getKey();
+      if (key != null && !key.isEmpty())
+      {
+         dataMap.put(KEY, key);
+         dataMap.put(VERSION, Integer.valueOf(mutator.getVersion()));
+      }
+
+      dataMap.put(ITEM_TYPE, mutator.getItemType().getId());
+      dataMap.put(CREATORS, unwrapCreators(mutator));
+      dataMap.put(TAGS, new ArrayList<>());
+      dataMap.put(RELATIONS, new HashMap<String,String>());
+
+      dataMap.put(COLLECTIONS, mutator.getCollections()
+                                      .stream()
+                                      .map(ZoteroCollection::getId)
+                                      .collect(Collectors.toList()));
+
+      dataMap.putAll(mutator.getFields());
+      return dataMap;
+   }
+
+   private static List<Map<String,String>> unwrapCreators(EditItemMutator mutator)
+   {
+      Set<String> definedRoles = mutator.getItemType().getCreatorRoles().stream()
+       .map(role -> role.getId())
+       .collect(Collectors.toSet());
+
+      return mutator.getCreators().stream()
+       .filter(creator -> definedRoles.contains(creator.getRole()))
+       .map(SaveItemsCommand::toDtoMap)
+       .collect(Collectors.toList());
+   }
+
+   /**
+    * Converts an individual item creator record into the appropriate form for JSON
+    * serialization to the Zotero REST API.
+    */
+   private static Map<String, String> toDtoMap(ItemCreator creator)
+   {
+      Map<String, String> dto = new HashMap<String, String>();
+      dto.put(CREATOR_TYPE, creator.getRole());
+      String name = creator.getName();
+      if (name == null || name.trim().isEmpty())
+      {
+         // two valued name
+         dto.put(CREATOR_FIRST_NAME, creator.getGivenName());
+         dto.put(CREATOR_LAST_NAME, creator.getFamilyName());
+      }
+      else
+      {
+         // single valued name
+         dto.put(CREATOR_NAME, name);
+      }
+
+      return dto;
+   }
+
+   /**
+    * Zotero POST error responses that apply to the request as a whole include the following
+    *    - 400(Bad Request): Invalid type/field; unparseable JSON
+    *    - 409(Conflict): The target library is locked
+    *    - 412(Precondition Failed): The library has changed since the supplied version
+    *    - 413(Request Entity Too Large): Too many items submitted
+    */
+   private static final String CONFLICT = "The target library is locked";
+   private static final String PRECONDITION_FAILED = "The library has changed since the supplied version.";
+   private static final String BAD_REQUEST = "Invalid type/field or unparseable JSON";
+   private static final String REQUEST_TOO_LARGE = "Too many items submitted";
+
+   private static final String message = "An error occurred while attempting to save {0} items. Reason: {1}";
+
+   private ZoteroResponseException handleError(Response response)
+   {
+      String reason;
+      switch (response.getStatus())
+      {
+         case 400:
+            reason = BAD_REQUEST;
+            break;
+         case 409:
+            reason = CONFLICT;
+            break;
+         case 412:
+            reason = PRECONDITION_FAILED;
+            break;
+         case 413:
+            reason = REQUEST_TOO_LARGE;
+            break;
+         default:
+            reason = response.getStatusInfo().getReasonPhrase();
+      }
+
+      return new ZoteroResponseException(MessageFormat.format(message, Integer.valueOf(items.size()), reason));
+   }
+}
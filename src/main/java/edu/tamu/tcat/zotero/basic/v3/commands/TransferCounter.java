@@ -0,0 +1,166 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+
+/**
+ * Counts the bytes of response bodies read by commands, both as received from the server and
+ * after decoding any {@code Content-Encoding} applied by the server.
+ *
+ * <p>The received bytes are counted by a response filter that wraps the entity stream
+ * supplied by the connector. The decoded bytes are counted by a reader interceptor that runs
+ * after the content decoders. Bytes are counted in total and, if the request carries a
+ * {@link Tally} in the {@link #PROPERTY} property, for that request.
+ */
+class TransferCounter
+{
+   /** The request property that holds the {@link Tally} for an individual request. */
+   static final String PROPERTY = TransferCounter.class.getName() + ".tally";
+
+   private final LongAdder responses = new LongAdder();
+   private final LongAdder compressedResponses = new LongAdder();
+   private final Tally total = new Tally();
+
+   /**
+    * @return A response filter that counts the bytes received from the server.
+    */
+   ClientResponseFilter wireCounter()
+   {
+      return new WireCounter();
+   }
+
+   /**
+    * @return A reader interceptor that counts the bytes of decoded response bodies.
+    */
+   ReaderInterceptor entityCounter()
+   {
+      return new EntityCounter();
+   }
+
+   TransferStats getStats()
+   {
+      return new TransferStats(responses.sum(), compressedResponses.sum(), total.getReceived(), total.getDecoded());
+   }
+
+   private static Tally getTally(Object property)
+   {
+      return property instanceof Tally ? (Tally)property : null;
+   }
+
+   /**
+    * The number of bytes received and decoded.
+    */
+   static class Tally
+   {
+      private final LongAdder received = new LongAdder();
+      private final LongAdder decoded = new LongAdder();
+
+      long getReceived()
+      {
+         return received.sum();
+      }
+
+      long getDecoded()
+      {
+         return decoded.sum();
+      }
+   }
+
+   private class WireCounter implements ClientResponseFilter
+   {
+      @Override
+      public void filter(ClientRequestContext request, ClientResponseContext response)
+      {
+         if (!response.hasEntity())
+            return;
+
+         responses.increment();
+         String encoding = response.getHeaderString(HttpHeaders.CONTENT_ENCODING);
+         if (encoding != null && !encoding.trim().isEmpty() && !"identity".equalsIgnoreCase(encoding.trim()))
+            compressedResponses.increment();
+
+         Tally tally = getTally(request.getProperty(PROPERTY));
+         LongAdder[] counts = tally == null
+               ? new LongAdder[] { total.received }
+               : new LongAdder[] { total.received, tally.received };
+         response.setEntityStream(new CountingInputStream(response.getEntityStream(), counts));
+      }
+   }
+
+   @Priority(Priorities.ENTITY_CODER + 1)
+   private class EntityCounter implements ReaderInterceptor
+   {
+      @Override
+      public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException
+      {
+         Tally tally = getTally(context.getProperty(PROPERTY));
+         LongAdder[] counts = tally == null
+               ? new LongAdder[] { total.decoded }
+               : new LongAdder[] { total.decoded, tally.decoded };
+         context.setInputStream(new CountingInputStream(context.getInputStream(), counts));
+         return context.proceed();
+      }
+   }
+
+   private static class CountingInputStream extends FilterInputStream
+   {
+      private final LongAdder[] counts;
+
+      CountingInputStream(InputStream in, LongAdder[] counts)
+      {
+         super(in);
+         this.counts = counts;
+      }
+
+      @Override
+      public int read() throws IOException
+      {
+         int b = super.read();
+         if (b >= 0)
+            add(1);
+         return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException
+      {
+         int n = super.read(b, off, len);
+         if (n > 0)
+            add(n);
+         return n;
+      }
+
+      @Override
+      public long skip(long n) throws IOException
+      {
+         long skipped = super.skip(n);
+         if (skipped > 0)
+            add(skipped);
+         return skipped;
+      }
+
+      @Override
+      public boolean markSupported()
+      {
+         // resetting would cause bytes to be counted twice
+         return false;
+      }
+
+      private void add(long n)
+      {
+         for (LongAdder count : counts)
+            count.add(n);
+      }
+   }
+}
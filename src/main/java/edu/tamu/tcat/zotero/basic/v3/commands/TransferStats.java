@@ -0,0 +1,71 @@
+package edu.tamu.tcat.zotero.basic.v3.commands;
+
+/**
+ * The number of bytes received from the Zotero API at a point in time, before and after
+ * compressed responses were decoded. See {@link ZoteroCommandExecutor#getTransferStats()}.
+ */
+public class TransferStats
+{
+   private final long responseCount;
+   private final long compressedResponseCount;
+   private final long compressedBytes;
+   private final long decompressedBytes;
+
+   TransferStats(long responseCount, long compressedResponseCount, long compressedBytes, long decompressedBytes)
+   {
+      this.responseCount = responseCount;
+      this.compressedResponseCount = compressedResponseCount;
+      this.compressedBytes = compressedBytes;
+      this.decompressedBytes = decompressedBytes;
+   }
+
+   /**
+    * @return The number of responses whose body has been read.
+    */
+   public long getResponseCount()
+   {
+      return responseCount;
+   }
+
+   /**
+    * @return The number of responses whose body was compressed by the server.
+    */
+   public long getCompressedResponseCount()
+   {
+      return compressedResponseCount;
+   }
+
+   /**
+    * @return The number of bytes of response bodies received from the server. For compressed
+    *       responses, this is the size of the compressed data.
+    */
+   public long getCompressedBytes()
+   {
+      return compressedBytes;
+   }
+
+   /**
+    * @return The number of bytes of response bodies after compressed responses have been
+    *       decoded.
+    */
+   public long getDecompressedBytes()
+   {
+      return decompressedBytes;
+   }
+
+   /**
+    * @return The ratio of the bytes received to the bytes decoded, or {@code 1} if no data has
+    *       been received. Lower values indicate greater savings.
+    */
+   public double getCompressionRatio()
+   {
+      return decompressedBytes == 0 ? 1 : (double)compressedBytes / decompressedBytes;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "TransferStats [responses=" + responseCount + ", compressed=" + compressedResponseCount
+            + ", bytes=" + compressedBytes + "/" + decompressedBytes + "]";
+   }
+}
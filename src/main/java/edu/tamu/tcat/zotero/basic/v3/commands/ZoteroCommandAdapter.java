@@ -2,8 +2,11 @@ package edu.tamu.tcat.zotero.basic.v3.commands;
 
 import java.net.URI;
 import java.util.Collections;
+import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
@@ -48,6 +51,15 @@ public abstract class ZoteroCommandAdapter<T> implements ZoteroApiCommand<T>
 
    private final AtomicBoolean hasBeenExecuted = new AtomicBoolean(false);
 
+   private volatile CommandPriority priority = CommandPriority.NORMAL;
+   private volatile long timeout = 0;
+
+   // state of conditional requests, see #setCachedResult
+   private volatile T cachedResult;
+   private volatile int cachedVersion = -1;
+   private volatile int lastModifiedVersion = -1;
+   private volatile boolean notModified = false;
+
    public ZoteroCommandAdapter(BasicZoteroLibrary library)
    {
       this.library = library;
@@ -85,8 +97,71 @@ public abstract class ZoteroCommandAdapter<T> implements ZoteroApiCommand<T>
       return library;
    }
 
+   /**
+    * Sets the priority with which this command will be dispatched relative to other commands.
+    * Must be called before the command is executed.
+    *
+    * @param priority The priority of this command. Defaults to {@link CommandPriority#NORMAL}.
+    */
+   public void setPriority(CommandPriority priority)
+   {
+      this.priority = Objects.requireNonNull(priority, "No priority supplied");
+   }
+
+   /**
+    * @return The priority with which this command will be dispatched.
+    */
+   public CommandPriority getPriority()
+   {
+      return priority;
+   }
+
+   /**
+    * Executes this command with the supplied priority.
+    *
+    * @param priority The priority with which to dispatch this command.
+    * @return A future that resolves to the result of this command.
+    * @see #setPriority(CommandPriority)
+    */
+   public final CompletableFuture<T> execute(CommandPriority priority)
+   {
+      setPriority(priority);
+      return execute();
+   }
+
+   /**
+    * Limits the time allowed for this command to complete, measured from the time it is
+    * executed. If the command has not completed once the time has elapsed, its future is
+    * completed with a {@link java.util.concurrent.TimeoutException} and any request that is
+    * in progress is aborted. The remaining time is also used to bound the time spent waiting
+    * for the Zotero API to respond. Cancelling the future returned by {@link #execute()}
+    * likewise aborts the request. Must be called before the command is executed.
+    *
+    * @param timeout The time allowed for this command to complete. A value of zero or less
+    *       does not limit the time. Defaults to zero.
+    * @param units The units of the supplied timeout.
+    */
+   public void setTimeout(long timeout, TimeUnit units)
+   {
+      this.timeout = timeout <= 0 ? 0 : units.toNanos(timeout);
+   }
+
+   /**
+    * Executes this command, limiting the time allowed for it to complete.
+    *
+    * @param timeout The time allowed for this command to complete.
+    * @param units The units of the supplied timeout.
+    * @return A future that resolves to the result of this command.
+    * @see #setTimeout(long, TimeUnit)
+    */
+   public final CompletableFuture<T> execute(long timeout, TimeUnit units)
+   {
+      setTimeout(timeout, units);
+      return execute();
+   }
+
    @Override
-   public final Future<T> execute()
+   public final CompletableFuture<T> execute()
    {
       if (!hasBeenExecuted.compareAndSet(false, true))
          throw new IllegalStateException("This command has already been executed. " + this);
@@ -141,6 +216,28 @@ public abstract class ZoteroCommandAdapter<T> implements ZoteroApiCommand<T>
       return zoteroApiRoot;
    }
 
+   /**
+    * @return Work that must be complete before this command is dispatched, or {@code null}.
+    * @see CommandRunnerContext#getPrerequisite()
+    */
+   protected CompletionStage<?> getPrerequisite()
+   {
+      return null;
+   }
+
+   /**
+    * A prerequisite for commands whose results are adapted into items. Items are bound to
+    * their item type when they are constructed, so the item type schema must be available
+    * before the response is handled.
+    *
+    * @return A stage that completes once the item type schema has been loaded, or
+    *       {@code null} if this command is not associated with an account.
+    */
+   protected final CompletionStage<?> requireItemTypes()
+   {
+      return account != null ? account.loadItemTypes() : null;
+   }
+
 
    /**
     * Appends headers to support Zotero authorization bearer token and the Zotero API version.
@@ -155,14 +252,89 @@ public abstract class ZoteroCommandAdapter<T> implements ZoteroApiCommand<T>
    protected Invocation.Builder appendHeaders(Invocation.Builder builder)
    {
       builder = account != null ? account.authenticate(builder) : builder;
+      if (cachedVersion >= 0)
+         builder = builder.header("If-Modified-Since-Version", Integer.toString(cachedVersion));
+
       return builder.header("Zotero-API-Version", "3");
    }
 
+   /**
+    * Supplies a previously retrieved result for this command, making the request conditional.
+    * The request will include an {@code If-Modified-Since-Version} header with the supplied
+    * version. If the Zotero API responds with {@code 304 Not Modified}, the command will
+    * complete with the supplied result rather than reading a response body.
+    *
+    * <p>This is intended for use with commands that retrieve data. For requests for a single
+    * object, the version is the version of that object; for requests for multiple objects it
+    * is the library version returned with the cached result (see
+    * {@link #getLastModifiedVersion()}). Must be called before the invocation for this
+    * command is built.
+    *
+    * @param result The previously retrieved result.
+    * @param version The version of the previously retrieved result.
+    */
+   public void setCachedResult(T result, int version)
+   {
+      this.cachedResult = result;
+      this.cachedVersion = result != null ? version : -1;
+   }
+
+   /**
+    * @return The library version reported by the {@code Last-Modified-Version} header of the
+    *       response to this command, or {@code -1} if the command has not completed or the
+    *       header was not supplied.
+    */
+   public int getLastModifiedVersion()
+   {
+      return lastModifiedVersion;
+   }
+
+   /**
+    * @return {@code true} if the command completed with the result supplied to
+    *       {@link #setCachedResult(Object, int)} because the Zotero API reported that it has
+    *       not been modified.
+    */
+   public boolean isNotModified()
+   {
+      return notModified;
+   }
+
    protected Set<String> checkStatus()
    {
       return Collections.emptySet();
    };
 
+   /**
+    * Indicates whether this command may be re-issued by the {@link ZoteroCommandExecutor} if
+    * the Zotero API responds that it is throttling requests or is temporarily unavailable.
+    * Defaults to {@code true} since the API does not process requests rejected for these
+    * reasons.
+    *
+    * @return {@code true} if this command may be retried.
+    */
+   protected boolean isRetryable()
+   {
+      return true;
+   }
+
+   /**
+    * @param response A response from the Zotero API.
+    * @return The library version reported by the {@code Last-Modified-Version} header of the
+    *       response, or {@code -1} if the header is missing or malformed.
+    */
+   protected static int parseLastModifiedVersion(Response response)
+   {
+      String version = response.getHeaderString("Last-Modified-Version");
+      try
+      {
+         return version == null ? -1 : Integer.parseInt(version.trim());
+      }
+      catch (NumberFormatException ex)
+      {
+         return -1;
+      }
+   }
+
    private class Context implements CommandRunnerContext<T>
    {
 
@@ -170,10 +342,7 @@ public abstract class ZoteroCommandAdapter<T> implements ZoteroApiCommand<T>
       public Invocation configure(WebTarget apiRoot)
       {
          if (library != null)
-         {
-            String typePath = library.getType() == ZoteroLibrary.Type.User ? "users" : "groups";
-            apiRoot = apiRoot.path(typePath).path(library.getId());
-         }
+            apiRoot = apiRoot.path(getTypePath()).path(library.getId());
 
          return ZoteroCommandAdapter.this.buildInvocation(apiRoot);
       }
@@ -181,6 +350,15 @@ public abstract class ZoteroCommandAdapter<T> implements ZoteroApiCommand<T>
       @Override
       public T handleResponse(Response response)
       {
+         lastModifiedVersion = parseLastModifiedVersion(response);
+
+         T cached = cachedResult;
+         if (response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode() && cached != null)
+         {
+            notModified = true;
+            return cached;
+         }
+
          return ZoteroCommandAdapter.this.handleResponse(response);
       }
 
@@ -189,5 +367,53 @@ public abstract class ZoteroCommandAdapter<T> implements ZoteroApiCommand<T>
       {
          return ZoteroCommandAdapter.this.getUri(zoteroEndpoint);
       }
+
+      @Override
+      public String getApiKey()
+      {
+         return account != null ? account.getApiKey() : null;
+      }
+
+      @Override
+      public boolean isRetryable()
+      {
+         return ZoteroCommandAdapter.this.isRetryable();
+      }
+
+      @Override
+      public CommandPriority getPriority()
+      {
+         return priority;
+      }
+
+      @Override
+      public long getTimeout()
+      {
+         return timeout;
+      }
+
+      @Override
+      public CompletionStage<?> getPrerequisite()
+      {
+         return ZoteroCommandAdapter.this.getPrerequisite();
+      }
+
+      @Override
+      public String getCommandName()
+      {
+         Class<?> type = ZoteroCommandAdapter.this.getClass();
+         return type.getSimpleName().isEmpty() ? type.getName() : type.getSimpleName();
+      }
+
+      @Override
+      public String getLibraryName()
+      {
+         return library != null ? getTypePath() + "/" + library.getId() : null;
+      }
+
+      private String getTypePath()
+      {
+         return library.getType() == ZoteroLibrary.Type.User ? "users" : "groups";
+      }
    }
 }
@@ -2,15 +2,36 @@ package edu.tamu.tcat.zotero.basic.v3.commands;
 
 import java.lang.reflect.Constructor;
 import java.net.URI;
+import java.text.MessageFormat;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
@@ -18,6 +39,16 @@ import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Response;
 
+import org.apache.http.client.config.RequestConfig;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
+import org.glassfish.jersey.client.filter.EncodingFilter;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
+
 import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
 
 import edu.tamu.tcat.zotero.ZoteroRestException;
@@ -35,16 +66,62 @@ public class ZoteroCommandExecutor
 {
    // TODO rename to ZoteroAsyncService
 
+   private static final Logger logger = Logger.getLogger(ZoteroCommandExecutor.class.getName());
+
+   private static final String HEADER_BACKOFF = "Backoff";
+   private static final String HEADER_RETRY_AFTER = "Retry-After";
+   private static final int STATUS_TOO_MANY_REQUESTS = 429;
+
    private final ScheduledExecutorService cmdExec;
    private final ExecutorService taskExec;
+
+   /** Runs commands. Either the scheduled pool or, in virtual thread mode, a virtual thread per command. */
+   private final ExecutorService dispatchExec;
    private volatile boolean isShutdown = false;
 
    private final URI zoteroEndpoint;
 
-   private final long timeout;
-   private final TimeUnit timeoutUnits;
+   /** The time in nanoseconds that {@link #unwrap(Future, Supplier)} waits for a result. */
+   private volatile long defaultTimeout = TimeUnit.SECONDS.toNanos(10);
 
    private Client client;
+   private final ConnectionSettings settings;
+   private final AbortableRequest.ConnectionManager connectionManager;
+   private final TransferCounter transferCounter = new TransferCounter();
+   private final CommandMetrics metrics;
+   private final CommandQueue<CommandTask<?>> queue = new CommandQueue<>();
+   private volatile long slowCommandThreshold = 0;
+
+   private volatile RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+   private volatile RateLimiter rateLimiter = RateLimiter.unlimited();
+   private volatile CommandTransport transport = CommandTransport.blocking();
+
+   /** Time (per {@link System#nanoTime()}) until which dispatch is paused, keyed by API key. */
+   private final ConcurrentHashMap<String, Long> pausedUntil = new ConcurrentHashMap<>();
+
+   /** Commands that have been submitted but whose results have not yet been completed. */
+   private final Set<CommandTask<?>> pending = ConcurrentHashMap.newKeySet();
+
+   /**
+    * Set on threads while they run work on behalf of this executor: dispatching commands,
+    * handling responses, completing results and running scheduled tasks. Commands submitted
+    * from these threads must not wait for room in the queue, since that room is made by the
+    * same threads.
+    */
+   private final ThreadLocal<Boolean> ownedThread = new ThreadLocal<>();
+
+   /**
+    * Dispatch attempts that found every ready command held back by a rate limit. They are
+    * resumed one at a time: when the earliest held command may be sent, and again each time a
+    * command is sent, so that the remaining permits are taken in priority order.
+    */
+   private final Object parkLock = new Object();
+   private int parked = 0;                   // guarded by parkLock
+   private ScheduledFuture<?> wakeup;        // guarded by parkLock
+   private long wakeAt;                      // guarded by parkLock
+
+   /** Tasks to run when this executor is closed, before it stops accepting commands. */
+   private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
 
    public ZoteroCommandExecutor()
    {
@@ -52,24 +129,196 @@ public class ZoteroCommandExecutor
    }
 
    public ZoteroCommandExecutor(URI zoteroEndpoint, int poolSize)
+   {
+      this(zoteroEndpoint, poolSize, ConnectionSettings.DEFAULT);
+   }
+
+   /**
+    * @param zoteroEndpoint The base URI of the Zotero API.
+    * @param poolSize The number of threads used to dispatch commands.
+    * @param settings Configures the pool of HTTP connections used to issue requests.
+    */
+   public ZoteroCommandExecutor(URI zoteroEndpoint, int poolSize, ConnectionSettings settings)
+   {
+      this(zoteroEndpoint, poolSize, settings, false);
+   }
+
+   private ZoteroCommandExecutor(URI zoteroEndpoint, int poolSize, ConnectionSettings settings, boolean useVirtualThreads)
    {
       this.zoteroEndpoint = zoteroEndpoint;
-      cmdExec = Executors.newScheduledThreadPool(poolSize);
-      taskExec = Executors.newCachedThreadPool();
+      if (useVirtualThreads)
+      {
+         // platform threads are only needed for timers (back-off, rate limiting, idle eviction)
+         cmdExec = newScheduler(1);
+         dispatchExec = newVirtualThreadPerTaskExecutor();
+         taskExec = newVirtualThreadPerTaskExecutor();
+      }
+      else
+      {
+         cmdExec = newScheduler(poolSize);
+         dispatchExec = cmdExec;
+         taskExec = Executors.newCachedThreadPool();
+      }
+
+      metrics = new CommandMetrics(dispatchExec);
+
+      this.settings = settings;
+      connectionManager = new AbortableRequest.ConnectionManager();
+      connectionManager.setDefaultMaxPerRoute(settings.getMaxPerRoute(poolSize));
+      connectionManager.setMaxTotal(settings.getMaxTotal(poolSize));
+      client = ClientBuilder.newClient(createClientConfig(settings, poolSize));
+
+      long idleTimeout = settings.getIdleTimeout();
+      if (idleTimeout > 0)
+      {
+         long period = Math.max(1000, idleTimeout / 2);
+         cmdExec.scheduleWithFixedDelay(() -> evictIdleConnections(idleTimeout), period, period, TimeUnit.MILLISECONDS);
+      }
+   }
+
+   private ScheduledExecutorService newScheduler(int poolSize)
+   {
+      ThreadFactory threads = Executors.defaultThreadFactory();
+      ThreadFactory ownedThreads = task -> threads.newThread(() -> runOwned(task));
+
+      // timers for commands that have completed are cancelled; do not hold them until they expire
+      ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(poolSize, ownedThreads);
+      scheduler.setRemoveOnCancelPolicy(true);
+      return scheduler;
+   }
+
+   /**
+    * Creates an executor that runs each command on its own virtual thread. Blocking requests
+    * and response handling then no longer occupy platform threads, allowing many more
+    * concurrent requests for the same memory. A single platform thread is retained to run
+    * timers such as back-off delays.
+    *
+    * <p>Virtual threads require Java 21 or later. See {@link #isVirtualThreadSupported()}.
+    *
+    * @param zoteroEndpoint The base URI of the Zotero API.
+    * @param maxConnections The maximum number of concurrent connections to the Zotero API,
+    *       unless otherwise specified by the supplied settings.
+    * @param settings Configures the pool of HTTP connections used to issue requests.
+    * @return The new executor.
+    * @throws UnsupportedOperationException If virtual threads are not supported by the
+    *       current Java runtime.
+    */
+   public static ZoteroCommandExecutor withVirtualThreads(URI zoteroEndpoint, int maxConnections, ConnectionSettings settings)
+   {
+      if (!isVirtualThreadSupported())
+         throw new UnsupportedOperationException("Virtual threads require Java 21 or later.");
+
+      return new ZoteroCommandExecutor(zoteroEndpoint, maxConnections, settings, true);
+   }
+
+   /**
+    * @return {@code true} if the current Java runtime supports virtual threads.
+    */
+   public static boolean isVirtualThreadSupported()
+   {
+      try
+      {
+         Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+         return true;
+      }
+      catch (NoSuchMethodException ex)
+      {
+         return false;
+      }
+   }
 
-      client = ClientBuilder.newBuilder().register(JacksonJsonProvider.class).build();
+   // accessed reflectively so that this library continues to run on Java 8
+   private static ExecutorService newVirtualThreadPerTaskExecutor()
+   {
+      try
+      {
+         return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      }
+      catch (ReflectiveOperationException ex)
+      {
+         throw new UnsupportedOperationException("Virtual threads are not supported by this Java runtime.", ex);
+      }
+   }
 
-      this.timeout = 10;
-      this.timeoutUnits = TimeUnit.SECONDS;
+   private ClientConfig createClientConfig(ConnectionSettings settings, int poolSize)
+   {
+      ClientConfig config = new ClientConfig();
+      config.connectorProvider(new ApacheConnectorProvider());
+      config.property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
+      config.property(ClientProperties.CONNECT_TIMEOUT, Integer.valueOf(settings.getConnectTimeout()));
+      config.property(ClientProperties.READ_TIMEOUT, Integer.valueOf(settings.getReadTimeout()));
+
+      // the async transport runs each request on one of Jersey's threads. Jersey creates these
+      // without bound by default; no more requests than there are connections can proceed
+      config.property(ClientProperties.ASYNC_THREADPOOL_SIZE, Integer.valueOf(settings.getMaxTotal(poolSize)));
+
+      // send a Content-Length rather than chunking request bodies, as HttpURLConnection did
+      config.property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.BUFFERED);
+
+      // negotiate compression using Jersey's encoders rather than the connector's so that the
+      // bytes received can be counted before responses are decoded
+      config.property(ApacheClientProperties.REQUEST_CONFIG, RequestConfig.custom().setContentCompressionEnabled(false).build());
+      config.register(EncodingFilter.class);
+      config.register(GZipEncoder.class);
+      config.register(DeflateEncoder.class);
+      config.register(transferCounter.wireCounter());
+      config.register(transferCounter.entityCounter());
+      config.register(new RequestTrace.Filter());
+      config.register(new AbortableRequest.Filter());
+
+      config.register(JacksonJsonProvider.class);
+      return config;
    }
 
+   private void evictIdleConnections(long idleTimeout)
+   {
+      try
+      {
+         connectionManager.closeExpiredConnections();
+         connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+      }
+      catch (RuntimeException ex)
+      {
+         logger.log(Level.WARNING, "Failed to close idle connections.", ex);
+      }
+   }
+
+   /**
+    * Shuts down this executor. Registered close listeners are notified first and may submit
+    * any commands they have buffered. Commands that have been submitted are allowed to
+    * finish; the results of any that cannot be completed before the executor shuts down are
+    * completed exceptionally.
+    */
    public void close()
    {
+      for (Runnable listener : closeListeners)
+      {
+         try
+         {
+            listener.run();
+         }
+         catch (RuntimeException ex)
+         {
+            logger.log(Level.WARNING, "Close listener failed.", ex);
+         }
+      }
+
       isShutdown = true;
+      queue.close();
 
+      // timers are shut down first since they may still dispatch delayed commands
       shutdownExecutor(cmdExec);
+      if (dispatchExec != cmdExec)
+         shutdownExecutor(dispatchExec);
       shutdownExecutor(taskExec);
 
+      IllegalStateException closed = new IllegalStateException("This command executor has been shut down.");
+      pending.forEach(task -> task.result.completeExceptionally(closed));
+      pending.clear();
+
+      metrics.close();
+
+      // closing the client also shuts down the connection pool
       client.close();
       client = null;
    }
@@ -93,6 +342,43 @@ public class ZoteroCommandExecutor
       return success;
    }
 
+   /**
+    * Registers a task to be run when this executor is closed, before it stops accepting
+    * commands. This allows components that buffer work, such as deferred writes, to submit
+    * that work so that it is not lost.
+    *
+    * @param listener The task to run.
+    */
+   public void addCloseListener(Runnable listener)
+   {
+      closeListeners.add(Objects.requireNonNull(listener, "No close listener supplied"));
+   }
+
+   /**
+    * @param listener A previously registered close listener to remove.
+    */
+   public void removeCloseListener(Runnable listener)
+   {
+      closeListeners.remove(listener);
+   }
+
+   /**
+    * Schedules a lightweight task to be run after the supplied delay using the executor's
+    * scheduling threads. The task should not block.
+    *
+    * @param task The task to run.
+    * @param delay The time to wait before running the task.
+    * @param unit The units of the supplied delay.
+    * @return A future that may be used to cancel the task.
+    */
+   public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit)
+   {
+      if (isShutdown)
+         throw new IllegalStateException("This command executor has been shut down.");
+
+      return cmdExec.schedule(task, delay, unit);
+   }
+
    /**
     * Provides a mechanism for deferring a task to be run in the background. For example, this
     * could be used to lazily load paged data in an item set pending
@@ -123,7 +409,18 @@ public class ZoteroCommandExecutor
       }
    }
 
-   public <X> Future<X> submit(CommandRunnerContext<X> command)
+   /**
+    * Submits a command for execution.
+    *
+    * @param command The command to execute.
+    * @return A future that will be completed by this executor with the result of the
+    *       command's {@link CommandRunnerContext#handleResponse(Response)} method, or
+    *       exceptionally if the request could not be executed or the response could not be
+    *       handled. Completes with a {@link CommandRejectedException} if the command is
+    *       rejected or shed because too many commands are queued (see
+    *       {@link #setQueueLimit(int, OverloadPolicy)}).
+    */
+   public <X> CompletableFuture<X> submit(CommandRunnerContext<X> command)
    {
       if (isShutdown)
          throw new IllegalStateException("This command executor has been shut down.");
@@ -132,40 +429,450 @@ public class ZoteroCommandExecutor
       WebTarget target = client.target(uri);
 
       Invocation invocation = command.configure(target);
-      return cmdExec.submit(() -> {
-         Response resp = null;
-         try
+      CommandTask<X> task = new CommandTask<>(command, invocation);
+      try
+      {
+         queue.admit(task, !isOwnedThread());
+      }
+      catch (CommandRejectedException ex)
+      {
+         metrics.recordRejected();
+         task.result.completeExceptionally(ex);
+         return task.result;
+      }
+
+      task.start();
+      pending.add(task);
+      task.result.whenComplete((r, ex) -> pending.remove(task));
+
+      CompletionStage<?> prerequisite = command.getPrerequisite();
+      if (prerequisite == null)
+      {
+         dispatch(task);
+      }
+      else
+      {
+         prerequisite.whenComplete((r, ex) -> {
+            if (ex != null)
+               task.result.completeExceptionally(ex);
+            else
+               dispatch(task);
+         });
+      }
+
+      return task.result;
+   }
+
+   /**
+    * Queues a command to be run in priority order by the next available dispatch thread.
+    */
+   private void dispatch(CommandTask<?> task)
+   {
+      queue.offer(task);
+      try
+      {
+         dispatchExec.execute(this::runNext);
+      }
+      catch (RejectedExecutionException ex)
+      {
+         task.result.completeExceptionally(new IllegalStateException("This command executor has been shut down.", ex));
+      }
+   }
+
+   private void runNext()
+   {
+      runOwned(() -> {
+         long[] wait = new long[1];
+         CommandTask<?> task = queue.poll(CommandTask::acquirePermit, wait);
+         if (task != null)
          {
-            resp = invocation.invoke();
-            inspectResponse(resp);
-            return command.handleResponse(resp);
+            resumeParked();
+            task.run();
          }
-         finally
+         else if (wait[0] > 0)
          {
-            if (resp != null)
-               resp.close();
+            park(wait[0]);
          }
       });
    }
 
-   private void inspectResponse(Response resp) {
-      // TODO extract backoff info, etc from response
+   /**
+    * Defers a dispatch attempt until the earliest held command may be sent.
+    *
+    * @param wait The time in nanoseconds until a held command may be sent.
+    */
+   private void park(long wait)
+   {
+      synchronized (parkLock)
+      {
+         parked++;
+         long at = System.nanoTime() + wait;
+         if (wakeup != null && wakeAt - at <= 0)
+            return;
+
+         if (wakeup != null)
+            wakeup.cancel(false);
+
+         try
+         {
+            wakeAt = at;
+            wakeup = cmdExec.schedule(this::wake, wait, TimeUnit.NANOSECONDS);
+         }
+         catch (RejectedExecutionException ex)
+         {
+            // shutting down; queued commands are completed when the executor is closed
+            wakeup = null;
+         }
+      }
+   }
+
+   private void wake()
+   {
+      synchronized (parkLock)
+      {
+         wakeup = null;
+      }
+
+      resumeParked();
+   }
+
+   /**
+    * Resumes a single deferred dispatch attempt, if any.
+    */
+   private void resumeParked()
+   {
+      synchronized (parkLock)
+      {
+         if (parked == 0)
+            return;
+
+         parked--;
+      }
+
+      try
+      {
+         dispatchExec.execute(this::runNext);
+      }
+      catch (RejectedExecutionException ex)
+      {
+         // shutting down; queued commands are completed when the executor is closed
+      }
+   }
+
+   /**
+    * Runs work on behalf of this executor, marking the current thread as owned by it while
+    * the work runs.
+    */
+   private void runOwned(Runnable work)
+   {
+      if (isOwnedThread())
+      {
+         work.run();
+         return;
+      }
+
+      ownedThread.set(Boolean.TRUE);
+      try
+      {
+         work.run();
+      }
+      finally
+      {
+         ownedThread.remove();
+      }
+   }
+
+   /**
+    * @return {@code true} if the current thread is running work on behalf of this executor.
+    */
+   private boolean isOwnedThread()
+   {
+      return ownedThread.get() != null;
+   }
+
+   /**
+    * Sets the share of dispatch capacity given to commands of a priority when commands of
+    * several priorities are waiting to be run. Commands are dispatched from a separate lane
+    * for each priority using weighted round-robin, so that a command of a higher priority
+    * overtakes a backlog of lower priority commands while those commands continue to make
+    * progress. By default, the weights of the {@link CommandPriority#INTERACTIVE},
+    * {@link CommandPriority#NORMAL} and {@link CommandPriority#BULK} lanes are 8, 3 and 1.
+    *
+    * @param priority The priority to configure.
+    * @param weight The weight of the lane, relative to the other lanes. Must be positive.
+    */
+   public void setPriorityWeight(CommandPriority priority, int weight)
+   {
+      queue.setWeight(Objects.requireNonNull(priority, "No priority supplied"), weight);
+   }
+
+   /**
+    * Limits the number of commands that may be queued awaiting dispatch. Commands count
+    * towards the limit from the time they are submitted until their request is sent,
+    * including time spent waiting on rate limits or back-off requests. Commands that are
+    * retried are not subject to the limit, since they have already been accepted. By default,
+    * the number of queued commands is not limited.
+    *
+    * @param limit The maximum number of queued commands. A value of zero or less removes the
+    *       limit.
+    * @param policy Determines how commands submitted while the queue is full are handled.
+    */
+   public void setQueueLimit(int limit, OverloadPolicy policy)
+   {
+      queue.setLimit(limit, Objects.requireNonNull(policy, "No overload policy supplied"));
+   }
+
+   /**
+    * Sets the policy used to retry commands that are throttled or rejected because the
+    * Zotero API is temporarily unavailable. The policy applies to commands that are attempted
+    * or re-attempted after it has been set.
+    *
+    * @param policy The retry policy to use.
+    */
+   public void setRetryPolicy(RetryPolicy policy)
+   {
+      this.retryPolicy = Objects.requireNonNull(policy, "No retry policy supplied");
+   }
+
+   /**
+    * @return The policy used to retry throttled commands.
+    */
+   public RetryPolicy getRetryPolicy()
+   {
+      return retryPolicy;
+   }
+
+   /**
+    * Sets the transport used to issue requests. By default, requests are issued synchronously
+    * by the threads that dispatch commands. The transport applies to commands that are
+    * dispatched after it has been set.
+    *
+    * @param transport The transport to use.
+    * @see CommandTransport#async()
+    */
+   public void setTransport(CommandTransport transport)
+   {
+      this.transport = Objects.requireNonNull(transport, "No transport supplied");
+   }
+
+   /**
+    * @return The transport used to issue requests.
+    */
+   public CommandTransport getTransport()
+   {
+      return transport;
+   }
+
+   /**
+    * Sets the time that {@link #unwrap(Future, Supplier)} waits for the result of a command
+    * before giving up. This is used by the blocking methods of the Zotero API, such as
+    * {@link edu.tamu.tcat.zotero.ZoteroLibrary#getItem(String)}. Defaults to 10 seconds.
+    *
+    * @param timeout The time to wait. Must be positive.
+    * @param units The units of the supplied timeout.
+    */
+   public void setDefaultTimeout(long timeout, TimeUnit units)
+   {
+      if (timeout <= 0)
+         throw new IllegalArgumentException("The default timeout must be positive.");
+
+      this.defaultTimeout = units.toNanos(timeout);
+   }
+
+   /**
+    * @param units The units in which to return the timeout.
+    * @return The time that {@link #unwrap(Future, Supplier)} waits for the result of a command.
+    */
+   public long getDefaultTimeout(TimeUnit units)
+   {
+      return units.convert(defaultTimeout, TimeUnit.NANOSECONDS);
+   }
+
+   /**
+    * @return The metrics recorded for the commands executed by this executor.
+    */
+   public CommandMetrics getMetrics()
+   {
+      return metrics;
+   }
+
+   /**
+    * Sets the threshold above which completed commands are logged as slow. The log records
+    * the request that was issued and the time spent in each phase of execution: waiting to be
+    * sent, each attempt of the request and handling the response. Slow commands are logged
+    * at {@link Level#WARNING}.
+    *
+    * @param threshold The duration above which commands are considered slow. A value of zero
+    *       or less disables logging of slow commands. Disabled by default.
+    * @param units The units of the supplied threshold.
+    */
+   public void setSlowCommandThreshold(long threshold, TimeUnit units)
+   {
+      this.slowCommandThreshold = threshold <= 0 ? 0 : units.toNanos(threshold);
+   }
+
+   /**
+    * Responses are requested using {@code gzip} or {@code deflate} compression and decoded
+    * transparently before they are supplied to commands.
+    *
+    * @return The number of bytes received by this executor, before and after compressed
+    *       responses were decoded.
+    */
+   public TransferStats getTransferStats()
+   {
+      return transferCounter.getStats();
+   }
+
+   /**
+    * Sets the rate limiter used to restrict the number of requests issued for each API key.
+    * Requests in excess of the configured rate are queued until a permit is available rather
+    * than blocking the threads used to execute commands. By default, the rate of requests is
+    * not restricted.
+    *
+    * <p>Replacing the rate limiter discards the state of the previous limiter. Commands that
+    * are waiting on a permit from the previous limiter will not be re-queued.
+    *
+    * @param limiter The rate limiter to use.
+    */
+   public void setRateLimiter(RateLimiter limiter)
+   {
+      this.rateLimiter = Objects.requireNonNull(limiter, "No rate limiter supplied");
+   }
+
+   /**
+    * Convenience method to configure a {@link RateLimiter} for this executor.
+    *
+    * @param requestsPerSecond The sustained number of requests per second allowed for each
+    *       API key. A value of zero or less disables rate limiting.
+    * @param burst The maximum number of requests that may be issued for an API key in
+    *       immediate succession.
+    */
+   public void setRateLimit(double requestsPerSecond, int burst)
+   {
+      setRateLimiter(new RateLimiter(requestsPerSecond, burst));
+   }
+
+   /**
+    * @return The rate limiter used to restrict the number of requests for each API key.
+    */
+   public RateLimiter getRateLimiter()
+   {
+      return rateLimiter;
+   }
+
+   /**
+    * Inspects the response for back-off instructions from the Zotero API. A {@code Backoff}
+    * header (which may accompany successful responses) or a {@code Retry-After} header
+    * (which accompanies {@code 429} and {@code 503} responses) pauses the dispatch of all
+    * commands for the associated API key for the indicated period.
+    *
+    * @return The delay in nanoseconds requested by the server before this request may be
+    *       retried, or {@code -1} if the request was not throttled.
+    */
+   private long inspectResponse(String apiKey, Response resp)
+   {
+      long backoff = parseDelay(resp.getHeaderString(HEADER_BACKOFF));
+      long retryAfter = parseDelay(resp.getHeaderString(HEADER_RETRY_AFTER));
+
+      long pause = Math.max(backoff, retryAfter);
+      if (pause > 0)
+      {
+         pauseDispatch(apiKey, pause);
+         logger.info(() -> MessageFormat.format("Zotero API requested back-off of {0} ms [status: {1}]",
+               Long.valueOf(TimeUnit.NANOSECONDS.toMillis(pause)), Integer.valueOf(resp.getStatus())));
+      }
 
+      int status = resp.getStatus();
+      if (status == STATUS_TOO_MANY_REQUESTS || status == Response.Status.SERVICE_UNAVAILABLE.getStatusCode())
+         return Math.max(0, retryAfter);
+
+      return -1;
+   }
+
+   private void pauseDispatch(String apiKey, long nanos)
+   {
+      Long until = Long.valueOf(System.nanoTime() + nanos);
+      pausedUntil.merge(toPauseKey(apiKey), until, (a, b) -> (a.longValue() - b.longValue() > 0) ? a : b);
+   }
+
+   /**
+    * @return The remaining time in nanoseconds that dispatch for the supplied key has been
+    *       paused. Will be zero or negative if the key is not paused.
+    */
+   private long getRemainingPause(String apiKey)
+   {
+      Long until = pausedUntil.get(toPauseKey(apiKey));
+      return until == null ? 0 : until.longValue() - System.nanoTime();
+   }
+
+   private static String toPauseKey(String apiKey)
+   {
+      return apiKey == null ? "" : apiKey;
+   }
+
+   /**
+    * Parses a delay supplied in the {@code Backoff} or {@code Retry-After} headers. The value
+    * is expected to be expressed in seconds, but {@code Retry-After} may also be supplied as
+    * an HTTP date.
+    *
+    * @return The delay in nanoseconds, or {@code -1} if no delay was supplied.
+    */
+   private static long parseDelay(String value)
+   {
+      if (value == null || value.trim().isEmpty())
+         return -1;
+
+      try
+      {
+         return TimeUnit.SECONDS.toNanos(Long.parseLong(value.trim()));
+      }
+      catch (NumberFormatException nfe)
+      {
+         try
+         {
+            ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            long millis = date.toInstant().toEpochMilli() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+         }
+         catch (DateTimeParseException dtpe)
+         {
+            logger.fine(() -> "Ignoring malformed back-off value: " + value);
+            return -1;
+         }
+      }
    }
 
+   /**
+    * Waits for the result of a command for at most the default timeout (see
+    * {@link #setDefaultTimeout(long, TimeUnit)}). If the result is not available in time, or
+    * the calling thread is interrupted, the supplied future is cancelled. Cancelling a future
+    * returned by {@link #submit(CommandRunnerContext)} aborts the command's request.
+    *
+    * @param result The future result of a command.
+    * @param message Supplies the message of the exception thrown if the result could not be
+    *       retrieved.
+    * @return The result.
+    * @throws ZoteroRestException If the command failed with this exception.
+    * @throws IllegalStateException If the result was not available in time.
+    */
    public <X> X unwrap(Future<X> result, Supplier<String> message) throws ZoteroRestException
    {
       try
       {
-         return result.get(timeout, timeoutUnits);
+         return result.get(defaultTimeout, TimeUnit.NANOSECONDS);
       }
       catch (InterruptedException | TimeoutException e)
       {
+         // the result has been abandoned, stop any work that remains
+         result.cancel(true);
          throw new IllegalStateException(message.get(), e);
       }
       catch (ExecutionException ex)
       {
          Throwable cause = ex.getCause();
+         if (cause instanceof CompletionException && cause.getCause() != null)
+            cause = cause.getCause();
+
          if (cause instanceof ZoteroRestException)
             throw (ZoteroRestException)cause;
 
@@ -176,4 +883,354 @@ public class ZoteroCommandExecutor
       }
    }
 
+   /**
+    * @return The supplied duration in milliseconds, or {@code "-"} if the duration is negative.
+    */
+   private static String toMillis(long nanos)
+   {
+      return nanos < 0 ? "-" : Long.toString(TimeUnit.NANOSECONDS.toMillis(nanos));
+   }
+
+   /**
+    * @return The supplied number of milliseconds, limited by the configured timeout unless
+    *       that timeout is disabled.
+    */
+   private static int limitTimeout(int configured, long millis)
+   {
+      return (int)Math.min(configured > 0 ? configured : Integer.MAX_VALUE, millis);
+   }
+
+   /**
+    * Executes a single command, re-scheduling it as needed in order to honor back-off
+    * requests from the Zotero API. The request is issued using the configured transport and
+    * the response is handled on the thread that supplies it.
+    *
+    * <p>If the command has a deadline, the command is completed with a
+    * {@link TimeoutException} once the deadline passes and the time allowed to connect and
+    * read a response is limited to the time remaining. A command that completes while its
+    * request is in progress, because it timed out or was cancelled, aborts the request.
+    */
+   private class CommandTask<X> implements Runnable, CommandQueue.Entry
+   {
+      private final CommandRunnerContext<X> command;
+      private final Invocation invocation;
+      private final String apiKey;
+      private final CommandPriority priority;
+      private final CompletableFuture<X> result = new CompletableFuture<>();
+      private final CommandMetrics.Recorder recorder;
+      private final RequestTrace trace = new RequestTrace();
+      private final AbortableRequest request = new AbortableRequest();
+      private final long submitted = System.nanoTime();
+
+      /** Time (per {@link System#nanoTime()}) by which the command must complete, if {@link #hasDeadline}. */
+      private final long deadline;
+      private final boolean hasDeadline;
+
+      /** The pending re-dispatch of this command, if it is waiting on a timer. */
+      private volatile ScheduledFuture<?> timer;
+
+      private int retries = 0;
+      private boolean hasPermit = false;
+      private boolean hasBeenSent = false;
+      private long sent;
+
+      // timings used to report slow commands
+      private volatile long queueWait = -1;
+      private volatile long decodeTime = -1;
+      private final List<Long> attempts = Collections.synchronizedList(new ArrayList<>());
+
+      // guarded by this
+      private CommandMetrics.Phase phase = CommandMetrics.Phase.QUEUED;
+
+      CommandTask(CommandRunnerContext<X> command, Invocation invocation)
+      {
+         this.command = command;
+         this.invocation = invocation;
+         this.apiKey = command.getApiKey();
+         this.priority = Objects.requireNonNull(command.getPriority(), "No command priority supplied");
+
+         recorder = metrics.recorder(command.getCommandName(), command.getLibraryName());
+         invocation.property(TransferCounter.PROPERTY, recorder.getTransferTally());
+         invocation.property(RequestTrace.PROPERTY, trace);
+         invocation.property(AbortableRequest.PROPERTY, request);
+
+         long timeout = command.getTimeout();
+         hasDeadline = timeout > 0;
+         deadline = submitted + Math.max(0, timeout);
+      }
+
+      /**
+       * Begins tracking this command once it has been admitted to the queue.
+       */
+      void start()
+      {
+         metrics.transition(null, CommandMetrics.Phase.QUEUED);
+         if (hasDeadline)
+         {
+            try
+            {
+               ScheduledFuture<?> expiry = cmdExec.schedule(() -> expire(null), getRemaining(), TimeUnit.NANOSECONDS);
+               result.whenComplete((r, ex) -> expiry.cancel(false));
+            }
+            catch (RejectedExecutionException ex)
+            {
+               // shutting down; the result will be completed when the executor is closed
+            }
+         }
+
+         result.whenComplete((r, ex) -> complete(ex));
+      }
+
+      /**
+       * @return The time in nanoseconds remaining before the deadline of this command.
+       */
+      private long getRemaining()
+      {
+         return deadline - System.nanoTime();
+      }
+
+      /**
+       * Completes this command once its deadline has passed.
+       *
+       * @param cause The failure that resulted from the deadline, for example a read timeout.
+       *       May be {@code null}.
+       */
+      private void expire(Throwable cause)
+      {
+         String msg = "The {0} command did not complete within {1} ms.";
+         TimeoutException ex = new TimeoutException(MessageFormat.format(msg, command.getCommandName(), toMillis(command.getTimeout())));
+         if (cause != null)
+            ex.initCause(cause);
+
+         result.completeExceptionally(ex);
+      }
+
+      @Override
+      public CommandPriority getPriority()
+      {
+         return priority;
+      }
+
+      @Override
+      public void shed(CommandRejectedException ex)
+      {
+         if (result.completeExceptionally(ex))
+            metrics.recordRejected();
+      }
+
+      /**
+       * Called by the queue, while it holds its lock, to decide whether this command may be
+       * sent now. Takes a token from the rate limiter only when one is available, so that
+       * commands cancelled, shed or expired while waiting do not use up the account's
+       * allowance, and commands held back keep their place in their lane.
+       *
+       * @return Zero if this command may be run now, otherwise the time in nanoseconds until
+       *       it may be.
+       */
+      long acquirePermit()
+      {
+         if (hasPermit || result.isDone())
+            return 0;
+
+         long pause = getRemainingPause(apiKey);
+         if (pause > 0)
+            return pause;
+
+         long wait = rateLimiter.tryAcquire(apiKey);
+         if (wait > 0)
+            return wait;
+
+         hasPermit = true;
+         return 0;
+      }
+
+      @Override
+      public void run()
+      {
+         if (result.isDone())
+            return;           // cancelled by the caller
+
+         long pause = getRemainingPause(apiKey);
+         if (pause > 0)
+         {
+            reschedule(pause);
+            return;
+         }
+
+         sent = System.nanoTime();
+         if (!hasBeenSent)
+         {
+            hasBeenSent = true;
+            queueWait = sent - submitted;
+            recorder.recordQueueWait(queueWait);
+         }
+
+         moveTo(CommandMetrics.Phase.IN_FLIGHT);
+
+         try
+         {
+            if (hasDeadline)
+               limitTimeouts();
+
+            // responses from asynchronous transports are handled on the transport's threads
+            transport.send(invocation).whenComplete((resp, ex) -> runOwned(() -> handle(resp, ex)));
+         }
+         catch (RuntimeException ex)
+         {
+            result.completeExceptionally(ex);
+         }
+      }
+
+      /**
+       * Bounds the time spent connecting to the Zotero API and waiting for its response by the
+       * time remaining before the deadline of this command.
+       */
+      private void limitTimeouts()
+      {
+         // rounded up, so that a timeout is only reported once the deadline has passed
+         long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(getRemaining() + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+         invocation.property(ClientProperties.CONNECT_TIMEOUT, Integer.valueOf(limitTimeout(settings.getConnectTimeout(), millis)));
+         invocation.property(ClientProperties.READ_TIMEOUT, Integer.valueOf(limitTimeout(settings.getReadTimeout(), millis)));
+      }
+
+      private void handle(Response resp, Throwable failure)
+      {
+         if (failure != null)
+         {
+            request.release();
+            if (hasDeadline && getRemaining() <= 0)
+               expire(failure);
+            else
+               result.completeExceptionally(failure);
+            return;
+         }
+
+         if (result.isDone())
+         {
+            // timed out or cancelled while the request was in progress
+            request.release();
+            resp.close();
+            return;
+         }
+
+         long latency = System.nanoTime() - sent;
+         attempts.add(Long.valueOf(latency));
+         recorder.recordResponse(resp.getStatus(), latency);
+
+         X value = null;
+         Throwable error = null;
+         try
+         {
+            long retryAfter = inspectResponse(apiKey, resp);
+            if (retryAfter >= 0 && canRetry())
+            {
+               retries++;
+               hasPermit = false;
+               recorder.recordRetry();
+               moveTo(CommandMetrics.Phase.QUEUED);
+               reschedule(retryPolicy.getDelay(retries, retryAfter));
+               return;
+            }
+
+            long decodeStart = System.nanoTime();
+            try
+            {
+               value = command.handleResponse(resp);
+            }
+            finally
+            {
+               decodeTime = System.nanoTime() - decodeStart;
+               recorder.recordDecode(decodeTime);
+            }
+         }
+         catch (Throwable ex)
+         {
+            error = ex;
+         }
+         finally
+         {
+            // the response remains abortable until it has been read
+            request.release();
+            resp.close();
+         }
+
+         // the response is closed first so that its connection is returned to the pool
+         if (error == null)
+            result.complete(value);
+         else
+            result.completeExceptionally(error);
+      }
+
+      private synchronized void moveTo(CommandMetrics.Phase next)
+      {
+         if (phase == CommandMetrics.Phase.DONE || phase == next)
+            return;
+
+         if (phase == CommandMetrics.Phase.QUEUED)
+            queue.remove(this);
+         else if (next == CommandMetrics.Phase.QUEUED)
+            queue.requeue(this);
+
+         metrics.transition(phase, next);
+         phase = next;
+      }
+
+      private void complete(Throwable failure)
+      {
+         // stop any work on behalf of a command that timed out or was cancelled
+         if (failure != null)
+            request.abort();
+
+         ScheduledFuture<?> pendingDispatch = timer;
+         if (pendingDispatch != null)
+            pendingDispatch.cancel(false);
+
+         moveTo(CommandMetrics.Phase.DONE);
+         recorder.recordCompletion(failure != null);
+
+         long elapsed = System.nanoTime() - submitted;
+         long threshold = slowCommandThreshold;
+         if (threshold > 0 && elapsed > threshold)
+         {
+            metrics.recordSlow();
+            logger.log(Level.WARNING, () -> MessageFormat.format(
+                  "Slow Zotero command {0} [{1}]: {2} took {3} ms (queued: {4} ms, attempts: {5}, handling: {6} ms, retries: {7}){8}",
+                  command.getCommandName(), Objects.toString(command.getLibraryName(), "-"), trace,
+                  toMillis(elapsed), toMillis(queueWait), formatAttempts(), toMillis(decodeTime),
+                  Integer.valueOf(retries), failure == null ? "" : " failed: " + failure));
+         }
+      }
+
+      private String formatAttempts()
+      {
+         synchronized (attempts)
+         {
+            return attempts.stream().map(nanos -> toMillis(nanos.longValue()) + " ms").collect(Collectors.joining(", ", "[", "]"));
+         }
+      }
+
+      private boolean canRetry()
+      {
+         return command.isRetryable() && retries < retryPolicy.getMaxRetries() && !isShutdown;
+      }
+
+      private void reschedule(long delay)
+      {
+         if (hasDeadline && delay >= getRemaining())
+         {
+            // the command would not be run before its deadline
+            expire(null);
+            return;
+         }
+
+         try
+         {
+            timer = cmdExec.schedule(() -> dispatch(this), delay, TimeUnit.NANOSECONDS);
+         }
+         catch (RejectedExecutionException ex)
+         {
+            result.completeExceptionally(new IllegalStateException("This command executor has been shut down.", ex));
+         }
+      }
+   }
 }
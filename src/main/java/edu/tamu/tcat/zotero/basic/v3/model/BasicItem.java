@@ -27,7 +27,6 @@ import edu.tamu.tcat.zotero.basic.v3.BasicEditItemCommand.EditItemMutator;
 import edu.tamu.tcat.zotero.basic.v3.RestApiV3;
 import edu.tamu.tcat.zotero.types.ItemFieldType;
 import edu.tamu.tcat.zotero.types.ItemType;
-import edu.tamu.tcat.zotero.types.ItemTypeInfo;
 import edu.tamu.tcat.zotero.types.ItemTypeProvider;
 
 public class BasicItem implements Item
@@ -177,6 +176,45 @@ public class BasicItem implements Item
       // TODO generate RDF triples for these relns?
    }
 
+   /**
+    * Constructs an item from values read by the {@link ItemStreamDecoder}.
+    */
+   BasicItem(ZoteroLibrary library, ItemTypeProvider types, ItemData data)
+   {
+      this.library = library;
+      if (!Objects.equals(data.libraryId, library.getId()))
+      {
+         String msg = MessageFormat.format(ERR_LIBRARY_MISMATCH, data.key, data.libraryId, library.getId());
+         throw new IllegalStateException(msg);
+      }
+
+      this.apiRef = parseLink(data.selfLink, LINK_SELF);
+      this.uri = parseLink(data.alternateLink, LINK_ALTERNATE);
+
+      this.creator = data.creatorSummary;
+      this.date = data.parsedDate;
+
+      this.id = data.key;
+      this.version = data.version;
+      this.title = data.fields.get("title");
+
+      this.type = getItemType(types, data.itemType);
+      this.fieldValues = new HashMap<>();
+      this.type.getFields().forEach(field -> fieldValues.put(field.getId(), data.fields.get(field.getId())));
+
+      this.creators = data.creators.stream()
+            .map(c -> toCreator(c.creatorType, c.name, c.firstName, c.lastName))
+            .collect(Collectors.toList());
+
+      this.parent = data.fields.get("parentItem");
+
+      this.dateAdded = parseDate(data.fields.get("dateAdded"));
+      this.dateModified = parseDate(data.fields.get("dateModified"));
+
+      this.tags = data.tags;
+      this.collections = new HashSet<>(data.collections);
+   }
+
    public BasicItem(ZoteroLibrary library, EditItemMutator mutator)
    {
       this.library = library;
@@ -234,10 +272,11 @@ public class BasicItem implements Item
 
    private SimpleItemCreator toCreator(Map<String, String> raw)
    {
-      String type = raw.get("creatorType");
-      String name = raw.get("name");
-      String first = raw.get("firstName");
-      String last = raw.get("lastName");
+      return toCreator(raw.get("creatorType"), raw.get("name"), raw.get("firstName"), raw.get("lastName"));
+   }
+
+   private SimpleItemCreator toCreator(String type, String name, String first, String last)
+   {
       String ERR_UNKNOWN_CREATOR_ROLE = "Could not restore author role {0}";
 
       // TODO simly ignore unknown roles or force to author.
@@ -252,16 +291,14 @@ public class BasicItem implements Item
 
    private ItemType getItemType(ItemTypeProvider types, Map<String, Object> data)
    {
-      // FIXME push this into the ItemTypeProvider
+      return getItemType(types, (String)data.get("itemType"));
+   }
 
-      String itemType = (String)data.get("itemType");
+   private ItemType getItemType(ItemTypeProvider types, String itemType)
+   {
       try
       {
-         ItemTypeInfo typeInfo = types.getItemTypes().stream()
-               .filter(info -> info.getId().equals(itemType))
-               .findAny()
-               .orElseThrow(() -> new IllegalStateException());
-         return types.getItemType(typeInfo);
+         return types.getItemType(itemType);
       }
       catch (Exception ex)
       {
@@ -292,7 +329,12 @@ public class BasicItem implements Item
    private URI parseLink(RestApiV3.Item dto, String rel)
    {
       RestApiV3.SimpleLink link = dto.links.get(rel);
-      if (link == null)
+      return parseLink(link != null ? link.href : null, rel);
+   }
+
+   private URI parseLink(String href, String rel)
+   {
+      if (href == null)
       {
          logger.fine(() -> MessageFormat.format(ERR_MISSING_LINK, this.id, rel));
          return null;
@@ -300,11 +342,11 @@ public class BasicItem implements Item
 
       try
       {
-         return URI.create(link.href);
+         return URI.create(href);
       }
       catch (Exception ex)
       {
-         logger.warning(() -> MessageFormat.format(ERR_MALFORMED_LINK, this.id, rel, link.href, ex.getMessage()));
+         logger.warning(() -> MessageFormat.format(ERR_MALFORMED_LINK, this.id, rel, href, ex.getMessage()));
          return null;
       }
    }
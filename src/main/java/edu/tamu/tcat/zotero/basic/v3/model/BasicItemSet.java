@@ -12,6 +12,7 @@ import edu.tamu.tcat.zotero.Item;
 import edu.tamu.tcat.zotero.ItemSet;
 import edu.tamu.tcat.zotero.ZoteroRestException;
 import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.commands.CommandPriority;
 import edu.tamu.tcat.zotero.basic.v3.commands.GetItemQueryPageCommand;
 import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroCommandExecutor;
 import edu.tamu.tcat.zotero.basic.v3.search.BasicItemQuery;
@@ -50,9 +51,8 @@ public class BasicItemSet implements ItemSet
    }
 
    // TODO add support for local cache.
-   // TODO add support for ansync data loading and background pre-fetching
 
-   private ConcurrentHashMap<Integer, ItemSetPageData> dataPages = new ConcurrentHashMap<Integer, ItemSetPageData>();
+   private final ConcurrentHashMap<Integer, Future<ItemSetPageData>> dataPages = new ConcurrentHashMap<>();
 
    private ItemQueryData srcQuery;
 
@@ -61,12 +61,42 @@ public class BasicItemSet implements ItemSet
 
    private BasicZoteroLibrary library;
 
+   /** The number of pages to request ahead of the most recently accessed page. */
+   private final int readAhead;
+
+   /** The most recently accessed page. Used to detect page transitions while pre-fetching. */
+   private volatile int currentPage = 0;
+
    public BasicItemSet(BasicZoteroLibrary library, ItemQueryData srcQuery)
    {
+      this(library, srcQuery, 0);
+   }
+
+   /**
+    * Constructs an item set that pre-fetches pages of results in the background. When a page
+    * is first accessed, the following {@code readAhead} pages are requested and any pages
+    * outside of this window are discarded. This bounds the number of pages held in memory
+    * and allows sequential scans of large result sets to proceed without waiting on each
+    * page in turn.
+    *
+    * <p>Pages that have been discarded will be re-loaded if they are accessed again.
+    *
+    * @param library The library to query.
+    * @param srcQuery The query to execute.
+    * @param readAhead The number of pages to request ahead of the current page. If zero,
+    *       pages will be loaded on demand and retained for the life of this item set.
+    */
+   public BasicItemSet(BasicZoteroLibrary library, ItemQueryData srcQuery, int readAhead)
+   {
+      if (readAhead < 0)
+         throw new IllegalArgumentException("The number of pages to read ahead must not be negative.");
+
       this.library = library;
       this.srcQuery = srcQuery;
+      this.readAhead = readAhead;
 
       getPageData(0);
+      prefetch(0);
    }
 
    @Override
@@ -90,6 +120,9 @@ public class BasicItemSet implements ItemSet
       int page = ix / srcQuery.limit;
       int offset = ix % srcQuery.limit;
 
+      if (page != currentPage)
+         prefetch(page);
+
       ItemSetPageData pageData = getPageData(page);
       return pageData.items.get(offset);
    }
@@ -102,7 +135,7 @@ public class BasicItemSet implements ItemSet
 
    public BasicItemSet reload()
    {
-      return new BasicItemSet(library, srcQuery);
+      return new BasicItemSet(library, srcQuery, readAhead);
    }
 
    /**
@@ -115,18 +148,37 @@ public class BasicItemSet implements ItemSet
             + "changed since this ItemSet was created. Please call ItemSet.reload() ");
    }
 
-   private ItemSetPageData getPageData(int page)
+   /**
+    * Requests the pages following the supplied page and discards any pages outside of the
+    * read-ahead window. Has no effect if pre-fetching is disabled.
+    */
+   private synchronized void prefetch(int page)
    {
-      return dataPages.computeIfAbsent(Integer.valueOf(page), this::loadPageData);
+      currentPage = page;
+      if (readAhead == 0)
+         return;
+
+      int lastPage = size > 0 ? (size - 1) / srcQuery.limit : 0;
+      int windowEnd = Math.min(page + readAhead, lastPage);
+
+      // cancel requests for discarded pages that are still in progress
+      dataPages.entrySet().removeIf(entry -> {
+         int p = entry.getKey().intValue();
+         if (p >= page && p <= windowEnd)
+            return false;
+
+         entry.getValue().cancel(true);
+         return true;
+      });
+      for (int p = page + 1; p <= windowEnd; p++)
+      {
+         dataPages.computeIfAbsent(Integer.valueOf(p), this::prefetchPage);
+      }
    }
 
-   private ItemSetPageData loadPageData(int page)
+   private ItemSetPageData getPageData(int page)
    {
-      // NOTE this is a blocking request. Might introduce a non-blocking variant to
-      //      support pre-fetching if performance warrents it.
-      GetItemQueryPageCommand command = new GetItemQueryPageCommand(library);
-      command.setQuery(srcQuery, page);
-      Future<ItemSetPageData> future = command.execute();
+      Future<ItemSetPageData> future = dataPages.computeIfAbsent(Integer.valueOf(page), this::requestPage);
 
       ZoteroCommandExecutor executor = library.getAccount().getExecutor();
       String pattern = "Failed to retrieve item set page data {0} for query {1}";
@@ -141,14 +193,47 @@ public class BasicItemSet implements ItemSet
       }
       catch (ZoteroRestException zre)
       {
+         // discard the failed request so that it can be re-attempted
+         dataPages.remove(Integer.valueOf(page), future);
          throw new IllegalStateException(zre.getMessage(), zre);
       }
+      catch (RuntimeException ex)
+      {
+         dataPages.remove(Integer.valueOf(page), future);
+         throw ex;
+      }
+   }
+
+   /**
+    * Submits the request for a page of data. This does not block; the returned future will
+    * be completed by the command executor once the page has been retrieved.
+    */
+   private Future<ItemSetPageData> requestPage(int page)
+   {
+      return requestPage(page, CommandPriority.NORMAL);
+   }
+
+   /**
+    * Submits the request for a page that has not yet been read. Such requests yield to
+    * requests that a caller is waiting on.
+    */
+   private Future<ItemSetPageData> prefetchPage(int page)
+   {
+      return requestPage(page, CommandPriority.BULK);
+   }
+
+   private Future<ItemSetPageData> requestPage(int page, CommandPriority priority)
+   {
+      GetItemQueryPageCommand command = new GetItemQueryPageCommand(library);
+      command.setQuery(srcQuery, page);
+      command.setPageCache(library.getNearCache());
+      return command.execute(priority);
    }
 
    /**
     * Checks to see if the data for the item set has changed on the server.
     */
-   private void checkDataChanges(ItemSetPageData data)
+   private synchronized void checkDataChanges(ItemSetPageData data)
    {
       if (size == -1)
          size = data.totalResults;
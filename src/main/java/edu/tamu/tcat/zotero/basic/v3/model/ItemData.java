@@ -0,0 +1,41 @@
+package edu.tamu.tcat.zotero.basic.v3.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.tamu.tcat.zotero.basic.v3.RestApiV3;
+
+/**
+ * The values of a single item accumulated by the {@link ItemStreamDecoder} while the JSON
+ * representation of the item is being read. Field values are retained as the strings
+ * ultimately held by {@link BasicItem}.
+ */
+class ItemData
+{
+   String key;
+   int version;
+   String libraryId;
+   String selfLink;
+   String alternateLink;
+
+   String creatorSummary = "";
+   String parsedDate = "";
+
+   String itemType;
+
+   /** Simple (non-structured) values of the item's data, keyed by field id. */
+   final Map<String, String> fields = new HashMap<>();
+   final List<CreatorData> creators = new ArrayList<>();
+   final List<RestApiV3.Item.Tag> tags = new ArrayList<>();
+   final List<String> collections = new ArrayList<>();
+
+   static class CreatorData
+   {
+      String creatorType;
+      String name;
+      String firstName;
+      String lastName;
+   }
+}
@@ -0,0 +1,307 @@
+package edu.tamu.tcat.zotero.basic.v3.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import edu.tamu.tcat.zotero.ZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.RestApiV3;
+import edu.tamu.tcat.zotero.basic.v3.model.ItemData.CreatorData;
+import edu.tamu.tcat.zotero.types.ItemTypeProvider;
+
+/**
+ * Decodes the JSON representation of items returned by the Zotero API directly into
+ * {@link BasicItem} instances.
+ *
+ * <p>Items are read from the response stream one token at a time using Jackson's streaming
+ * {@link JsonParser}. Each element of a response array is converted to a {@link BasicItem}
+ * as soon as it has been read, so only the current item and the items already decoded are
+ * held in memory. Unlike binding the response to {@link RestApiV3.Item}, this does not build
+ * a generic {@code Map} representation of each item's data, and values that are not used by
+ * {@link BasicItem}, such as relations, are skipped without being decoded.
+ */
+public class ItemStreamDecoder
+{
+   private static final JsonFactory factory = new JsonFactory();
+
+   private final ZoteroLibrary library;
+   private final ItemTypeProvider types;
+
+   /**
+    * @param library The library the decoded items belong to.
+    * @param types The item types used to interpret item field values.
+    */
+   public ItemStreamDecoder(ZoteroLibrary library, ItemTypeProvider types)
+   {
+      this.library = library;
+      this.types = types;
+   }
+
+   /**
+    * Decodes a JSON array of items.
+    *
+    * @param in The stream to read from. Will be closed once the array has been read.
+    * @return The decoded items, in the order they appear in the array.
+    * @throws IOException If the stream could not be read or does not contain a JSON array.
+    */
+   public List<BasicItem> decodeItems(InputStream in) throws IOException
+   {
+      try (JsonParser parser = factory.createParser(in))
+      {
+         if (parser.nextToken() != JsonToken.START_ARRAY)
+            throw new JsonParseException(parser, "Expected an array of items.");
+
+         List<BasicItem> items = new ArrayList<>();
+         while (parser.nextToken() == JsonToken.START_OBJECT)
+         {
+            items.add(decodeItem(parser));
+         }
+
+         return items;
+      }
+   }
+
+   /**
+    * Decodes a single item.
+    *
+    * @param parser A parser positioned at the start of the JSON object representing the item.
+    *       On return, the parser will be positioned at the end of this object.
+    * @return The decoded item.
+    * @throws IOException If the item could not be read.
+    */
+   public BasicItem decodeItem(JsonParser parser) throws IOException
+   {
+      ItemData item = new ItemData();
+      while (parser.nextToken() == JsonToken.FIELD_NAME)
+      {
+         String name = parser.getCurrentName();
+         parser.nextToken();
+         switch (name)
+         {
+            case "library":
+               readLibrary(parser, item);
+               break;
+            case "links":
+               readLinks(parser, item);
+               break;
+            case "meta":
+               readMeta(parser, item);
+               break;
+            case "data":
+               readData(parser, item);
+               break;
+            default:
+               parser.skipChildren();
+         }
+      }
+
+      return new BasicItem(library, types, item);
+   }
+
+   private static void readLibrary(JsonParser parser, ItemData item) throws IOException
+   {
+      if (!isObject(parser))
+         return;
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME)
+      {
+         String name = parser.getCurrentName();
+         parser.nextToken();
+         if ("id".equals(name))
+            item.libraryId = parser.getText();
+         else
+            parser.skipChildren();
+      }
+   }
+
+   private static void readLinks(JsonParser parser, ItemData item) throws IOException
+   {
+      if (!isObject(parser))
+         return;
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME)
+      {
+         String rel = parser.getCurrentName();
+         parser.nextToken();
+         String href = readHref(parser);
+         if ("self".equals(rel))
+            item.selfLink = href;
+         else if ("alternate".equals(rel))
+            item.alternateLink = href;
+      }
+   }
+
+   private static String readHref(JsonParser parser) throws IOException
+   {
+      if (!isObject(parser))
+         return null;
+
+      String href = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME)
+      {
+         String name = parser.getCurrentName();
+         parser.nextToken();
+         if ("href".equals(name))
+            href = parser.getText();
+         else
+            parser.skipChildren();
+      }
+      return href;
+   }
+
+   private static void readMeta(JsonParser parser, ItemData item) throws IOException
+   {
+      if (!isObject(parser))
+         return;
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME)
+      {
+         String name = parser.getCurrentName();
+         parser.nextToken();
+         if ("creatorSummary".equals(name))
+            item.creatorSummary = parser.getText();
+         else if ("parsedDate".equals(name))
+            item.parsedDate = parser.getText();
+         else
+            parser.skipChildren();
+      }
+   }
+
+   private static void readData(JsonParser parser, ItemData item) throws IOException
+   {
+      if (!isObject(parser))
+         return;
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME)
+      {
+         String name = parser.getCurrentName();
+         JsonToken token = parser.nextToken();
+         switch (name)
+         {
+            case "key":
+               item.key = parser.getText();
+               break;
+            case "version":
+               item.version = parser.getIntValue();
+               break;
+            case "itemType":
+               item.itemType = parser.getText();
+               break;
+            case "creators":
+               readCreators(parser, item);
+               break;
+            case "tags":
+               readTags(parser, item);
+               break;
+            case "collections":
+               readCollections(parser, item);
+               break;
+            default:
+               if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY)
+                  parser.skipChildren();
+               else
+                  item.fields.put(name, token == JsonToken.VALUE_NULL ? null : parser.getText());
+         }
+      }
+   }
+
+   private static void readCreators(JsonParser parser, ItemData item) throws IOException
+   {
+      if (!isArray(parser))
+         return;
+
+      while (parser.nextToken() == JsonToken.START_OBJECT)
+      {
+         CreatorData creator = new CreatorData();
+         while (parser.nextToken() == JsonToken.FIELD_NAME)
+         {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            switch (name)
+            {
+               case "creatorType":
+                  creator.creatorType = parser.getText();
+                  break;
+               case "name":
+                  creator.name = parser.getText();
+                  break;
+               case "firstName":
+                  creator.firstName = parser.getText();
+                  break;
+               case "lastName":
+                  creator.lastName = parser.getText();
+                  break;
+               default:
+                  parser.skipChildren();
+            }
+         }
+         item.creators.add(creator);
+      }
+   }
+
+   private static void readTags(JsonParser parser, ItemData item) throws IOException
+   {
+      if (!isArray(parser))
+         return;
+
+      while (parser.nextToken() == JsonToken.START_OBJECT)
+      {
+         RestApiV3.Item.Tag tag = new RestApiV3.Item.Tag();
+         while (parser.nextToken() == JsonToken.FIELD_NAME)
+         {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if ("tag".equals(name))
+               tag.tag = parser.getText();
+            else if ("type".equals(name))
+               tag.type = parser.getIntValue();
+            else
+               parser.skipChildren();
+         }
+         item.tags.add(tag);
+      }
+   }
+
+   private static void readCollections(JsonParser parser, ItemData item) throws IOException
+   {
+      if (!isArray(parser))
+         return;
+
+      while (parser.nextToken() == JsonToken.VALUE_STRING)
+      {
+         item.collections.add(parser.getText());
+      }
+   }
+
+   /**
+    * @return {@code true} if the parser is positioned at the start of an object. Otherwise,
+    *       skips the current value and returns {@code false}.
+    */
+   private static boolean isObject(JsonParser parser) throws IOException
+   {
+      if (parser.getCurrentToken() == JsonToken.START_OBJECT)
+         return true;
+
+      parser.skipChildren();
+      return false;
+   }
+
+   /**
+    * @return {@code true} if the parser is positioned at the start of an array. Otherwise,
+    *       skips the current value and returns {@code false}.
+    */
+   private static boolean isArray(JsonParser parser) throws IOException
+   {
+      if (parser.getCurrentToken() == JsonToken.START_ARRAY)
+         return true;
+
+      parser.skipChildren();
+      return false;
+   }
+}
@@ -0,0 +1,255 @@
+package edu.tamu.tcat.zotero.basic.v3.model;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.tamu.tcat.zotero.Item;
+import edu.tamu.tcat.zotero.ItemSet;
+import edu.tamu.tcat.zotero.ZoteroRestException;
+import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.commands.CommandPriority;
+import edu.tamu.tcat.zotero.basic.v3.commands.GetItemQueryPageCommand;
+import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroCommandExecutor;
+import edu.tamu.tcat.zotero.basic.v3.model.BasicItemSet.ItemSetPageData;
+import edu.tamu.tcat.zotero.basic.v3.search.BasicItemQuery;
+import edu.tamu.tcat.zotero.basic.v3.search.ItemQueryData;
+
+/**
+ * An {@link ItemSet} that retrieves all results of a query up front.
+ *
+ * <p>Once the first page of results has been retrieved, the total number of results (and
+ * hence the offset of every remaining page) is known. The remaining pages are then requested
+ * concurrently, up to a configurable number of requests in flight, and assembled in index
+ * order. No thread is held while the pages are retrieved other than the one that constructs
+ * the item set. This is intended to support bulk operations, such as exporting the full
+ * contents of a library, where the entire result set is required and the latency of
+ * retrieving pages one at a time would dominate.
+ */
+public class MaterializedItemSet implements ItemSet
+{
+   private final BasicZoteroLibrary library;
+   private final ItemQueryData srcQuery;
+
+   private final Item[] items;
+   private final int version;
+
+   /**
+    * Retrieves all results for the supplied query. This blocks until all results have been
+    * retrieved.
+    *
+    * @param library The library to query.
+    * @param srcQuery The query to execute.
+    * @param maxConcurrentPages The maximum number of page requests to have in flight at once.
+    * @throws IllegalStateException If any page of results could not be retrieved, or if the
+    *       Zotero API did not report the total number of results.
+    * @throws ConcurrentModificationException If the results of the query changed on the
+    *       server while they were being retrieved.
+    */
+   public MaterializedItemSet(BasicZoteroLibrary library, ItemQueryData srcQuery, int maxConcurrentPages)
+   {
+      if (maxConcurrentPages < 1)
+         throw new IllegalArgumentException("At least one page must be retrieved at a time.");
+
+      this.library = library;
+      this.srcQuery = new ItemQueryData(srcQuery);
+
+      ItemSetPageData first = loadPageData(0);
+      if (first.totalResults < 0)
+         throw new IllegalStateException("The Zotero API did not report the total number of "
+               + "results for query " + this.srcQuery);
+
+      this.items = new Item[Math.max(0, first.totalResults)];
+      this.version = first.lastModifiedVersion;
+      copyPage(first);
+
+      int pageCount = (items.length + this.srcQuery.limit - 1) / this.srcQuery.limit;
+      if (pageCount > 1)
+         loadRemainingPages(pageCount, maxConcurrentPages);
+   }
+
+   @Override
+   public Iterator<Item> iterator()
+   {
+      return Arrays.asList(items).iterator();
+   }
+
+   @Override
+   public int size()
+   {
+      return items.length;
+   }
+
+   @Override
+   public Item get(int ix) throws IndexOutOfBoundsException
+   {
+      if (ix < 0 || ix >= items.length)
+         throw new IndexOutOfBoundsException();
+
+      return items[ix];
+   }
+
+   @Override
+   public BasicItemQuery getQuery()
+   {
+      return new BasicItemQuery(srcQuery, library);
+   }
+
+   /**
+    * Requests pages 1 through {@code pageCount - 1}. At most {@code maxConcurrentPages}
+    * requests are in flight at once; each completed page releases its permit to the request
+    * for the next outstanding page. The first failure is reported as soon as it occurs and
+    * any requests still in flight are cancelled.
+    */
+   private void loadRemainingPages(int pageCount, int maxConcurrentPages)
+   {
+      PageLoader loader = new PageLoader(pageCount);
+      int permits = Math.min(maxConcurrentPages, pageCount - 1);
+      for (int i = 0; i < permits; i++)
+      {
+         loader.requestNext();
+      }
+
+      try
+      {
+         loader.done.get();
+      }
+      catch (InterruptedException e)
+      {
+         loader.cancel();
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Interrupted while retrieving items for query " + srcQuery, e);
+      }
+      catch (ExecutionException ex)
+      {
+         Throwable cause = ex.getCause();
+         if (cause instanceof RuntimeException)
+            throw (RuntimeException)cause;
+
+         if (cause instanceof ZoteroRestException)
+            throw new IllegalStateException(cause.getMessage(), cause);
+
+         throw new IllegalStateException("Failed to retrieve items for query " + srcQuery, cause);
+      }
+   }
+
+   private void copyPage(ItemSetPageData data)
+   {
+      int offset = data.offset;
+      for (int i = 0; i < data.items.size() && offset + i < items.length; i++)
+      {
+         items[offset + i] = data.items.get(i);
+      }
+   }
+
+   /**
+    * Submits the request for a page of data. Each request is limited to the executor's
+    * default timeout so that a stalled request cannot hold up the item set indefinitely.
+    */
+   private CompletableFuture<ItemSetPageData> requestPage(int page)
+   {
+      ZoteroCommandExecutor executor = library.getAccount().getExecutor();
+      GetItemQueryPageCommand command = new GetItemQueryPageCommand(library);
+      command.setQuery(srcQuery, page);
+      command.setPageCache(library.getNearCache());
+      command.setPriority(CommandPriority.BULK);
+      return command.execute(executor.getDefaultTimeout(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+   }
+
+   private ItemSetPageData loadPageData(int page)
+   {
+      ZoteroCommandExecutor executor = library.getAccount().getExecutor();
+      String pattern = "Failed to retrieve item set page data {0} for query {1}";
+      try
+      {
+         return executor.unwrap(requestPage(page), () -> MessageFormat.format(pattern, page, srcQuery));
+      }
+      catch (ZoteroRestException zre)
+      {
+         throw new IllegalStateException(zre.getMessage(), zre);
+      }
+   }
+
+   /**
+    * Tracks the retrieval of the remaining pages of results.
+    */
+   private class PageLoader
+   {
+      private final int pageCount;
+      private final AtomicInteger nextPage = new AtomicInteger(1);
+      private final AtomicInteger remaining;
+      private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+
+      /** Completed once all pages have been copied, or with the first failure. */
+      final CompletableFuture<Void> done = new CompletableFuture<>();
+
+      PageLoader(int pageCount)
+      {
+         this.pageCount = pageCount;
+         this.remaining = new AtomicInteger(pageCount - 1);
+      }
+
+      /**
+       * Requests the next outstanding page, if any.
+       */
+      void requestNext()
+      {
+         int page = nextPage.getAndIncrement();
+         if (page >= pageCount || done.isDone())
+            return;
+
+         CompletableFuture<ItemSetPageData> future = requestPage(page);
+         inFlight.add(future);
+         future.whenComplete((data, ex) -> {
+            inFlight.remove(future);
+            if (ex != null)
+               fail(ex);
+            else
+               onPageLoaded(data);
+         });
+
+         // the item set may have failed while this request was being submitted
+         if (done.isDone())
+            future.cancel(true);
+      }
+
+      private void onPageLoaded(ItemSetPageData data)
+      {
+         if (data.totalResults != items.length || data.lastModifiedVersion != version)
+         {
+            fail(new ConcurrentModificationException("The underlying Zotero collection has "
+                  + "changed while this ItemSet was being retrieved."));
+            return;
+         }
+
+         copyPage(data);
+         if (remaining.decrementAndGet() == 0)
+            done.complete(null);
+         else
+            requestNext();
+      }
+
+      private void fail(Throwable ex)
+      {
+         Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+         if (done.completeExceptionally(cause))
+            cancel();
+      }
+
+      /**
+       * Cancels the requests that are in flight, which aborts them.
+       */
+      void cancel()
+      {
+         inFlight.forEach(future -> future.cancel(true));
+      }
+   }
+}
@@ -6,6 +6,7 @@ import edu.tamu.tcat.zotero.ItemSet;
 import edu.tamu.tcat.zotero.ZoteroRestException;
 import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
 import edu.tamu.tcat.zotero.basic.v3.model.BasicItemSet;
+import edu.tamu.tcat.zotero.basic.v3.model.MaterializedItemSet;
 import edu.tamu.tcat.zotero.search.ExecutableItemQuery;
 import edu.tamu.tcat.zotero.search.ItemQueryBuilder;
 import edu.tamu.tcat.zotero.search.ItemQueryBuilder.QueryMode;
@@ -110,6 +111,34 @@ public class BasicItemQuery implements ExecutableItemQuery
       return new BasicItemSet(library, data);
    }
 
+   /**
+    * Executes this query, requesting pages of results in the background ahead of the page
+    * currently being accessed. This is intended for sequential scans over large result sets.
+    * At most {@code readAhead + 1} pages are retained in memory.
+    *
+    * @param readAhead The number of pages to request ahead of the current page.
+    * @return The items matching this query.
+    * @throws ZoteroRestException
+    */
+   public ItemSet executePrefetching(int readAhead) throws ZoteroRestException
+   {
+      return new BasicItemSet(library, data, readAhead);
+   }
+
+   /**
+    * Executes this query and retrieves all matching items before returning. After the first
+    * page has been retrieved, the remaining pages are requested concurrently. This is intended
+    * for bulk operations that require the entire result set.
+    *
+    * @param maxConcurrentPages The maximum number of page requests to have in flight at once.
+    * @return The items matching this query.
+    * @throws ZoteroRestException
+    */
+   public ItemSet executeAll(int maxConcurrentPages) throws ZoteroRestException
+   {
+      return new MaterializedItemSet(library, data, maxConcurrentPages);
+   }
+
    /**
     * @return A copy of the raw {@code ItemQueryData} object.
     */
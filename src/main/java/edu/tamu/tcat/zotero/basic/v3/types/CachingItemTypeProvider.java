@@ -0,0 +1,179 @@
+package edu.tamu.tcat.zotero.basic.v3.types;
+
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.tamu.tcat.zotero.ZoteroRestException;
+import edu.tamu.tcat.zotero.types.ItemType;
+import edu.tamu.tcat.zotero.types.ItemTypeInfo;
+import edu.tamu.tcat.zotero.types.ItemTypeProvider;
+
+/**
+ *  An {@link ItemTypeProvider} that loads the complete Zotero item type schema (types, fields
+ *  and creator types) once and serves all subsequent requests from memory.
+ *
+ *  <p>
+ *  The schema is loaded by {@link #load()}, which is intended to be called when the client is
+ *  activated, or otherwise on first access. The field and creator type requests for all item
+ *  types are issued concurrently and combined as they complete, so loading does not occupy a
+ *  thread while requests are in flight. The results are stored in an immutable map keyed by
+ *  type id. Once loaded, lookups do not issue any requests to the Zotero API. If loading
+ *  fails, the failure is reported to the caller and the next request will attempt to load the
+ *  schema again.
+ */
+public class CachingItemTypeProvider implements ItemTypeProvider
+{
+   private static final Logger logger = Logger.getLogger(CachingItemTypeProvider.class.getName());
+
+   private static final String ERR_UNDEFINED_TYPE = "No item type defined for ''{0}''";
+
+   private final ItemTypeProviderService delegate;
+
+   private final AtomicReference<CompletableFuture<Schema>> schema = new AtomicReference<>();
+
+   public CachingItemTypeProvider(ItemTypeProviderService delegate)
+   {
+      this.delegate = delegate;
+   }
+
+   @Override
+   public Set<ItemTypeInfo> getItemTypes() throws ZoteroRestException
+   {
+      return getSchema().infos;
+   }
+
+   @Override
+   public ItemType getItemType(ItemTypeInfo typeInfo) throws ZoteroRestException, IllegalArgumentException
+   {
+      return getItemType(typeInfo.getId());
+   }
+
+   @Override
+   public ItemType getItemType(String typeId) throws ZoteroRestException, IllegalArgumentException
+   {
+      ItemType type = typeId == null ? null : getSchema().types.get(normalize(typeId));
+      if (type == null)
+         throw new IllegalArgumentException(MessageFormat.format(ERR_UNDEFINED_TYPE, typeId));
+
+      return type;
+   }
+
+   /**
+    * Begins loading the schema, unless it has already been loaded or is being loaded. This
+    * does not block.
+    *
+    * @return A future that completes once the schema has been loaded.
+    */
+   public CompletableFuture<Void> load()
+   {
+      return loadSchema().thenApply(loaded -> null);
+   }
+
+   /**
+    * Discards the cached schema. The schema will be reloaded from the Zotero API on next use.
+    */
+   public void invalidate()
+   {
+      schema.set(null);
+   }
+
+   private Schema getSchema() throws ZoteroRestException
+   {
+      CompletableFuture<Schema> result = loadSchema();
+      if (result.isDone() && !result.isCompletedExceptionally())
+         return result.join();
+
+      // wait on a dependent future, so that a caller that gives up does not cancel the load
+      // on behalf of other callers. The requests that load the schema have their own deadline
+      String message = "Failed to retrieve the item type schema from Zotero";
+      return delegate.getExecutor().unwrap(result.thenApply(Function.identity()), () -> message);
+   }
+
+   private CompletableFuture<Schema> loadSchema()
+   {
+      CompletableFuture<Schema> current = schema.get();
+      if (current != null)
+         return current;
+
+      CompletableFuture<Schema> loading = new CompletableFuture<>();
+      if (!schema.compareAndSet(null, loading))
+         return loadSchema();
+
+      CompletableFuture<Schema> requested;
+      try
+      {
+         requested = requestSchema();
+      }
+      catch (RuntimeException ex)
+      {
+         requested = new CompletableFuture<>();
+         requested.completeExceptionally(ex);
+      }
+
+      requested.whenComplete((result, ex) -> {
+         if (ex == null)
+         {
+            loading.complete(result);
+            return;
+         }
+
+         // allow the next request to re-attempt the load
+         schema.compareAndSet(loading, null);
+         logger.log(Level.WARNING, "Failed to load the item type schema from Zotero", ex);
+         loading.completeExceptionally(ex);
+      });
+
+      return loading;
+   }
+
+   private CompletableFuture<Schema> requestSchema()
+   {
+      return delegate.getItemTypesAsync().thenCompose(infos -> {
+         // issue all field and creator requests up front so that they execute concurrently
+         Map<String, CompletableFuture<ItemType>> types = new HashMap<>();
+         for (ItemTypeInfo info : infos)
+         {
+            types.put(normalize(info.getId()), delegate.getItemTypeFields(info).thenCombine(
+                  delegate.getItemTypeCreatorTypes(info),
+                  (fields, creators) -> new BasicItemType(info, fields, creators)));
+         }
+
+         return CompletableFuture.allOf(types.values().toArray(new CompletableFuture<?>[types.size()]))
+               .thenApply(ignored -> {
+                  Map<String, ItemType> loaded = new HashMap<>();
+                  types.forEach((id, type) -> loaded.put(id, type.join()));
+                  return new Schema(infos, loaded);
+               });
+      });
+   }
+
+   private static String normalize(String typeId)
+   {
+      return typeId.toLowerCase(Locale.ROOT);
+   }
+
+   /**
+    * Immutable snapshot of the item type schema.
+    */
+   private static class Schema
+   {
+      private final Set<ItemTypeInfo> infos;
+      private final Map<String, ItemType> types;
+
+      Schema(Set<ItemTypeInfo> infos, Map<String, ItemType> types)
+      {
+         this.infos = Collections.unmodifiableSet(new HashSet<>(infos));
+         this.types = Collections.unmodifiableMap(types);
+      }
+   }
+}
@@ -1,19 +1,15 @@
 package edu.tamu.tcat.zotero.basic.v3.types;
 
 import java.text.MessageFormat;
-import java.time.zone.ZoneRulesException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import edu.tamu.tcat.zotero.ZoteroRestException;
-import edu.tamu.tcat.zotero.basic.v3.AdaptingFuture;
 import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroCommandExecutor;
 import edu.tamu.tcat.zotero.types.ItemFieldType;
 import edu.tamu.tcat.zotero.types.ItemType;
@@ -22,26 +18,35 @@ import edu.tamu.tcat.zotero.types.ItemTypeProvider;
 
 public class ItemTypeProviderService implements ItemTypeProvider
 {
-   private final long timeout;
-   private final TimeUnit timeoutUnits;
    private final ZoteroCommandExecutor executor;
 
    public ItemTypeProviderService(ZoteroCommandExecutor executor)
    {
       this.executor = executor;
-      this.timeout = 10;
-      this.timeoutUnits = TimeUnit.SECONDS;
    }
 
    @Override
    public Set<ItemTypeInfo> getItemTypes() throws ZoteroRestException
    {
       String message = "Failed to retrieve a list of item types from Zotero";
-      ZoteroItemTypeCommand cmd = ZoteroItemTypeCommand.getItemTypes(executor);
-      Future<List<Map<String,String>>> typeResults = cmd.execute();
+      return executor.unwrap(getItemTypesAsync(), () -> message);
+   }
 
-      Future<Set<ItemTypeInfo>> itemTypes = new AdaptingFuture<>(typeResults, this::adaptTypes);
-      return unwrap(itemTypes, () -> message);
+   /**
+    * @return The command executor used to retrieve item types.
+    */
+   public ZoteroCommandExecutor getExecutor()
+   {
+      return executor;
+   }
+
+   /**
+    * @return A future that resolves to the item types defined by Zotero.
+    */
+   public CompletableFuture<Set<ItemTypeInfo>> getItemTypesAsync()
+   {
+      ZoteroItemTypeCommand cmd = ZoteroItemTypeCommand.getItemTypes(executor);
+      return cmd.execute(getTimeout(), TimeUnit.NANOSECONDS).thenApply(this::adaptTypes);
    }
 
    @Override
@@ -50,27 +55,29 @@ public class ItemTypeProviderService implements ItemTypeProvider
       String fieldMessage = "Failed to retrieve the fields for the item type of {0}, from Zotero";
       String creatorMessage = "Failed to retrieve the creators for the item type of {0}, from Zotero";
 
-      Future<List<ItemFieldType>> futureITFs = this.getItemTypeFields(typeInfo);
-      List<ItemFieldType> itemFieldTypes = unwrap(futureITFs, () -> MessageFormat.format(fieldMessage, typeInfo));
+      // requested concurrently; both are abandoned if not retrieved in time
+      long timeout = getTimeout();
+      Future<List<ItemFieldType>> futureITFs = ZoteroItemTypeCommand.getItemTypeFields(executor, typeInfo.getId())
+            .execute(timeout, TimeUnit.NANOSECONDS).thenApply(this::adaptFields);
+      Future<List<ItemFieldType>> futureITCs = ZoteroItemTypeCommand.getItemTypeCreatorTypes(executor, typeInfo.getId())
+            .execute(timeout, TimeUnit.NANOSECONDS).thenApply(this::adaptFields);
 
-      Future<List<ItemFieldType>> futureITCs = this.getItemTypeCreatorTypes(typeInfo);
-      List<ItemFieldType> itemTypeCreators = unwrap(futureITCs, () -> MessageFormat.format(creatorMessage, typeInfo));
+      List<ItemFieldType> itemFieldTypes = executor.unwrap(futureITFs, () -> MessageFormat.format(fieldMessage, typeInfo));
+      List<ItemFieldType> itemTypeCreators = executor.unwrap(futureITCs, () -> MessageFormat.format(creatorMessage, typeInfo));
 
       return new BasicItemType(typeInfo, itemFieldTypes, itemTypeCreators);
    }
 
-   public Future<List<ItemFieldType>> getItemTypeFields(ItemTypeInfo info)
+   public CompletableFuture<List<ItemFieldType>> getItemTypeFields(ItemTypeInfo info)
    {
       ZoteroItemTypeCommand cmd = ZoteroItemTypeCommand.getItemTypeFields(executor, info.getId());
-      Future<List<Map<String,String>>> fieldResults = cmd.execute();
-      return new AdaptingFuture<List<Map<String,String>>, List<ItemFieldType>>(fieldResults, this::adaptFields);
+      return cmd.execute(getTimeout(), TimeUnit.NANOSECONDS).thenApply(this::adaptFields);
    }
 
-   public Future<List<ItemFieldType>> getItemTypeCreatorTypes(ItemTypeInfo info)
+   public CompletableFuture<List<ItemFieldType>> getItemTypeCreatorTypes(ItemTypeInfo info)
    {
       ZoteroItemTypeCommand cmd = ZoteroItemTypeCommand.getItemTypeCreatorTypes(executor, info.getId());
-      Future<List<Map<String,String>>> creatorResults = cmd.execute();
-      return new AdaptingFuture<List<Map<String,String>>, List<ItemFieldType>>(creatorResults, this::adaptFields);
+      return cmd.execute(getTimeout(), TimeUnit.NANOSECONDS).thenApply(this::adaptFields);
    }
 
    private Set<ItemTypeInfo> adaptTypes(List<Map<String,String>> list)
@@ -102,27 +109,13 @@ public class ItemTypeProviderService implements ItemTypeProvider
       return new BasicItemFieldType(id, label);
    }
 
-   private <X> X unwrap(Future<X> result, Supplier<String> message) throws ZoteroRestException
+   /**
+    * @return The time in nanoseconds allowed for the commands issued by blocking calls, so
+    *       that requests are not left running once the caller has stopped waiting.
+    */
+   private long getTimeout()
    {
-      try
-      {
-         return result.get(timeout, timeoutUnits);
-      }
-      catch (InterruptedException | TimeoutException e)
-      {
-         throw new IllegalStateException(message.get(), e);
-      }
-      catch (ExecutionException ex)
-      {
-         Throwable cause = ex.getCause();
-         if (cause instanceof ZoneRulesException)
-            throw (ZoteroRestException)cause;
-
-         if  (cause instanceof RuntimeException)
-            throw (RuntimeException)cause;
-
-         throw new IllegalStateException(message.get(), cause);
-      }
+      return executor.getDefaultTimeout(TimeUnit.NANOSECONDS);
    }
 
 }
@@ -0,0 +1,100 @@
+package edu.tamu.tcat.zotero;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import edu.tamu.tcat.zotero.basic.v3.types.BasicItemFieldType;
+import edu.tamu.tcat.zotero.basic.v3.types.BasicItemTypeInfo;
+import edu.tamu.tcat.zotero.basic.v3.types.CachingItemTypeProvider;
+import edu.tamu.tcat.zotero.basic.v3.types.ItemTypeProviderService;
+import edu.tamu.tcat.zotero.types.ItemFieldType;
+import edu.tamu.tcat.zotero.types.ItemType;
+import edu.tamu.tcat.zotero.types.ItemTypeInfo;
+
+public class CachingItemTypeProviderTests
+{
+   @Test
+   public void loadsSchemaOnce() throws Exception
+   {
+      CountingTypeService service = new CountingTypeService();
+      CachingItemTypeProvider provider = new CachingItemTypeProvider(service);
+
+      ItemType book = provider.getItemType("book");
+      assertEquals("book", book.getId());
+      assertEquals(1, book.getFields().size());
+      assertEquals(1, book.getCreatorRoles().size());
+
+      for (int i = 0; i < 100; i++)
+      {
+         assertSame(book, provider.getItemType("book"));
+         provider.getItemType(new BasicItemTypeInfo("film", "Film"));
+      }
+
+      assertEquals(2, provider.getItemTypes().size());
+
+      // one type list request plus one fields and one creators request per type
+      assertEquals(5, service.requests.get());
+   }
+
+   @Test
+   public void reloadsAfterInvalidate() throws Exception
+   {
+      CountingTypeService service = new CountingTypeService();
+      CachingItemTypeProvider provider = new CachingItemTypeProvider(service);
+
+      provider.getItemType("book");
+      provider.invalidate();
+      provider.getItemType("book");
+
+      assertEquals(10, service.requests.get());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void rejectsUnknownType() throws Exception
+   {
+      new CachingItemTypeProvider(new CountingTypeService()).getItemType("unknown");
+   }
+
+   private static class CountingTypeService extends ItemTypeProviderService
+   {
+      private final AtomicInteger requests = new AtomicInteger();
+
+      public CountingTypeService()
+      {
+         super(null);
+      }
+
+      @Override
+      public CompletableFuture<Set<ItemTypeInfo>> getItemTypesAsync()
+      {
+         requests.incrementAndGet();
+         return CompletableFuture.completedFuture(new HashSet<>(Arrays.asList(
+               new BasicItemTypeInfo("book", "Book"),
+               new BasicItemTypeInfo("film", "Film"))));
+      }
+
+      @Override
+      public CompletableFuture<List<ItemFieldType>> getItemTypeFields(ItemTypeInfo info)
+      {
+         requests.incrementAndGet();
+         return CompletableFuture.completedFuture(Collections.singletonList(new BasicItemFieldType("title", "Title")));
+      }
+
+      @Override
+      public CompletableFuture<List<ItemFieldType>> getItemTypeCreatorTypes(ItemTypeInfo info)
+      {
+         requests.incrementAndGet();
+         return CompletableFuture.completedFuture(Collections.singletonList(new BasicItemFieldType("author", "Author")));
+      }
+   }
+}
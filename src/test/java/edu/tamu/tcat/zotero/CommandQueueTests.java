@@ -0,0 +1,229 @@
+package edu.tamu.tcat.zotero;
+
+import static edu.tamu.tcat.zotero.ZoteroCommandExecutorTests.respond;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import edu.tamu.tcat.zotero.ZoteroCommandExecutorTests.TextCommand;
+import edu.tamu.tcat.zotero.basic.v3.commands.CommandPriority;
+import edu.tamu.tcat.zotero.basic.v3.commands.CommandRejectedException;
+import edu.tamu.tcat.zotero.basic.v3.commands.OverloadPolicy;
+import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroCommandExecutor;
+
+/**
+ * Verifies that the executor applies its overload policy once the queue limit is reached and
+ * dispatches queued commands in priority order. Commands are held in the queue using a
+ * restrictive rate limit or by occupying the dispatch threads.
+ */
+public class CommandQueueTests
+{
+   private HttpServer server;
+   private ZoteroCommandExecutor executor;
+
+   @Before
+   public void setup() throws IOException
+   {
+      server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      server.createContext("/queued", exchange -> respond(exchange, 200, "ok"));
+      server.start();
+
+      executor = new ZoteroCommandExecutor(URI.create("http://localhost:" + server.getAddress().getPort()), 5);
+   }
+
+   @After
+   public void tearDown()
+   {
+      executor.close();
+      server.stop(0);
+   }
+
+   @Test
+   public void rejectsWhenFull() throws Exception
+   {
+      executor.setRateLimit(1, 1);
+      executor.setQueueLimit(2, OverloadPolicy.REJECT);
+      assertEquals("200:ok", submit(CommandPriority.NORMAL).get(5, TimeUnit.SECONDS));
+
+      CompletableFuture<String> first = submit(CommandPriority.NORMAL);
+      CompletableFuture<String> second = submit(CommandPriority.NORMAL);
+      CompletableFuture<String> rejected = submit(CommandPriority.INTERACTIVE);
+
+      CommandRejectedException ex = getRejection(rejected);
+      assertFalse(ex.isShed());
+      assertEquals(CommandPriority.INTERACTIVE, ex.getPriority());
+      assertFalse(first.isDone());
+      assertFalse(second.isDone());
+      assertEquals(1, executor.getMetrics().getRejectedCount());
+   }
+
+   @Test
+   public void shedsLowestPriority() throws Exception
+   {
+      executor.setRateLimit(1, 1);
+      executor.setQueueLimit(2, OverloadPolicy.SHED);
+      assertEquals("200:ok", submit(CommandPriority.NORMAL).get(5, TimeUnit.SECONDS));
+
+      CompletableFuture<String> older = submit(CommandPriority.BULK);
+      CompletableFuture<String> newer = submit(CommandPriority.BULK);
+      CompletableFuture<String> interactive = submit(CommandPriority.INTERACTIVE);
+
+      // the most recently queued bulk command makes room for the interactive command
+      assertTrue(getRejection(newer).isShed());
+      assertFalse(older.isDone());
+      assertFalse(interactive.isDone());
+
+      // commands are not shed for work of the same priority
+      assertFalse(getRejection(submit(CommandPriority.BULK)).isShed());
+      assertFalse(older.isDone());
+   }
+
+   @Test
+   public void blocksWhenFull() throws Exception
+   {
+      executor.setRateLimit(2, 1);
+      executor.setQueueLimit(1, OverloadPolicy.BLOCK);
+      assertEquals("200:ok", submit(CommandPriority.NORMAL).get(5, TimeUnit.SECONDS));
+
+      // held by the rate limit for roughly 500 ms
+      CompletableFuture<String> queued = submit(CommandPriority.NORMAL);
+
+      long start = System.nanoTime();
+      CompletableFuture<String> blocked = submit(CommandPriority.NORMAL);
+      long elapsed = System.nanoTime() - start;
+
+      assertTrue("Expected submission to block: " + elapsed, elapsed >= TimeUnit.MILLISECONDS.toNanos(200));
+      assertEquals("200:ok", queued.get(5, TimeUnit.SECONDS));
+      assertEquals("200:ok", blocked.get(5, TimeUnit.SECONDS));
+   }
+
+   @Test
+   public void doesNotBlockExecutorThreads() throws Exception
+   {
+      executor.setRateLimit(2, 1);
+      executor.setQueueLimit(1, OverloadPolicy.BLOCK);
+      assertEquals("200:ok", submit(CommandPriority.NORMAL).get(5, TimeUnit.SECONDS));
+
+      // held by the rate limit for roughly 500 ms
+      CompletableFuture<String> queued = submit(CommandPriority.NORMAL);
+
+      // a command submitted by a task on the executor's threads is rejected rather than blocked
+      CompletableFuture<CompletableFuture<String>> submitted = new CompletableFuture<>();
+      executor.schedule(() -> submitted.complete(submit(CommandPriority.NORMAL)), 0, TimeUnit.MILLISECONDS);
+
+      assertFalse(getRejection(submitted.get(1, TimeUnit.SECONDS)).isShed());
+      assertFalse(queued.isDone());
+      assertEquals("200:ok", queued.get(5, TimeUnit.SECONDS));
+   }
+
+   @Test
+   public void dispatchesHigherPriorityFirst() throws Exception
+   {
+      List<String> received = new CopyOnWriteArrayList<>();
+      CountDownLatch release = new CountDownLatch(1);
+      server.createContext("/lane", exchange -> {
+         String path = exchange.getRequestURI().getPath();
+         received.add(path.substring(path.lastIndexOf('/') + 1));
+         try
+         {
+            release.await(5, TimeUnit.SECONDS);
+         }
+         catch (InterruptedException ex)
+         {
+            Thread.currentThread().interrupt();
+         }
+         respond(exchange, 200, "ok");
+      });
+
+      // a single dispatch thread, occupied until the backlog has been queued
+      ZoteroCommandExecutor single = new ZoteroCommandExecutor(URI.create("http://localhost:" + server.getAddress().getPort()), 1);
+      try
+      {
+         List<CompletableFuture<String>> results = new ArrayList<>();
+         results.add(single.submit(new TextCommand("lane/blocker", "key", CommandPriority.NORMAL)));
+         while (received.isEmpty())
+            Thread.sleep(10);
+
+         for (int i = 0; i < 5; i++)
+            results.add(single.submit(new TextCommand("lane/bulk" + i, "key", CommandPriority.BULK)));
+         results.add(single.submit(new TextCommand("lane/interactive", "key", CommandPriority.INTERACTIVE)));
+
+         release.countDown();
+         for (CompletableFuture<String> result : results)
+            assertEquals("200:ok", result.get(5, TimeUnit.SECONDS));
+      }
+      finally
+      {
+         single.close();
+      }
+
+      assertEquals(Arrays.asList("blocker", "interactive", "bulk0", "bulk1", "bulk2", "bulk3", "bulk4"), received);
+   }
+
+   @Test
+   public void releasesRateLimitedCommandsInPriorityOrder() throws Exception
+   {
+      List<String> received = new CopyOnWriteArrayList<>();
+      server.createContext("/limited", exchange -> {
+         String path = exchange.getRequestURI().getPath();
+         received.add(path.substring(path.lastIndexOf('/') + 1));
+         respond(exchange, 200, "ok");
+      });
+      executor.submit(new TextCommand("limited/warmup", "key")).get(5, TimeUnit.SECONDS);
+      received.clear();
+
+      // a backlog of bulk commands waits on the rate limit, one every 200 ms
+      executor.setRateLimit(5, 1);
+      List<CompletableFuture<String>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++)
+         results.add(executor.submit(new TextCommand("limited/bulk" + i, "key", CommandPriority.BULK)));
+      while (received.isEmpty())
+         Thread.sleep(10);
+
+      // an interactive command submitted later takes the next token
+      results.add(executor.submit(new TextCommand("limited/interactive", "key", CommandPriority.INTERACTIVE)));
+      for (CompletableFuture<String> result : results)
+         assertEquals("200:ok", result.get(5, TimeUnit.SECONDS));
+
+      assertEquals(Arrays.asList("bulk0", "interactive", "bulk1", "bulk2", "bulk3"), received);
+   }
+
+   private CompletableFuture<String> submit(CommandPriority priority)
+   {
+      return executor.submit(new TextCommand("queued", "key", priority));
+   }
+
+   private static CommandRejectedException getRejection(CompletableFuture<String> result) throws Exception
+   {
+      try
+      {
+         result.get(1, TimeUnit.SECONDS);
+         fail("Expected the command to be rejected");
+         return null;
+      }
+      catch (ExecutionException ex)
+      {
+         assertTrue(String.valueOf(ex.getCause()), ex.getCause() instanceof CommandRejectedException);
+         return (CommandRejectedException)ex.getCause();
+      }
+   }
+}
@@ -0,0 +1,124 @@
+package edu.tamu.tcat.zotero;
+
+import static edu.tamu.tcat.zotero.ZoteroCommandExecutorTests.respond;
+import static edu.tamu.tcat.zotero.ZoteroTestServer.JSON;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.RestApiV3;
+import edu.tamu.tcat.zotero.basic.v3.commands.GetItemCommand;
+
+/**
+ * Verifies that cached results are reused when the Zotero API responds {@code 304 Not Modified}.
+ */
+public class ConditionalRequestTests
+{
+
+   private static final String ITEM = "{\"key\":\"ITEM0001\",\"version\":3,"
+         + "\"library\":{\"type\":\"user\",\"id\":1},\"links\":{},\"meta\":{},"
+         + "\"data\":{\"key\":\"ITEM0001\",\"version\":3,\"itemType\":\"book\",\"title\":\"Title\","
+         + "\"creators\":[],\"tags\":[],\"collections\":[]}}";
+
+   private static final String COLLECTIONS = "[{\"key\":\"CHILD001\",\"version\":7,"
+         + "\"library\":{\"type\":\"user\",\"id\":1},\"links\":{},\"meta\":{},"
+         + "\"data\":{\"key\":\"CHILD001\",\"version\":7,\"name\":\"Child\",\"parentCollection\":\"PARENT01\"}}]";
+
+   /** The If-Modified-Since-Version header supplied with each request. */
+   private final List<String> conditions = new CopyOnWriteArrayList<>();
+
+   private ZoteroTestServer server;
+   private BasicZoteroLibrary library;
+
+   @Before
+   public void setup() throws IOException
+   {
+      server = new ZoteroTestServer();
+      server.createContext("/users/1/items/ITEM0001", exchange -> respondConditionally(exchange, "3", ITEM));
+      server.createContext("/users/1/collections/PARENT01/collections", exchange -> respondConditionally(exchange, "7", COLLECTIONS));
+      server.start(client -> client.setNearCacheSize(1024 * 1024));
+      library = server.getLibrary();
+   }
+
+   @After
+   public void tearDown()
+   {
+      server.stop();
+   }
+
+   @Test
+   public void reusesCachedItem() throws Exception
+   {
+      RestApiV3.Item cached = new RestApiV3.Item();
+      cached.key = "ITEM0001";
+      cached.version = 3;
+
+      GetItemCommand command = new GetItemCommand(library);
+      command.setItemId("ITEM0001");
+      command.setCachedResult(cached, 3);
+
+      assertSame(cached, command.execute().get(5, TimeUnit.SECONDS));
+      assertTrue(command.isNotModified());
+      assertEquals(3, command.getLastModifiedVersion());
+      assertEquals("3", conditions.get(0));
+   }
+
+   @Test
+   public void requestsUnconditionallyWithoutCachedResult() throws Exception
+   {
+      GetItemCommand command = new GetItemCommand(library);
+      command.setItemId("ITEM0001");
+
+      RestApiV3.Item item = command.execute().get(5, TimeUnit.SECONDS);
+      assertEquals("ITEM0001", item.key);
+      assertFalse(command.isNotModified());
+      assertNull(conditions.get(0));
+   }
+
+   @Test
+   public void reusesCachedSubCollections() throws Exception
+   {
+      List<ZoteroCollection> first = library.getSubCollectionsAsync("PARENT01").get(5, TimeUnit.SECONDS);
+      List<ZoteroCollection> second = library.getSubCollectionsAsync("PARENT01").get(5, TimeUnit.SECONDS);
+
+      assertEquals(1, second.size());
+      assertEquals(first.get(0).getId(), second.get(0).getId());
+
+      assertEquals(2, conditions.size());
+      assertNull(conditions.get(0));
+      assertEquals("7", conditions.get(1));
+   }
+
+   /**
+    * Responds with {@code 304 Not Modified} if the request is conditional on the supplied
+    * version, otherwise with the supplied body.
+    */
+   private void respondConditionally(HttpExchange exchange, String version, String body) throws IOException
+   {
+      String condition = exchange.getRequestHeaders().getFirst("If-Modified-Since-Version");
+      conditions.add(condition);
+      if (version.equals(condition))
+      {
+         exchange.getResponseHeaders().add("Last-Modified-Version", version);
+         exchange.sendResponseHeaders(304, -1);
+         exchange.close();
+         return;
+      }
+
+      respond(exchange, 200, body, "Content-Type", JSON, "Last-Modified-Version", version);
+   }
+}
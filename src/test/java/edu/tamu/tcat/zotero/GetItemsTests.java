@@ -0,0 +1,125 @@
+package edu.tamu.tcat.zotero;
+
+import static edu.tamu.tcat.zotero.ZoteroCommandExecutorTests.respond;
+import static edu.tamu.tcat.zotero.ZoteroTestServer.JSON;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroResponseException;
+
+/**
+ * Retrieves multiple items by key from a local HTTP server that simulates the Zotero API.
+ */
+public class GetItemsTests
+{
+   private static final String MISSING = "MISSING1";
+   private static final String FORBIDDEN = "FORBIDDN";
+
+   private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+   private ZoteroTestServer server;
+   private BasicZoteroLibrary library;
+
+   @Before
+   public void setup() throws IOException
+   {
+      server = new ZoteroTestServer();
+      server.createContext("/users/1/items", exchange -> {
+         String query = exchange.getRequestURI().getQuery();
+         String param = Arrays.stream(query.split("&")).filter(p -> p.startsWith("itemKey=")).findFirst().get();
+         List<String> keys = Arrays.asList(param.substring("itemKey=".length()).split(","));
+         batchSizes.add(Integer.valueOf(keys.size()));
+         if (keys.contains(FORBIDDEN))
+         {
+            respond(exchange, 403, "Forbidden");
+            return;
+         }
+
+         StringBuilder body = new StringBuilder("[");
+         for (String key : keys)
+         {
+            if (MISSING.equals(key))
+               continue;
+
+            body.append(body.length() == 1 ? "" : ",")
+                .append("{\"key\":\"").append(key).append("\",\"version\":1,")
+                .append("\"library\":{\"type\":\"user\",\"id\":1},\"links\":{},\"meta\":{},")
+                .append("\"data\":{\"key\":\"").append(key).append("\",\"version\":1,\"itemType\":\"book\",")
+                .append("\"title\":\"").append(key).append("\",\"creators\":[],\"tags\":[],\"collections\":[]}}");
+         }
+         respond(exchange, 200, body.append("]").toString(), "Content-Type", JSON);
+      });
+      server.start();
+      library = server.getLibrary();
+   }
+
+   @After
+   public void tearDown()
+   {
+      server.stop();
+   }
+
+   @Test
+   public void requestsKeysInBatchesOfFifty() throws Exception
+   {
+      String[] keys = new String[120];
+      for (int i = 0; i < keys.length; i++)
+         keys[i] = String.format("KEY%05d", Integer.valueOf(i));
+
+      Map<String, Item> items = library.getItemsAsync(keys).get(5, TimeUnit.SECONDS);
+
+      // results are returned in the order requested
+      assertEquals(Arrays.asList(keys), new ArrayList<>(items.keySet()));
+      for (String key : keys)
+         assertEquals(key, items.get(key).getId());
+
+      List<Integer> sizes = new ArrayList<>(batchSizes);
+      Collections.sort(sizes);
+      assertEquals(Arrays.asList(20, 50, 50), sizes);
+   }
+
+   @Test
+   public void failsIfAnyKeyIsMissing() throws Exception
+   {
+      try
+      {
+         library.getItemsAsync("KEY00001", MISSING).get(5, TimeUnit.SECONDS);
+         fail("Expected missing item to fail");
+      }
+      catch (ExecutionException ex)
+      {
+         assertTrue(String.valueOf(ex.getCause()), ex.getCause() instanceof ZoteroResponseException);
+         assertTrue(ex.getCause().getMessage(), ex.getCause().getMessage().contains(MISSING));
+      }
+   }
+
+   @Test
+   public void reportsRejectedRequests() throws Exception
+   {
+      try
+      {
+         library.getItems("KEY00001", FORBIDDEN);
+         fail("Expected forbidden request to fail");
+      }
+      catch (ZoteroResponseException ex)
+      {
+         assertTrue(ex.getMessage(), ex.getMessage().contains("access"));
+      }
+   }
+}
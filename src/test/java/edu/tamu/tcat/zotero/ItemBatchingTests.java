@@ -0,0 +1,101 @@
+package edu.tamu.tcat.zotero;
+
+import static edu.tamu.tcat.zotero.ZoteroCommandExecutorTests.respond;
+import static edu.tamu.tcat.zotero.ZoteroTestServer.JSON;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroResponseException;
+
+/**
+ * Verifies that individually requested items are retrieved using batched requests.
+ */
+public class ItemBatchingTests
+{
+   private static final String MISSING = "MISSING1";
+
+   private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+   private ZoteroTestServer server;
+   private BasicZoteroLibrary library;
+
+   @Before
+   public void setup() throws IOException
+   {
+      server = new ZoteroTestServer();
+      server.createContext("/users/1/items", exchange -> {
+         String query = exchange.getRequestURI().getQuery();
+         String param = Arrays.stream(query.split("&")).filter(p -> p.startsWith("itemKey=")).findFirst().get();
+         List<String> keys = Arrays.asList(param.substring("itemKey=".length()).split(","));
+         batchSizes.add(Integer.valueOf(keys.size()));
+
+         StringBuilder body = new StringBuilder("[");
+         for (String key : keys)
+         {
+            if (MISSING.equals(key))
+               continue;
+
+            body.append(body.length() == 1 ? "" : ",")
+                .append("{\"key\":\"").append(key).append("\",\"version\":1,")
+                .append("\"library\":{\"type\":\"user\",\"id\":1},\"links\":{},\"meta\":{},")
+                .append("\"data\":{\"key\":\"").append(key).append("\",\"version\":1,\"itemType\":\"book\",")
+                .append("\"title\":\"").append(key).append("\",\"creators\":[],\"tags\":[],\"collections\":[]}}");
+         }
+         respond(exchange, 200, body.append("]").toString(), "Content-Type", JSON);
+      });
+      server.start();
+      library = server.getLibrary();
+   }
+
+   @After
+   public void tearDown()
+   {
+      server.stop();
+   }
+
+   @Test
+   public void batchesIndividualRequests() throws Exception
+   {
+      library.setItemBatching(200, TimeUnit.MILLISECONDS);
+
+      List<CompletableFuture<Item>> results = new ArrayList<>();
+      for (int i = 0; i < 60; i++)
+         results.add(library.getItemAsync(String.format("KEY%05d", Integer.valueOf(i))));
+      CompletableFuture<Item> missing = library.getItemAsync(MISSING);
+
+      for (int i = 0; i < results.size(); i++)
+         assertEquals(String.format("KEY%05d", Integer.valueOf(i)), results.get(i).get(5, TimeUnit.SECONDS).getId());
+
+      try
+      {
+         missing.get(5, TimeUnit.SECONDS);
+         fail("Expected missing item to fail");
+      }
+      catch (ExecutionException ex)
+      {
+         assertTrue(ex.getCause() instanceof ZoteroResponseException);
+      }
+
+      // 61 items are retrieved using two requests
+      List<Integer> sizes = new ArrayList<>(batchSizes);
+      Collections.sort(sizes);
+      assertEquals(Arrays.asList(11, 50), sizes);
+   }
+}
@@ -0,0 +1,164 @@
+package edu.tamu.tcat.zotero;
+
+import static edu.tamu.tcat.zotero.ZoteroCommandExecutorTests.respond;
+import static edu.tamu.tcat.zotero.ZoteroTestServer.JSON;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.zotero.basic.v3.search.BasicItemQuery;
+
+/**
+ * Reads a paged result set with pre-fetching enabled from a local HTTP server that simulates
+ * the Zotero API. The library holds {@value #TOTAL} items that are returned in pages of
+ * {@value #LIMIT}.
+ */
+public class ItemSetReadAheadTests
+{
+   private static final int TOTAL = 10;
+   private static final int LIMIT = 2;
+   private static final int READ_AHEAD = 1;
+
+   /** The pages requested from the server, in the order they were received. */
+   private final List<Integer> requested = new CopyOnWriteArrayList<>();
+
+   /** If set, the first request for this page fails. */
+   private volatile int failingPage = -1;
+
+   private ZoteroTestServer server;
+
+   @Before
+   public void setup() throws IOException
+   {
+      AtomicBoolean failed = new AtomicBoolean();
+      server = new ZoteroTestServer();
+      server.createContext("/users/1/items", exchange -> {
+         String query = exchange.getRequestURI().getQuery();
+         int start = Integer.parseInt(Arrays.stream(query.split("&"))
+               .filter(p -> p.startsWith("start="))
+               .findFirst().get()
+               .substring("start=".length()));
+         int page = start / LIMIT;
+         requested.add(Integer.valueOf(page));
+         if (page == failingPage && failed.compareAndSet(false, true))
+         {
+            respond(exchange, 400, "Bad Request");
+            return;
+         }
+
+         StringBuilder body = new StringBuilder("[");
+         for (int i = start; i < Math.min(start + LIMIT, TOTAL); i++)
+         {
+            String key = String.format("KEY%05d", Integer.valueOf(i));
+            body.append(body.length() == 1 ? "" : ",")
+                .append("{\"key\":\"").append(key).append("\",\"version\":1,")
+                .append("\"library\":{\"type\":\"user\",\"id\":1},\"links\":{},\"meta\":{},")
+                .append("\"data\":{\"key\":\"").append(key).append("\",\"version\":1,\"itemType\":\"book\",")
+                .append("\"title\":\"").append(key).append("\",\"creators\":[],\"tags\":[],\"collections\":[]}}");
+         }
+         respond(exchange, 200, body.append("]").toString(), "Content-Type", JSON,
+               "Total-Results", String.valueOf(TOTAL), "Last-Modified-Version", "10");
+      });
+      server.start();
+   }
+
+   @After
+   public void tearDown()
+   {
+      server.stop();
+   }
+
+   private ItemSet execute() throws ZoteroRestException
+   {
+      BasicItemQuery query = (BasicItemQuery)server.getLibrary().makeItemQueryBuilder()
+            .recursive(true)
+            .limit(LIMIT)
+            .build();
+      return query.executePrefetching(READ_AHEAD);
+   }
+
+   /**
+    * Waits for the server to receive a request for the supplied page.
+    */
+   private void awaitRequest(int page) throws InterruptedException
+   {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (!requested.contains(Integer.valueOf(page)))
+      {
+         if (System.nanoTime() - deadline > 0)
+            fail("Page " + page + " was not requested: " + requested);
+         Thread.sleep(5);
+      }
+   }
+
+   @Test
+   public void requestsNoMoreThanReadAheadPages() throws Exception
+   {
+      ItemSet items = execute();
+      awaitRequest(1);
+
+      for (int ix = 0; ix < TOTAL; ix++)
+      {
+         int page = ix / LIMIT;
+         assertEquals(String.format("KEY%05d", Integer.valueOf(ix)), items.get(ix).getId());
+
+         // pages beyond the read-ahead window are not requested
+         int furthest = requested.stream().mapToInt(Integer::intValue).max().getAsInt();
+         assertTrue("Requested " + requested + " while reading page " + page,
+               furthest <= page + READ_AHEAD);
+      }
+
+      // each page is requested exactly once during a sequential scan
+      List<Integer> pages = new ArrayList<>(requested);
+      pages.sort(null);
+      assertEquals(Arrays.asList(0, 1, 2, 3, 4), pages);
+   }
+
+   @Test
+   public void discardsPagesBehindTheCursor() throws Exception
+   {
+      ItemSet items = execute();
+      items.get(0);
+      items.get(3 * LIMIT);
+      awaitRequest(4);
+      assertEquals(1, requested.stream().filter(p -> p.intValue() == 0).count());
+
+      // the first page was discarded when the cursor moved past it and is loaded again
+      assertEquals("KEY00000", items.get(0).getId());
+      assertEquals(2, requested.stream().filter(p -> p.intValue() == 0).count());
+   }
+
+   @Test
+   public void retriesFailedPages() throws Exception
+   {
+      failingPage = 2;
+      ItemSet items = execute();
+      items.get(LIMIT);
+      awaitRequest(2);
+
+      try
+      {
+         items.get(2 * LIMIT);
+         fail("Expected the failed page to be reported");
+      }
+      catch (RuntimeException ex)
+      {
+         // expected
+      }
+
+      assertEquals("KEY00004", items.get(2 * LIMIT).getId());
+      assertEquals(2, requested.stream().filter(p -> p.intValue() == 2).count());
+   }
+}
@@ -0,0 +1,263 @@
+package edu.tamu.tcat.zotero;
+
+import static edu.tamu.tcat.zotero.ZoteroCommandExecutorTests.respond;
+import static edu.tamu.tcat.zotero.ZoteroTestServer.JSON;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.zotero.basic.v3.RestApiV3;
+import edu.tamu.tcat.zotero.basic.v3.cache.ItemStore;
+
+public class ItemStoreTests
+{
+   private static final ZoteroLibrary.Type GROUP = ZoteroLibrary.Type.Group;
+
+   private Path directory;
+
+   @Before
+   public void setup() throws IOException
+   {
+      directory = Files.createTempDirectory("zotero-items");
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      try (Stream<Path> files = Files.list(directory))
+      {
+         for (Path file : (Iterable<Path>)files::iterator)
+            Files.delete(file);
+      }
+      Files.delete(directory);
+   }
+
+   @Test
+   public void persistsItemsAcrossRestarts() throws IOException
+   {
+      try (ItemStore store = ItemStore.open(directory))
+      {
+         store.put(GROUP, "1", item("ABCD1234", 3, "First"));
+         store.put(GROUP, "1", item("ABCD1234", 5, "Second"));
+         store.put(GROUP, "1", item("ABCD1234", 4, "Stale"));
+         store.put(GROUP, "2", item("ABCD1234", 1, "Other library"));
+         store.validate(GROUP, "1", Collections.emptyMap(), false, 7);
+      }
+
+      try (ItemStore store = ItemStore.open(directory))
+      {
+         assertEquals(2, store.size());
+         assertEquals(7, store.getLibraryVersion(GROUP, "1"));
+         assertEquals(-1, store.getLibraryVersion(GROUP, "2"));
+
+         RestApiV3.Item item = store.get(GROUP, "1", "ABCD1234");
+         assertEquals(5, item.version);
+         assertEquals("Second", item.data.get("title"));
+         assertEquals("Other library", store.get(GROUP, "2", "ABCD1234").data.get("title"));
+      }
+   }
+
+   @Test
+   public void removesModifiedItemsOnValidate() throws IOException
+   {
+      try (ItemStore store = ItemStore.open(directory))
+      {
+         store.put(GROUP, "1", item("AAAA0000", 1, "Unchanged"));
+         store.put(GROUP, "1", item("BBBB0000", 1, "Modified"));
+         store.put(GROUP, "1", item("CCCC0000", 1, "Deleted"));
+
+         Map<String, Integer> versions = new HashMap<>();
+         versions.put("BBBB0000", Integer.valueOf(2));
+         store.validate(GROUP, "1", versions, false, 2);
+
+         assertEquals(1, store.getVersion(GROUP, "1", "AAAA0000"));
+         assertNull(store.get(GROUP, "1", "BBBB0000"));
+         assertEquals(1, store.getVersion(GROUP, "1", "CCCC0000"));
+
+         // a complete listing also removes items that are no longer in the library
+         versions.put("AAAA0000", Integer.valueOf(1));
+         store.validate(GROUP, "1", versions, true, 2);
+         assertEquals(1, store.getVersion(GROUP, "1", "AAAA0000"));
+         assertNull(store.get(GROUP, "1", "CCCC0000"));
+      }
+   }
+
+   @Test
+   public void compactsSegment() throws IOException
+   {
+      try (ItemStore store = ItemStore.open(directory))
+      {
+         for (int version = 1; version <= 10; version++)
+            store.put(GROUP, "1", item("ABCD1234", version, "Version " + version));
+         store.put(GROUP, "1", item("EFGH5678", 1, "Removed"));
+         store.remove(GROUP, "1", "EFGH5678");
+
+         long before = Files.size(directory.resolve("items.seg"));
+         store.compact();
+         long after = Files.size(directory.resolve("items.seg"));
+
+         assertEquals(1, store.size());
+         assertEquals(before / 11, after, before / 11);
+         assertEquals("Version 10", store.get(GROUP, "1", "ABCD1234").data.get("title"));
+      }
+
+      try (ItemStore store = ItemStore.open(directory))
+      {
+         assertEquals(1, store.size());
+         assertEquals("Version 10", store.get(GROUP, "1", "ABCD1234").data.get("title"));
+      }
+   }
+
+   @Test
+   public void readsItemsDuringCompaction() throws Exception
+   {
+      try (ItemStore store = ItemStore.open(directory))
+      {
+         for (int version = 1; version <= 3; version++)
+            for (int i = 0; i < 50; i++)
+               store.put(GROUP, "1", item("ITEM" + i, version, "Item " + i + " version " + version));
+
+         AtomicBoolean done = new AtomicBoolean();
+         AtomicReference<String> failure = new AtomicReference<>();
+         Thread[] readers = new Thread[4];
+         for (int r = 0; r < readers.length; r++)
+         {
+            readers[r] = new Thread(() -> {
+               while (!done.get() && failure.get() == null)
+               {
+                  for (int i = 0; i < 50; i++)
+                  {
+                     RestApiV3.Item item = store.get(GROUP, "1", "ITEM" + i);
+                     if (item == null || !("Item " + i + " version 3").equals(item.data.get("title")))
+                        failure.compareAndSet(null, "Unexpected item read for ITEM" + i + ": " + (item == null ? null : item.data.get("title")));
+                  }
+               }
+            });
+            readers[r].start();
+         }
+
+         try
+         {
+            for (int i = 0; i < 20 && failure.get() == null; i++)
+            {
+               // supersede an item so that each compaction moves the remaining items
+               store.put(GROUP, "1", item("EXTRA", i, "Extra " + i));
+               store.compact();
+            }
+         }
+         finally
+         {
+            done.set(true);
+            for (Thread reader : readers)
+               reader.join();
+         }
+
+         assertNull(failure.get());
+         assertEquals(51, store.size());
+      }
+   }
+
+   @Test
+   public void locksDirectory() throws IOException
+   {
+      try (ItemStore store = ItemStore.open(directory))
+      {
+         try (ItemStore other = ItemStore.open(directory))
+         {
+            fail("Expected the directory to be locked by the open store");
+         }
+         catch (IOException ex)
+         {
+            // expected
+         }
+      }
+
+      // the lock is released when the store is closed
+      try (ItemStore store = ItemStore.open(directory))
+      {
+         assertEquals(0, store.size());
+      }
+   }
+
+   @Test
+   public void ignoresItemsRequestedBeforeValidation() throws IOException
+   {
+      try (ItemStore store = ItemStore.open(directory))
+      {
+         store.validate(GROUP, "1", Collections.emptyMap(), true, 5);
+         int requestedAt = store.getLibraryVersion(GROUP, "1");
+
+         // the item is modified and the store validated while the item is being retrieved
+         store.validate(GROUP, "1", Collections.singletonMap("ABCD1234", Integer.valueOf(6)), false, 6);
+         store.put(GROUP, "1", item("ABCD1234", 4, "Stale"), requestedAt);
+         assertNull(store.get(GROUP, "1", "ABCD1234"));
+
+         store.put(GROUP, "1", item("ABCD1234", 6, "Current"), store.getLibraryVersion(GROUP, "1"));
+         assertEquals("Current", store.get(GROUP, "1", "ABCD1234").data.get("title"));
+      }
+   }
+
+   @Test
+   public void doesNotServeDeletedItems() throws Exception
+   {
+      try (ItemStore store = ItemStore.open(directory))
+      {
+         RestApiV3.Item stored = item("ITEM0001", 3, "Deleted");
+         stored.data.put("itemType", "book");
+         store.put(ZoteroLibrary.Type.User, "1", stored);
+         store.validate(ZoteroLibrary.Type.User, "1", Collections.emptyMap(), true, 5);
+      }
+
+      AtomicInteger itemRequests = new AtomicInteger();
+      ZoteroTestServer server = new ZoteroTestServer();
+      server.createContext("/users/1/items", exchange ->
+            respond(exchange, 200, "{}", "Content-Type", JSON, "Last-Modified-Version", "7"));
+      server.createContext("/users/1/deleted", exchange ->
+            respond(exchange, 200, "{\"collections\":[],\"items\":[\"ITEM0001\"]}", "Content-Type", JSON, "Last-Modified-Version", "7"));
+      server.createContext("/users/1/items/ITEM0001", exchange -> {
+         itemRequests.incrementAndGet();
+         respond(exchange, 200, "{\"key\":\"ITEM0001\",\"version\":7,"
+               + "\"library\":{\"type\":\"user\",\"id\":1},\"links\":{},\"meta\":{},"
+               + "\"data\":{\"key\":\"ITEM0001\",\"version\":7,\"itemType\":\"book\",\"title\":\"Restored\","
+               + "\"creators\":[],\"tags\":[],\"collections\":[]}}", "Content-Type", JSON);
+      });
+      server.start(client -> client.setCacheDirectory(directory));
+      try
+      {
+         // the item was deleted after it was stored, so it must be requested again
+         assertEquals(7, server.getLibrary().getItem("ITEM0001").getVersion());
+         assertEquals(1, itemRequests.get());
+      }
+      finally
+      {
+         server.stop();
+         server.getClient().close();
+      }
+   }
+
+   private static RestApiV3.Item item(String key, int version, String title)
+   {
+      RestApiV3.Item item = new RestApiV3.Item();
+      item.key = key;
+      item.version = version;
+      item.data = new HashMap<>();
+      item.data.put("key", key);
+      item.data.put("title", title);
+      return item;
+   }
+}
@@ -0,0 +1,141 @@
+package edu.tamu.tcat.zotero;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.tamu.tcat.zotero.basic.v3.BasicUserAccount;
+import edu.tamu.tcat.zotero.basic.v3.RestApiV3;
+import edu.tamu.tcat.zotero.basic.v3.ZoteroClientService;
+import edu.tamu.tcat.zotero.basic.v3.model.BasicItem;
+import edu.tamu.tcat.zotero.basic.v3.model.ItemStreamDecoder;
+import edu.tamu.tcat.zotero.basic.v3.types.BasicItemFieldType;
+import edu.tamu.tcat.zotero.basic.v3.types.BasicItemType;
+import edu.tamu.tcat.zotero.basic.v3.types.BasicItemTypeInfo;
+import edu.tamu.tcat.zotero.types.ItemFieldType;
+import edu.tamu.tcat.zotero.types.ItemType;
+import edu.tamu.tcat.zotero.types.ItemTypeInfo;
+import edu.tamu.tcat.zotero.types.ItemTypeProvider;
+
+public class ItemStreamDecoderTests
+{
+   private static final String ITEMS = "[{"
+         + "\"key\":\"D8R4WZQ4\",\"version\":18,"
+         + "\"library\":{\"type\":\"user\",\"id\":2536190,\"name\":\"neal.audenaert\",\"links\":{}},"
+         + "\"links\":{\"self\":{\"href\":\"https://api.zotero.org/users/2536190/items/D8R4WZQ4\",\"type\":\"application/json\"},"
+         +            "\"alternate\":{\"href\":\"https://www.zotero.org/neal.audenaert/items/D8R4WZQ4\",\"type\":\"text/html\"}},"
+         + "\"meta\":{\"creatorSummary\":\"Matloff\",\"parsedDate\":\"2011\",\"numChildren\":0},"
+         + "\"data\":{\"key\":\"D8R4WZQ4\",\"version\":18,\"itemType\":\"book\","
+         +          "\"title\":\"The Art of R Programming\","
+         +          "\"creators\":[{\"creatorType\":\"author\",\"firstName\":\"Norman\",\"lastName\":\"Matloff\"},"
+         +                       "{\"creatorType\":\"editor\",\"name\":\"No Starch\"}],"
+         +          "\"abstractNote\":\"A long abstract.\",\"numPages\":373,"
+         +          "\"dateAdded\":\"2015-07-15T15:45:43Z\",\"dateModified\":\"2015-07-15T15:45:43Z\","
+         +          "\"tags\":[{\"tag\":\"R\"},{\"tag\":\"statistics\",\"type\":1}],"
+         +          "\"collections\":[],\"relations\":{\"owl:sameAs\":[\"http://zotero.org/groups/1/items/ABC\"]}}"
+         + "},{"
+         + "\"key\":\"ABCD2345\",\"version\":1,"
+         + "\"library\":{\"type\":\"user\",\"id\":2536190},"
+         + "\"links\":{},\"meta\":{},"
+         + "\"data\":{\"key\":\"ABCD2345\",\"version\":1,\"itemType\":\"book\",\"title\":\"Untitled\",\"abstractNote\":null,"
+         +          "\"creators\":[],\"tags\":[],\"collections\":[\"EK6F98V3\"],\"parentItem\":\"D8R4WZQ4\"}"
+         + "}]";
+
+   private ZoteroClientService client;
+   private ZoteroLibrary library;
+   private ItemTypeProvider types;
+
+   @Before
+   public void setup()
+   {
+      client = new ZoteroClientService();
+      library = new BasicUserAccount("2536190", null, client).getUserLibrary();
+      types = new BookTypeProvider();
+   }
+
+   @After
+   public void tearDown()
+   {
+      client.getExecutor().close();
+   }
+
+   @Test
+   public void decodesItemsLikeDataBinding() throws Exception
+   {
+      List<BasicItem> decoded = new ItemStreamDecoder(library, types)
+            .decodeItems(new ByteArrayInputStream(ITEMS.getBytes(StandardCharsets.UTF_8)));
+
+      RestApiV3.Item[] dtos = new ObjectMapper().readValue(ITEMS, RestApiV3.Item[].class);
+      assertEquals(dtos.length, decoded.size());
+
+      BasicItem expected = new BasicItem(library, types, dtos[0]);
+      BasicItem item = decoded.get(0);
+      assertEquals(expected.getId(), item.getId());
+      assertEquals(expected.getVersion(), item.getVersion());
+      assertEquals(expected.getTitle(), item.getTitle());
+      assertEquals(expected.getUri(), item.getUri());
+      assertEquals(expected.getCreatorDescription(), item.getCreatorDescription());
+      assertEquals(expected.getDate(), item.getDate());
+      assertEquals(expected.getDateAdded(), item.getDateAdded());
+      assertEquals(expected.getTags(), item.getTags());
+      assertEquals(expected.getCreators().size(), item.getCreators().size());
+      for (int i = 0; i < item.getCreators().size(); i++)
+      {
+         assertEquals(expected.getCreators().get(i).getRole(), item.getCreators().get(i).getRole());
+         assertEquals(expected.getCreators().get(i).getName(), item.getCreators().get(i).getName());
+         assertEquals(expected.getCreators().get(i).getGivenName(), item.getCreators().get(i).getGivenName());
+         assertEquals(expected.getCreators().get(i).getFamilyName(), item.getCreators().get(i).getFamilyName());
+      }
+      for (ItemFieldType field : item.getItemType().getFields())
+         assertEquals(expected.getFieldValue(field), item.getFieldValue(field));
+
+      BasicItem child = decoded.get(1);
+      assertEquals("ABCD2345", child.getId());
+      assertEquals("", child.getCreatorDescription());
+      assertNull(child.getUri());
+      assertNull(child.getFieldValue(new BasicItemFieldType("abstractNote", "Abstract")));
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void rejectsItemsFromOtherLibraries() throws Exception
+   {
+      String json = ITEMS.replace("2536190", "1");
+      new ItemStreamDecoder(library, types).decodeItems(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+   }
+
+   private static class BookTypeProvider implements ItemTypeProvider
+   {
+      private final ItemTypeInfo book = new BasicItemTypeInfo("book", "Book");
+
+      @Override
+      public Set<ItemTypeInfo> getItemTypes()
+      {
+         return Collections.singleton(book);
+      }
+
+      @Override
+      public ItemType getItemType(ItemTypeInfo typeId)
+      {
+         List<ItemFieldType> fields = Arrays.asList(
+               new BasicItemFieldType("title", "Title"),
+               new BasicItemFieldType("abstractNote", "Abstract"),
+               new BasicItemFieldType("numPages", "# of Pages"));
+         List<ItemFieldType> creators = Arrays.asList(
+               new BasicItemFieldType("author", "Author"),
+               new BasicItemFieldType("editor", "Editor"));
+         return new BasicItemType(book, fields, creators);
+      }
+   }
+}
@@ -0,0 +1,141 @@
+package edu.tamu.tcat.zotero;
+
+import static edu.tamu.tcat.zotero.ZoteroCommandExecutorTests.respond;
+import static edu.tamu.tcat.zotero.ZoteroTestServer.JSON;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+import edu.tamu.tcat.zotero.basic.v3.cache.ItemStore;
+import edu.tamu.tcat.zotero.basic.v3.cache.LibrarySynchronizer;
+
+/**
+ * Synchronizes a library served by a local HTTP server that simulates the Zotero API.
+ */
+public class LibrarySynchronizerTests
+{
+   private ZoteroTestServer server;
+   private Path directory;
+   private ItemStore store;
+   private LibrarySynchronizer synchronizer;
+
+   /** item key to version for the simulated library */
+   private final Map<String, Integer> items = new TreeMap<>();
+   private final List<String> deleted = new CopyOnWriteArrayList<>();
+   private final List<String> requests = new CopyOnWriteArrayList<>();
+   private volatile int libraryVersion;
+
+   @Before
+   public void setup() throws IOException
+   {
+      server = new ZoteroTestServer();
+      server.createContext("/users/1/items", exchange -> {
+         String query = exchange.getRequestURI().getQuery();
+         requests.add(query);
+         if (query.contains("format=versions"))
+            respond(exchange, 200, versionsSince(param(query, "since")), "Last-Modified-Version", Integer.toString(libraryVersion), "Content-Type", JSON);
+         else
+            respond(exchange, 200, itemsByKey(param(query, "itemKey")), "Last-Modified-Version", Integer.toString(libraryVersion), "Content-Type", JSON);
+      });
+      server.createContext("/users/1/deleted", exchange -> {
+         requests.add("deleted?" + exchange.getRequestURI().getQuery());
+         String keys = deleted.stream().map(key -> "\"" + key + "\"").collect(Collectors.joining(","));
+         respond(exchange, 200, "{\"collections\":[],\"searches\":[],\"items\":[" + keys + "],\"tags\":[],\"settings\":[]}",
+               "Last-Modified-Version", Integer.toString(libraryVersion), "Content-Type", JSON);
+      });
+      server.start();
+
+      directory = Files.createTempDirectory("zotero-sync");
+      store = ItemStore.open(directory);
+
+      synchronizer = new LibrarySynchronizer(server.getLibrary(), store);
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      store.close();
+      server.stop();
+
+      try (Stream<Path> files = Files.list(directory))
+      {
+         for (Path file : (Iterable<Path>)files::iterator)
+            Files.delete(file);
+      }
+      Files.delete(directory);
+   }
+
+   @Test
+   public void retrievesOnlyChanges() throws Exception
+   {
+      for (int i = 0; i < 60; i++)
+         items.put(String.format("ITEM%04d", Integer.valueOf(i)), Integer.valueOf(1));
+      libraryVersion = 1;
+
+      LibrarySynchronizer.Result first = synchronizer.synchronize().get(5, TimeUnit.SECONDS);
+      assertEquals(60, first.getUpdatedKeys().size());
+      assertEquals(60, store.size());
+      assertEquals(1, synchronizer.getLibraryVersion());
+      // one version listing and two batches of keys
+      assertEquals(3, requests.size());
+
+      requests.clear();
+      libraryVersion = 2;
+      items.put("ITEM0005", Integer.valueOf(2));
+      items.remove("ITEM0006");
+      deleted.add("ITEM0006");
+
+      LibrarySynchronizer.Result second = synchronizer.synchronize().get(5, TimeUnit.SECONDS);
+      assertEquals(Arrays.asList("ITEM0005"), second.getUpdatedKeys());
+      assertEquals(Arrays.asList("ITEM0006"), second.getDeletedKeys());
+      assertEquals(2, synchronizer.getLibraryVersion());
+      assertEquals(2, store.getVersion(ZoteroLibrary.Type.User, "1", "ITEM0005"));
+      assertNull(store.get(ZoteroLibrary.Type.User, "1", "ITEM0006"));
+      assertEquals(59, store.size());
+      assertEquals(new HashSet<>(Arrays.asList("since=1&format=versions", "deleted?since=1", "itemKey=ITEM0005&limit=1")),
+            new HashSet<>(requests));
+   }
+
+   private String versionsSince(String since)
+   {
+      int version = Integer.parseInt(since);
+      return items.entrySet().stream()
+            .filter(e -> e.getValue().intValue() > version)
+            .map(e -> "\"" + e.getKey() + "\":" + e.getValue())
+            .collect(Collectors.joining(",", "{", "}"));
+   }
+
+   private String itemsByKey(String keys)
+   {
+      return Arrays.stream(keys.split(","))
+            .filter(items::containsKey)
+            .map(key -> "{\"key\":\"" + key + "\",\"version\":" + items.get(key) + ",\"data\":{\"key\":\"" + key + "\"}}")
+            .collect(Collectors.joining(",", "[", "]"));
+   }
+
+   private static String param(String query, String name)
+   {
+      return Arrays.stream(query.split("&"))
+            .filter(p -> p.startsWith(name + "="))
+            .map(p -> p.substring(name.length() + 1))
+            .findFirst()
+            .orElse(null);
+   }
+}
@@ -0,0 +1,199 @@
+package edu.tamu.tcat.zotero;
+
+import static edu.tamu.tcat.zotero.ZoteroCommandExecutorTests.respond;
+import static edu.tamu.tcat.zotero.ZoteroTestServer.JSON;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.zotero.basic.v3.search.BasicItemQuery;
+
+/**
+ * Retrieves the complete results of a query from a local HTTP server that simulates the Zotero
+ * API. The library holds {@value #TOTAL} items that are returned in pages of {@value #LIMIT}.
+ * Later pages are returned more quickly than earlier ones so that they complete out of order.
+ */
+public class MaterializedItemSetTests
+{
+   private static final int TOTAL = 12;
+   private static final int LIMIT = 2;
+   private static final int PAGES = TOTAL / LIMIT;
+
+   private final AtomicInteger inFlight = new AtomicInteger();
+   private final AtomicInteger maxInFlight = new AtomicInteger();
+   private final Set<Integer> requested = ConcurrentHashMap.newKeySet();
+
+   /** The page whose request fails, if any. */
+   private volatile int failingPage = -1;
+   /** The page whose response is delayed well beyond the others, if any. */
+   private volatile int stalledPage = -1;
+   /** The page that reports a different library version, if any. */
+   private volatile int changedPage = -1;
+   /** Whether the total number of results is reported. */
+   private volatile boolean reportTotal = true;
+
+   private ExecutorService serverExec;
+   private ZoteroTestServer server;
+
+   @Before
+   public void setup() throws IOException
+   {
+      serverExec = Executors.newCachedThreadPool();
+      server = new ZoteroTestServer();
+      server.setExecutor(serverExec);
+      server.createContext("/users/1/items", exchange -> {
+         String query = exchange.getRequestURI().getQuery();
+         int start = Integer.parseInt(Arrays.stream(query.split("&"))
+               .filter(p -> p.startsWith("start="))
+               .findFirst().get()
+               .substring("start=".length()));
+         int page = start / LIMIT;
+         requested.add(Integer.valueOf(page));
+
+         maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+         try
+         {
+            if (page == stalledPage)
+               Thread.sleep(2000);
+            else if (page > 0 && page != failingPage)
+               Thread.sleep((PAGES - page) * 20);
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+         }
+
+         // the request is no longer counted once the client can see its response
+         inFlight.decrementAndGet();
+         if (page == failingPage)
+         {
+            respond(exchange, 400, "Bad Request");
+            return;
+         }
+
+         StringBuilder body = new StringBuilder("[");
+         for (int i = start; i < Math.min(start + LIMIT, TOTAL); i++)
+         {
+            String key = String.format("KEY%05d", Integer.valueOf(i));
+            body.append(body.length() == 1 ? "" : ",")
+                .append("{\"key\":\"").append(key).append("\",\"version\":1,")
+                .append("\"library\":{\"type\":\"user\",\"id\":1},\"links\":{},\"meta\":{},")
+                .append("\"data\":{\"key\":\"").append(key).append("\",\"version\":1,\"itemType\":\"book\",")
+                .append("\"title\":\"").append(key).append("\",\"creators\":[],\"tags\":[],\"collections\":[]}}");
+         }
+
+         String version = page == changedPage ? "11" : "10";
+         if (reportTotal)
+            respond(exchange, 200, body.append("]").toString(), "Content-Type", JSON,
+                  "Total-Results", String.valueOf(TOTAL), "Last-Modified-Version", version);
+         else
+            respond(exchange, 200, body.append("]").toString(), "Content-Type", JSON,
+                  "Last-Modified-Version", version);
+      });
+      server.start();
+   }
+
+   @After
+   public void tearDown()
+   {
+      server.stop();
+      serverExec.shutdownNow();
+   }
+
+   private ItemSet executeAll(int maxConcurrentPages) throws ZoteroRestException
+   {
+      BasicItemQuery query = (BasicItemQuery)server.getLibrary().makeItemQueryBuilder()
+            .recursive(true)
+            .limit(LIMIT)
+            .build();
+      return query.executeAll(maxConcurrentPages);
+   }
+
+   @Test
+   public void assemblesPagesInIndexOrder() throws Exception
+   {
+      ItemSet items = executeAll(PAGES);
+
+      assertEquals(TOTAL, items.size());
+      int ix = 0;
+      for (Item item : items)
+      {
+         assertEquals(String.format("KEY%05d", Integer.valueOf(ix++)), item.getId());
+      }
+   }
+
+   @Test
+   public void limitsConcurrentRequests() throws Exception
+   {
+      ItemSet items = executeAll(2);
+
+      assertEquals(TOTAL, items.size());
+      assertEquals(PAGES, requested.size());
+      assertTrue("At most 2 requests should be in flight: " + maxInFlight, maxInFlight.get() <= 2);
+   }
+
+   @Test
+   public void detectsChangedResults() throws Exception
+   {
+      changedPage = 3;
+      try
+      {
+         executeAll(2);
+         fail("Expected the change in version to be detected");
+      }
+      catch (ConcurrentModificationException ex)
+      {
+         // expected
+      }
+   }
+
+   @Test
+   public void failsOnFirstFailedPage() throws Exception
+   {
+      stalledPage = 1;
+      failingPage = PAGES - 1;
+      long start = System.nanoTime();
+      try
+      {
+         executeAll(PAGES);
+         fail("Expected the failed page to be reported");
+      }
+      catch (IllegalStateException ex)
+      {
+         // expected
+      }
+
+      // the failure is reported without waiting on the stalled page requested before it
+      long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      assertTrue("Failure reported after " + elapsed + " ms", elapsed < 1000);
+   }
+
+   @Test
+   public void rejectsMissingTotal() throws Exception
+   {
+      reportTotal = false;
+      try
+      {
+         executeAll(2);
+         fail("Expected the missing total to be reported");
+      }
+      catch (IllegalStateException ex)
+      {
+         assertTrue(ex.getMessage(), ex.getMessage().contains("total"));
+      }
+   }
+}
@@ -0,0 +1,98 @@
+package edu.tamu.tcat.zotero;
+
+import static edu.tamu.tcat.zotero.ZoteroCommandExecutorTests.respond;
+import static edu.tamu.tcat.zotero.ZoteroTestServer.JSON;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.cache.NearCache;
+
+public class NearCacheTests
+{
+   @Test
+   public void evictsLeastRecentlyUsed()
+   {
+      NearCache cache = new NearCache(300);
+      cache.put("a", 1, "A", 100);
+      cache.put("b", 1, "B", 100);
+      cache.put("c", 1, "C", 100);
+
+      // touch "a" so that "b" is the least recently used
+      assertEquals("A", cache.get("a", String.class));
+      cache.put("d", 1, "D", 100);
+
+      assertNull(cache.get("b", String.class));
+      assertEquals("C", cache.get("c", String.class));
+      assertEquals("D", cache.get("d", String.class));
+
+      NearCache.Stats stats = cache.getStats();
+      assertEquals(3, stats.getHitCount());
+      assertEquals(1, stats.getMissCount());
+      assertEquals(1, stats.getEvictionCount());
+      assertEquals(3, stats.getSize());
+      assertEquals(300, stats.getWeight());
+   }
+
+   @Test
+   public void validatesVersions()
+   {
+      NearCache cache = new NearCache(1000);
+      cache.put("a", 5, "A5", 10);
+      cache.put("a", 4, "A4", 10);
+      assertEquals("A5", cache.get("a", String.class));
+
+      cache.invalidate("a", 5);
+      assertEquals("A5", cache.get("a", String.class));
+
+      cache.invalidate("a", 6);
+      assertNull(cache.get("a", String.class));
+      assertEquals(0, cache.getStats().getWeight());
+   }
+
+   @Test
+   public void servesItemsFromCache() throws Exception
+   {
+      AtomicInteger itemRequests = new AtomicInteger();
+      ZoteroTestServer server = new ZoteroTestServer();
+      server.createContext("/users/1/items", exchange ->
+            respond(exchange, 200, "{}", "Content-Type", JSON, "Last-Modified-Version", "10"));
+      server.createContext("/users/1/collections", exchange ->
+            respond(exchange, 200, "{}", "Content-Type", JSON, "Last-Modified-Version", "10"));
+      server.createContext("/users/1/deleted", exchange ->
+            respond(exchange, 200, "{\"collections\":[],\"items\":[]}", "Content-Type", JSON, "Last-Modified-Version", "10"));
+      server.createContext("/users/1/items/ITEM0001", exchange -> {
+         itemRequests.incrementAndGet();
+         respond(exchange, 200, "{\"key\":\"ITEM0001\",\"version\":3,"
+               + "\"library\":{\"type\":\"user\",\"id\":1},\"links\":{},\"meta\":{},"
+               + "\"data\":{\"key\":\"ITEM0001\",\"version\":3,\"itemType\":\"book\",\"title\":\"Title\","
+               + "\"creators\":[],\"tags\":[],\"collections\":[]}}", "Content-Type", JSON);
+      });
+      server.start(client -> client.setNearCacheSize(1024 * 1024));
+      try
+      {
+         BasicZoteroLibrary library = server.getLibrary();
+         Item item = library.getItem("ITEM0001");
+         assertSame(item, library.getItem("ITEM0001"));
+
+         // the cache is shared by other instances of the same library
+         BasicZoteroLibrary other = server.newLibrary();
+         assertSame(item, other.getItem("ITEM0001"));
+
+         assertEquals(1, itemRequests.get());
+         NearCache.Stats stats = library.getNearCacheStats();
+         assertEquals(2, stats.getHitCount());
+         assertEquals(1, stats.getMissCount());
+         assertEquals(1, stats.getSize());
+      }
+      finally
+      {
+         server.stop();
+      }
+   }
+}
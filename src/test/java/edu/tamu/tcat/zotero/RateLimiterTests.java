@@ -0,0 +1,89 @@
+package edu.tamu.tcat.zotero;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import edu.tamu.tcat.zotero.basic.v3.commands.RateLimiter;
+
+public class RateLimiterTests
+{
+   private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+   private static final long SLACK = TimeUnit.MILLISECONDS.toNanos(50);
+
+   @Test
+   public void allowsBurstThenQueues()
+   {
+      RateLimiter limiter = new RateLimiter(10, 3);
+
+      assertEquals(0, limiter.reserve("key"));
+      assertEquals(0, limiter.reserve("key"));
+      assertEquals(0, limiter.reserve("key"));
+
+      long wait = limiter.reserve("key");
+      assertTrue("Expected first queued request to wait one interval: " + wait, wait > INTERVAL - SLACK && wait <= INTERVAL);
+
+      wait = limiter.reserve("key");
+      assertTrue("Expected second queued request to wait two intervals: " + wait, wait > 2 * INTERVAL - SLACK && wait <= 2 * INTERVAL);
+   }
+
+   @Test
+   public void doesNotClaimTokensWhileWaiting() throws Exception
+   {
+      RateLimiter limiter = new RateLimiter(10, 1);
+      assertEquals(0, limiter.tryAcquire("key"));
+
+      // callers that are turned away do not push back the next available token
+      for (int i = 0; i < 5; i++)
+      {
+         long wait = limiter.tryAcquire("key");
+         assertTrue("Expected to wait at most one interval: " + wait, wait > 0 && wait <= INTERVAL);
+      }
+
+      Thread.sleep(TimeUnit.NANOSECONDS.toMillis(INTERVAL) + 10);
+      assertEquals(0, limiter.tryAcquire("key"));
+      assertTrue(limiter.tryAcquire("key") > 0);
+   }
+
+   @Test
+   public void keysAreIndependent()
+   {
+      RateLimiter limiter = new RateLimiter(10, 1);
+
+      assertEquals(0, limiter.reserve("a"));
+      assertTrue(limiter.reserve("a") > 0);
+
+      assertEquals(0, limiter.reserve("b"));
+      assertEquals(0, limiter.reserve(null));
+   }
+
+   @Test
+   public void discardsIdleBuckets() throws Exception
+   {
+      RateLimiter limiter = new RateLimiter(1000, 2);
+
+      assertEquals(0, limiter.reserve("a"));
+      assertEquals(0, limiter.reserve("b"));
+      assertEquals(2, limiter.getBucketCount());
+
+      // both buckets refill within 2 ms
+      Thread.sleep(20);
+      assertEquals(0, limiter.reserve("c"));
+      assertEquals(1, limiter.getBucketCount());
+
+      // a discarded bucket is recreated full
+      assertEquals(0, limiter.reserve("a"));
+      assertEquals(0, limiter.reserve("a"));
+   }
+
+   @Test
+   public void unlimitedNeverWaits()
+   {
+      RateLimiter limiter = RateLimiter.unlimited();
+      for (int i = 0; i < 1000; i++)
+         assertEquals(0, limiter.reserve("key"));
+   }
+}
@@ -0,0 +1,146 @@
+package edu.tamu.tcat.zotero;
+
+import static edu.tamu.tcat.zotero.ZoteroCommandExecutorTests.respond;
+import static edu.tamu.tcat.zotero.ZoteroTestServer.JSON;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.tamu.tcat.zotero.basic.v3.BasicEditItemCommand;
+import edu.tamu.tcat.zotero.basic.v3.BasicEditItemCommand.EditItemMutator;
+import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.ZoteroClientService;
+import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroResponseException;
+import edu.tamu.tcat.zotero.types.ItemType;
+
+/**
+ * Saves items to a local HTTP server that simulates the Zotero API's multi-object writes.
+ */
+public class SaveItemsTests
+{
+   private final ObjectMapper mapper = new ObjectMapper();
+   private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+   private ZoteroTestServer server;
+   private ZoteroClientService client;
+   private BasicZoteroLibrary library;
+
+   @Before
+   public void setup() throws IOException
+   {
+      server = new ZoteroTestServer();
+      server.createContext("/users/1/items", exchange -> {
+         List<Map<String, Object>> items;
+         try (InputStream in = exchange.getRequestBody())
+         {
+            items = mapper.readValue(in, new TypeReference<List<Map<String, Object>>>(){});
+         }
+         batchSizes.add(Integer.valueOf(items.size()));
+         respond(exchange, 200, writeResponse(items), "Content-Type", JSON);
+      });
+      server.start();
+
+      client = server.getClient();
+      library = server.getLibrary();
+   }
+
+   @After
+   public void tearDown()
+   {
+      server.stop();
+   }
+
+   @Test
+   public void mapsOutcomesToEachItem() throws Exception
+   {
+      ItemType book = client.getTypeProvider().getItemType("book");
+
+      List<EditItemMutator> mutators = new ArrayList<>();
+      for (int i = 0; i < 120; i++)
+      {
+         EditItemMutator mutator = new BasicEditItemCommand(library).new EditItemMutator();
+         mutator.setItemType(book);
+         mutator.setField(book.getFields().get(0), "Title " + i);
+         mutators.add(mutator);
+      }
+
+      List<CompletableFuture<Item>> results = library.saveItems(mutators);
+      assertEquals(mutators.size(), results.size());
+
+      for (int i = 0; i < results.size(); i++)
+      {
+         CompletableFuture<Item> result = results.get(i);
+         String title = "Title " + i;
+         if (title.endsWith("7"))
+         {
+            try
+            {
+               result.get(5, TimeUnit.SECONDS);
+               fail("Expected item " + i + " to fail");
+            }
+            catch (ExecutionException ex)
+            {
+               assertTrue(ex.getCause() instanceof ZoteroResponseException);
+               assertTrue(ex.getCause().getMessage().contains(title));
+            }
+         }
+         else
+         {
+            Item item = result.get(5, TimeUnit.SECONDS);
+            assertEquals(title, item.getFieldValue(book.getFields().get(0)));
+         }
+      }
+
+      // 120 items are written with three requests
+      List<Integer> sizes = new ArrayList<>(batchSizes);
+      Collections.sort(sizes);
+      assertEquals(Arrays.asList(20, 50, 50), sizes);
+   }
+
+   /**
+    * Saves every item except those whose title ends with "7", which are reported as failed.
+    */
+   private String writeResponse(List<Map<String, Object>> items) throws IOException
+   {
+      StringBuilder successful = new StringBuilder();
+      StringBuilder failed = new StringBuilder();
+      for (int i = 0; i < items.size(); i++)
+      {
+         String title = (String)items.get(i).get("title");
+         if (title.endsWith("7"))
+         {
+            failed.append(failed.length() == 0 ? "" : ",")
+                  .append("\"").append(i).append("\":{\"code\":400,\"message\":\"Rejected ").append(title).append("\"}");
+            continue;
+         }
+
+         String key = String.format("KEY%05d", Integer.valueOf(title.hashCode() & 0xFFFF));
+         successful.append(successful.length() == 0 ? "" : ",")
+                   .append("\"").append(i).append("\":{\"key\":\"").append(key).append("\",\"version\":1,")
+                   .append("\"library\":{\"type\":\"user\",\"id\":1},\"links\":{},\"meta\":{},")
+                   .append("\"data\":{\"key\":\"").append(key).append("\",\"version\":1,\"itemType\":\"book\",")
+                   .append("\"title\":\"").append(title).append("\",\"creators\":[],\"tags\":[],\"collections\":[]}}");
+      }
+
+      return "{\"successful\":{" + successful + "},\"success\":{},\"unchanged\":{},\"failed\":{" + failed + "}}";
+   }
+}
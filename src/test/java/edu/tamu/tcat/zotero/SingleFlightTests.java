@@ -0,0 +1,151 @@
+package edu.tamu.tcat.zotero;
+
+import static edu.tamu.tcat.zotero.ZoteroCommandExecutorTests.respond;
+import static edu.tamu.tcat.zotero.ZoteroTestServer.JSON;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+
+/**
+ * Verifies that concurrent requests for the same item or collection share a single request.
+ */
+public class SingleFlightTests
+{
+
+   private static final String ITEM = "{\"key\":\"ITEM0001\",\"version\":1,"
+         + "\"library\":{\"type\":\"user\",\"id\":1},\"links\":{},\"meta\":{},"
+         + "\"data\":{\"key\":\"ITEM0001\",\"version\":1,\"itemType\":\"book\",\"title\":\"Title\","
+         + "\"creators\":[],\"tags\":[],\"collections\":[]}}";
+
+   private static final String COLLECTION = "{\"key\":\"COLL0001\",\"version\":1,"
+         + "\"library\":{\"type\":\"user\",\"id\":1},\"links\":{},\"meta\":{},"
+         + "\"data\":{\"key\":\"COLL0001\",\"version\":1,\"name\":\"Collection\",\"parentCollection\":false}}";
+
+   private final AtomicInteger itemRequests = new AtomicInteger();
+   private final AtomicInteger collectionRequests = new AtomicInteger();
+   private final CountDownLatch release = new CountDownLatch(1);
+
+   private ExecutorService serverExec;
+   private ZoteroTestServer server;
+   private BasicZoteroLibrary library;
+
+   @Before
+   public void setup() throws IOException
+   {
+      serverExec = Executors.newCachedThreadPool();
+      server = new ZoteroTestServer();
+      server.setExecutor(serverExec);
+      server.createContext("/users/1/items/ITEM0001", exchange -> {
+         itemRequests.incrementAndGet();
+         await();
+         respond(exchange, 200, ITEM, "Content-Type", JSON);
+      });
+      server.createContext("/users/1/collections/COLL0001", exchange -> {
+         collectionRequests.incrementAndGet();
+         await();
+         respond(exchange, 200, COLLECTION, "Content-Type", JSON);
+      });
+      server.start();
+      library = server.getLibrary();
+   }
+
+   @After
+   public void tearDown()
+   {
+      release.countDown();
+      server.stop();
+      serverExec.shutdownNow();
+   }
+
+   @Test
+   public void sharesConcurrentItemRequests() throws Exception
+   {
+      List<CompletableFuture<Item>> results = new ArrayList<>();
+      for (int i = 0; i < 10; i++)
+         results.add(library.getItemAsync("ITEM0001"));
+
+      release.countDown();
+      for (CompletableFuture<Item> result : results)
+         assertEquals("ITEM0001", result.get(5, TimeUnit.SECONDS).getId());
+
+      assertEquals(1, itemRequests.get());
+
+      // once completed, the item is requested again
+      library.getItemAsync("ITEM0001").get(5, TimeUnit.SECONDS);
+      assertEquals(2, itemRequests.get());
+   }
+
+   @Test
+   public void sharesConcurrentCollectionRequests() throws Exception
+   {
+      List<CompletableFuture<ZoteroCollection>> results = new ArrayList<>();
+      for (int i = 0; i < 10; i++)
+         results.add(library.getCollectionAsync("COLL0001"));
+
+      // cancelling one caller's future does not affect the others
+      results.get(0).cancel(true);
+
+      release.countDown();
+      for (CompletableFuture<ZoteroCollection> result : results.subList(1, results.size()))
+         assertEquals("COLL0001", result.get(5, TimeUnit.SECONDS).getId());
+
+      assertEquals(1, collectionRequests.get());
+   }
+
+   @Test
+   public void abortsRequestOnceEveryCallerCancels() throws Exception
+   {
+      List<CompletableFuture<Item>> results = new ArrayList<>();
+      for (int i = 0; i < 3; i++)
+         results.add(library.getItemAsync("ITEM0001"));
+
+      awaitRequests(1);
+      results.forEach(result -> result.cancel(true));
+
+      // the abandoned request is aborted and is not shared with later callers
+      CompletableFuture<Item> retry = library.getItemAsync("ITEM0001");
+      awaitRequests(2);
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (server.getExecutor().getMetrics().getInFlightCount() > 1 && System.nanoTime() < deadline)
+         Thread.sleep(5);
+      assertEquals(1, server.getExecutor().getMetrics().getInFlightCount());
+
+      release.countDown();
+      assertEquals("ITEM0001", retry.get(5, TimeUnit.SECONDS).getId());
+   }
+
+   private void awaitRequests(int count) throws InterruptedException
+   {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (itemRequests.get() < count && System.nanoTime() < deadline)
+         Thread.sleep(5);
+      assertEquals(count, itemRequests.get());
+   }
+
+   private void await()
+   {
+      try
+      {
+         release.await(5, TimeUnit.SECONDS);
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+      }
+   }
+}
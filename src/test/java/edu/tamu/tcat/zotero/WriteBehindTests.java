@@ -0,0 +1,166 @@
+package edu.tamu.tcat.zotero;
+
+import static edu.tamu.tcat.zotero.ZoteroCommandExecutorTests.respond;
+import static edu.tamu.tcat.zotero.ZoteroTestServer.JSON;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.tamu.tcat.zotero.basic.v3.BasicEditItemCommand;
+import edu.tamu.tcat.zotero.basic.v3.BasicEditItemCommand.EditItemMutator;
+import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.ZoteroClientService;
+import edu.tamu.tcat.zotero.types.ItemFieldType;
+import edu.tamu.tcat.zotero.types.ItemType;
+
+/**
+ * Defers item writes to a local HTTP server that simulates the Zotero API's multi-object writes.
+ */
+public class WriteBehindTests
+{
+   private final ObjectMapper mapper = new ObjectMapper();
+   private final List<List<Map<String, Object>>> requests = new CopyOnWriteArrayList<>();
+
+   private volatile CountDownLatch release = new CountDownLatch(0);
+
+   private ZoteroTestServer server;
+   private ZoteroClientService client;
+   private BasicZoteroLibrary library;
+   private ItemType book;
+   private ItemFieldType title;
+
+   @Before
+   public void setup() throws Exception
+   {
+      server = new ZoteroTestServer();
+      server.createContext("/users/1/items", exchange -> {
+         List<Map<String, Object>> items;
+         try (InputStream in = exchange.getRequestBody())
+         {
+            items = mapper.readValue(in, new TypeReference<List<Map<String, Object>>>(){});
+         }
+         requests.add(items);
+         try
+         {
+            release.await(5, TimeUnit.SECONDS);
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+         }
+         respond(exchange, 200, writeResponse(items), "Content-Type", JSON);
+      });
+      server.start();
+
+      client = server.getClient();
+      library = server.getLibrary();
+      book = client.getTypeProvider().getItemType("book");
+      title = book.getFields().get(0);
+   }
+
+   @After
+   public void tearDown()
+   {
+      server.stop();
+   }
+
+   @Test
+   public void mergesRepeatedEdits() throws Exception
+   {
+      library.setWriteBehind(50, 200, TimeUnit.MILLISECONDS);
+
+      CompletableFuture<Item> first = library.saveItem(edit("ITEM0001", 5, "First"));
+      CompletableFuture<Item> second = library.saveItem(edit("ITEM0001", 5, "Second"));
+      CompletableFuture<Item> third = library.saveItem(edit("ITEM0001", 5, "Third"));
+      CompletableFuture<Item> other = library.saveItem(edit("ITEM0002", 3, "Other"));
+
+      Item item = third.get(5, TimeUnit.SECONDS);
+      assertEquals("Third", item.getFieldValue(title));
+      assertEquals(6, item.getVersion());
+      assertEquals(item, first.get(5, TimeUnit.SECONDS));
+      assertEquals(item, second.get(5, TimeUnit.SECONDS));
+      assertEquals("Other", other.get(5, TimeUnit.SECONDS).getFieldValue(title));
+
+      // all edits are written with a single request
+      assertEquals(1, requests.size());
+      assertEquals(2, requests.get(0).size());
+   }
+
+   @Test
+   public void writesEditsMadeDuringWriteWithNewVersion() throws Exception
+   {
+      library.setWriteBehind(1, 1, TimeUnit.HOURS);
+      release = new CountDownLatch(1);
+
+      CompletableFuture<Item> first = library.saveItem(edit("ITEM0001", 5, "First"));
+      CompletableFuture<Item> second = library.saveItem(edit("ITEM0001", 5, "Second"));
+      release.countDown();
+
+      assertEquals(6, first.get(5, TimeUnit.SECONDS).getVersion());
+
+      // the second edit is held until the first has been written, then uses its version
+      Item item = second.get(5, TimeUnit.SECONDS);
+      assertEquals("Second", item.getFieldValue(title));
+      assertEquals(7, item.getVersion());
+      assertEquals(2, requests.size());
+   }
+
+   @Test
+   public void flushesPendingWritesOnClose() throws Exception
+   {
+      library.setWriteBehind(50, 1, TimeUnit.HOURS);
+
+      CompletableFuture<Item> result = library.saveItem(edit("ITEM0001", 5, "Pending"));
+      assertTrue(requests.isEmpty());
+
+      server.closeExecutor();
+
+      assertTrue(result.isDone());
+      assertEquals("Pending", result.get().getFieldValue(title));
+      assertEquals(1, requests.size());
+   }
+
+   private EditItemMutator edit(String key, int version, String value)
+   {
+      EditItemMutator mutator = new BasicEditItemCommand(library).new EditItemMutator();
+      mutator.setKey(key);
+      mutator.setVersion(version);
+      mutator.setItemType(book);
+      mutator.setField(title, value);
+      return mutator;
+   }
+
+   /**
+    * Saves every item, incrementing its version.
+    */
+   private String writeResponse(List<Map<String, Object>> items)
+   {
+      StringBuilder successful = new StringBuilder();
+      for (int i = 0; i < items.size(); i++)
+      {
+         Map<String, Object> item = items.get(i);
+         int version = ((Number)item.get("version")).intValue() + 1;
+         successful.append(successful.length() == 0 ? "" : ",")
+                   .append("\"").append(i).append("\":{\"key\":\"").append(item.get("key")).append("\",\"version\":").append(version).append(",")
+                   .append("\"library\":{\"type\":\"user\",\"id\":1},\"links\":{},\"meta\":{},")
+                   .append("\"data\":{\"key\":\"").append(item.get("key")).append("\",\"version\":").append(version).append(",\"itemType\":\"book\",")
+                   .append("\"title\":\"").append(item.get("title")).append("\",\"creators\":[],\"tags\":[],\"collections\":[]}}");
+      }
+
+      return "{\"successful\":{" + successful + "},\"success\":{},\"unchanged\":{},\"failed\":{}}";
+   }
+}
@@ -0,0 +1,649 @@
+package edu.tamu.tcat.zotero;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.tamu.tcat.zotero.basic.v3.commands.CommandMetrics;
+import edu.tamu.tcat.zotero.basic.v3.commands.CommandPriority;
+import edu.tamu.tcat.zotero.basic.v3.commands.CommandRunnerContext;
+import edu.tamu.tcat.zotero.basic.v3.commands.CommandStats;
+import edu.tamu.tcat.zotero.basic.v3.commands.CommandTransport;
+import edu.tamu.tcat.zotero.basic.v3.commands.ConnectionSettings;
+import edu.tamu.tcat.zotero.basic.v3.commands.RetryPolicy;
+import edu.tamu.tcat.zotero.basic.v3.commands.TransferStats;
+import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroCommandExecutor;
+
+/**
+ * Exercises the command executor against a local HTTP server.
+ */
+public class ZoteroCommandExecutorTests
+{
+   private HttpServer server;
+   private ZoteroCommandExecutor executor;
+
+   @Before
+   public void setup() throws IOException
+   {
+      server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      server.start();
+
+      URI rootUri = URI.create("http://localhost:" + server.getAddress().getPort());
+      executor = new ZoteroCommandExecutor(rootUri, 5);
+      executor.setRetryPolicy(new RetryPolicy(3, 10, 50, TimeUnit.MILLISECONDS));
+   }
+
+   @After
+   public void tearDown()
+   {
+      executor.close();
+      server.stop(0);
+   }
+
+   @Test
+   public void retriesThrottledCommands() throws Exception
+   {
+      AtomicInteger requests = new AtomicInteger();
+      server.createContext("/throttled", exchange -> {
+         if (requests.incrementAndGet() < 3)
+            respond(exchange, 429, "slow down", "Retry-After", "0");
+         else
+            respond(exchange, 200, "ok");
+      });
+
+      Future<String> result = executor.submit(new TextCommand("throttled", "key"));
+
+      assertEquals("200:ok", result.get(5, TimeUnit.SECONDS));
+      assertEquals(3, requests.get());
+   }
+
+   @Test
+   public void stopsRetryingWhenBudgetIsExhausted() throws Exception
+   {
+      AtomicInteger requests = new AtomicInteger();
+      server.createContext("/unavailable", exchange -> {
+         requests.incrementAndGet();
+         respond(exchange, 503, "unavailable");
+      });
+
+      Future<String> result = executor.submit(new TextCommand("unavailable", "key"));
+
+      assertEquals("503:unavailable", result.get(5, TimeUnit.SECONDS));
+      assertEquals(4, requests.get());
+   }
+
+   @Test
+   public void pausesDispatchForBackoff() throws Exception
+   {
+      List<Long> received = new CopyOnWriteArrayList<>();
+      server.createContext("/backoff", exchange -> {
+         received.add(Long.valueOf(System.nanoTime()));
+         respond(exchange, 200, "ok", "Backoff", "1");
+      });
+
+      executor.submit(new TextCommand("backoff", "key")).get(5, TimeUnit.SECONDS);
+      executor.submit(new TextCommand("backoff", "key")).get(5, TimeUnit.SECONDS);
+
+      long elapsed = received.get(1).longValue() - received.get(0).longValue();
+      assertTrue("Expected dispatch to pause for back-off", elapsed >= TimeUnit.MILLISECONDS.toNanos(900));
+
+      // other API keys are not affected
+      long start = System.nanoTime();
+      executor.submit(new TextCommand("backoff", "other")).get(5, TimeUnit.SECONDS);
+      assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(900));
+   }
+
+   @Test
+   public void limitsRequestRatePerKey() throws Exception
+   {
+      List<Long> received = new CopyOnWriteArrayList<>();
+      server.createContext("/limited", exchange -> {
+         received.add(Long.valueOf(System.nanoTime()));
+         respond(exchange, 200, "ok");
+      });
+
+      executor.setRateLimit(5, 1);
+
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 3; i++)
+         results.add(executor.submit(new TextCommand("limited", "key")));
+
+      for (Future<String> result : results)
+         assertEquals("200:ok", result.get(5, TimeUnit.SECONDS));
+
+      long first = received.stream().mapToLong(Long::longValue).min().getAsLong();
+      long last = received.stream().mapToLong(Long::longValue).max().getAsLong();
+      assertTrue("Expected requests to be spaced by the rate limit", last - first >= TimeUnit.MILLISECONDS.toNanos(350));
+   }
+
+   @Test
+   public void cancelledCommandsDoNotUseRateLimit() throws Exception
+   {
+      server.createContext("/limited", exchange -> respond(exchange, 200, "ok"));
+      executor.submit(new TextCommand("limited", "key")).get(5, TimeUnit.SECONDS);
+
+      // the first request takes the only token; the next becomes available after 500 ms
+      executor.setRateLimit(2, 1);
+      long start = System.nanoTime();
+      assertEquals("200:ok", executor.submit(new TextCommand("limited", "key")).get(5, TimeUnit.SECONDS));
+
+      // a command cancelled while waiting for the rate limit leaves the next token free
+      Future<String> cancelled = executor.submit(new TextCommand("limited", "key"));
+      Thread.sleep(100);
+      cancelled.cancel(true);
+      assertEquals("200:ok", executor.submit(new TextCommand("limited", "key")).get(5, TimeUnit.SECONDS));
+
+      long elapsed = System.nanoTime() - start;
+      assertTrue("Expected the next token to be used: " + elapsed, elapsed < TimeUnit.MILLISECONDS.toNanos(900));
+   }
+
+   static void respond(HttpExchange exchange, int status, String body, String... headers) throws IOException
+   {
+      for (int i = 0; i + 1 < headers.length; i += 2)
+         exchange.getResponseHeaders().add(headers[i], headers[i + 1]);
+
+      byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(status, bytes.length);
+      try (OutputStream out = exchange.getResponseBody())
+      {
+         out.write(bytes);
+      }
+   }
+   @Test
+   public void reusesConnections() throws Exception
+   {
+      List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+      server.createContext("/pooled", exchange -> {
+         clientPorts.add(Integer.valueOf(exchange.getRemoteAddress().getPort()));
+         respond(exchange, 200, "ok");
+      });
+
+      for (int i = 0; i < 5; i++)
+         assertEquals("200:ok", executor.submit(new TextCommand("pooled", "key")).get(5, TimeUnit.SECONDS));
+
+      assertEquals("Expected sequential requests to share a connection", 1, new HashSet<>(clientPorts).size());
+   }
+
+   @Test
+   public void enforcesReadTimeout() throws Exception
+   {
+      server.createContext("/slow", exchange -> {
+         try
+         {
+            Thread.sleep(1000);
+         }
+         catch (InterruptedException ex)
+         {
+            Thread.currentThread().interrupt();
+         }
+         respond(exchange, 200, "ok");
+      });
+
+      URI rootUri = URI.create("http://localhost:" + server.getAddress().getPort());
+      ConnectionSettings settings = ConnectionSettings.DEFAULT.withReadTimeout(200, TimeUnit.MILLISECONDS);
+      ZoteroCommandExecutor impatient = new ZoteroCommandExecutor(rootUri, 1, settings);
+      try
+      {
+         impatient.submit(new TextCommand("slow", "key")).get(5, TimeUnit.SECONDS);
+         fail("Expected the request to time out");
+      }
+      catch (ExecutionException ex)
+      {
+         // expected
+      }
+      finally
+      {
+         impatient.close();
+      }
+   }
+
+   @Test
+   public void asyncTransportIsLimitedByConnections() throws Exception
+   {
+      int connections = 4;
+      int concurrent = 20;
+      AtomicInteger inFlight = new AtomicInteger();
+      AtomicInteger maxInFlight = new AtomicInteger();
+      CountDownLatch arrived = new CountDownLatch(connections);
+      HttpServer concurrentServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      concurrentServer.setExecutor(Executors.newCachedThreadPool());
+      concurrentServer.createContext("/concurrent", exchange -> {
+         maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+         arrived.countDown();
+         try
+         {
+            // hold the first responses until every connection is in use
+            arrived.await(5, TimeUnit.SECONDS);
+         }
+         catch (InterruptedException ex)
+         {
+            Thread.currentThread().interrupt();
+         }
+         inFlight.decrementAndGet();
+         respond(exchange, 200, arrived.getCount() == 0 ? "ok" : "timeout");
+      });
+      concurrentServer.start();
+
+      // a single dispatch thread issues requests on each of the connections
+      URI rootUri = URI.create("http://localhost:" + concurrentServer.getAddress().getPort());
+      ConnectionSettings settings = ConnectionSettings.DEFAULT.withPoolSize(connections, connections);
+      ZoteroCommandExecutor async = new ZoteroCommandExecutor(rootUri, 1, settings);
+      async.setTransport(CommandTransport.async());
+      try
+      {
+         List<Future<String>> results = new ArrayList<>();
+         for (int i = 0; i < concurrent; i++)
+            results.add(async.submit(new TextCommand("concurrent", "key")));
+
+         for (Future<String> result : results)
+            assertEquals("200:ok", result.get(10, TimeUnit.SECONDS));
+
+         assertEquals(connections, maxInFlight.get());
+
+         // the client's request threads are bounded by the number of connections
+         long requestThreads = Thread.getAllStackTraces().keySet().stream()
+               .filter(t -> t.getName().startsWith("jersey-client-async-executor"))
+               .count();
+         assertTrue("Request threads: " + requestThreads, requestThreads > 0 && requestThreads <= connections);
+      }
+      finally
+      {
+         async.close();
+         concurrentServer.stop(0);
+      }
+   }
+
+   @Test
+   public void runsCommandsOnVirtualThreads() throws Exception
+   {
+      URI rootUri = URI.create("http://localhost:" + server.getAddress().getPort());
+      if (!ZoteroCommandExecutor.isVirtualThreadSupported())
+      {
+         try
+         {
+            ZoteroCommandExecutor.withVirtualThreads(rootUri, 10, ConnectionSettings.DEFAULT);
+            fail("Expected virtual threads to be unsupported");
+         }
+         catch (UnsupportedOperationException ex)
+         {
+            // expected on Java versions prior to 21
+         }
+         return;
+      }
+
+      AtomicInteger requests = new AtomicInteger();
+      server.createContext("/virtual", exchange -> {
+         if (requests.incrementAndGet() < 2)
+            respond(exchange, 503, "unavailable", "Retry-After", "0");
+         else
+            respond(exchange, 200, "ok");
+      });
+
+      ZoteroCommandExecutor virtual = ZoteroCommandExecutor.withVirtualThreads(rootUri, 10, ConnectionSettings.DEFAULT);
+      virtual.setRetryPolicy(new RetryPolicy(3, 10, 50, TimeUnit.MILLISECONDS));
+      try
+      {
+         assertEquals("200:ok", virtual.submit(new TextCommand("virtual", "key")).get(5, TimeUnit.SECONDS));
+         assertEquals(2, requests.get());
+      }
+      finally
+      {
+         virtual.close();
+      }
+   }
+
+   @Test
+   public void decodesCompressedResponses() throws Exception
+   {
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < 100; i++)
+         text.append("highly compressible abstract note ");
+      String body = text.toString();
+
+      List<String> acceptEncodings = new CopyOnWriteArrayList<>();
+      server.createContext("/compressed", exchange -> {
+         String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+         acceptEncodings.add(String.valueOf(accept));
+
+         ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+         try (GZIPOutputStream gzip = new GZIPOutputStream(compressed))
+         {
+            gzip.write(body.getBytes(StandardCharsets.UTF_8));
+         }
+
+         byte[] bytes = compressed.toByteArray();
+         exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+         exchange.sendResponseHeaders(200, bytes.length);
+         try (OutputStream out = exchange.getResponseBody())
+         {
+            out.write(bytes);
+         }
+      });
+
+      assertEquals("200:" + body, executor.submit(new TextCommand("compressed", "key")).get(5, TimeUnit.SECONDS));
+      assertTrue("Expected gzip to be accepted: " + acceptEncodings, acceptEncodings.get(0).contains("gzip"));
+
+      TransferStats stats = executor.getTransferStats();
+      assertEquals(1, stats.getResponseCount());
+      assertEquals(1, stats.getCompressedResponseCount());
+      assertEquals(body.length(), stats.getDecompressedBytes());
+      assertTrue("Expected fewer bytes to be received: " + stats, stats.getCompressedBytes() < body.length() / 10);
+   }
+
+   @Test
+   public void recordsCommandMetrics() throws Exception
+   {
+      AtomicInteger requests = new AtomicInteger();
+      server.createContext("/measured", exchange -> {
+         if (requests.incrementAndGet() < 3)
+            respond(exchange, 429, "slow down", "Retry-After", "0");
+         else
+            respond(exchange, 200, "measured");
+      });
+
+      assertEquals("200:measured", executor.submit(new TextCommand("measured", "key")).get(5, TimeUnit.SECONDS));
+
+      CommandMetrics metrics = executor.getMetrics();
+      CommandStats stats = metrics.getStats(TextCommand.class.getName(), null);
+      assertEquals(1, stats.getCount());
+      assertEquals(0, stats.getFailureCount());
+      assertEquals(2, stats.getRetryCount());
+      assertEquals(1, stats.getQueueWait().getCount());
+      assertEquals(3, stats.getLatency().getCount());
+      assertEquals(1, stats.getDecodeTime().getCount());
+      assertEquals(Long.valueOf(2), stats.getStatusCounts().get(Integer.valueOf(429)));
+      assertEquals(Long.valueOf(1), stats.getStatusCounts().get(Integer.valueOf(200)));
+      assertEquals("measured".length(), stats.getDecodedBytes());
+
+      MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+      Set<ObjectName> names = mbeans.queryNames(new ObjectName(CommandMetrics.DOMAIN
+            + ":type=CommandMetrics,executor=" + ObjectName.quote(metrics.getName()) + ",*"), null);
+      assertEquals(1, names.size());
+      assertEquals(Long.valueOf(1), mbeans.getAttribute(names.iterator().next(), "Count"));
+   }
+
+   @Test
+   public void reportsQueuedAndInFlightCommands() throws Exception
+   {
+      CountDownLatch release = new CountDownLatch(1);
+      server.createContext("/blocked", exchange -> {
+         try
+         {
+            release.await(5, TimeUnit.SECONDS);
+         }
+         catch (InterruptedException ex)
+         {
+            Thread.currentThread().interrupt();
+         }
+         respond(exchange, 200, "ok");
+      });
+
+      CommandMetrics metrics = executor.getMetrics();
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 3; i++)
+         results.add(executor.submit(new TextCommand("blocked", "key")));
+
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (metrics.getInFlightCount() < 3 && System.nanoTime() < deadline)
+         Thread.sleep(10);
+
+      assertEquals(3, metrics.getInFlightCount());
+      assertEquals(0, metrics.getQueuedCount());
+      assertEquals(5, metrics.getPoolSize());
+
+      release.countDown();
+      for (Future<String> result : results)
+         assertEquals("200:ok", result.get(5, TimeUnit.SECONDS));
+
+      // gauges are updated as results are completed, so may lag slightly behind callers
+      deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (metrics.getCompletedCount() < 3 && System.nanoTime() < deadline)
+         Thread.sleep(10);
+
+      assertEquals(0, metrics.getInFlightCount());
+      assertEquals(3, metrics.getCompletedCount());
+   }
+
+   @Test
+   public void logsSlowCommands() throws Exception
+   {
+      server.createContext("/sluggish", exchange -> {
+         try
+         {
+            Thread.sleep(100);
+         }
+         catch (InterruptedException ex)
+         {
+            Thread.currentThread().interrupt();
+         }
+         respond(exchange, 200, "ok");
+      });
+
+      List<String> messages = new CopyOnWriteArrayList<>();
+      Handler handler = new Handler()
+      {
+         @Override
+         public void publish(LogRecord record)
+         {
+            messages.add(record.getMessage());
+         }
+
+         @Override
+         public void flush()
+         {
+         }
+
+         @Override
+         public void close()
+         {
+         }
+      };
+
+      Logger logger = Logger.getLogger(ZoteroCommandExecutor.class.getName());
+      logger.addHandler(handler);
+      try
+      {
+         executor.setSlowCommandThreshold(50, TimeUnit.MILLISECONDS);
+         executor.submit(new TextCommand("sluggish", "key")).get(5, TimeUnit.SECONDS);
+
+         long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+         while (messages.isEmpty() && System.nanoTime() < deadline)
+            Thread.sleep(10);
+      }
+      finally
+      {
+         logger.removeHandler(handler);
+      }
+
+      assertEquals(1, executor.getMetrics().getSlowCount());
+      assertEquals(1, messages.size());
+      assertTrue(messages.get(0), messages.get(0).contains("GET http://localhost:" + server.getAddress().getPort() + "/sluggish"));
+   }
+
+   @Test
+   public void abortsCommandsPastTheirDeadline() throws Exception
+   {
+      CountDownLatch arrived = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      HttpServer stallingServer = createStallingServer(arrived, release);
+
+      URI rootUri = URI.create("http://localhost:" + stallingServer.getAddress().getPort());
+      ZoteroCommandExecutor single = new ZoteroCommandExecutor(rootUri, 1);
+      try
+      {
+         long start = System.nanoTime();
+         CompletableFuture<String> stalled = single.submit(new TextCommand("stalled", "key")
+         {
+            @Override
+            public long getTimeout()
+            {
+               return TimeUnit.MILLISECONDS.toNanos(200);
+            }
+         });
+
+         try
+         {
+            stalled.get(5, TimeUnit.SECONDS);
+            fail("Expected the command to time out");
+         }
+         catch (ExecutionException ex)
+         {
+            assertTrue(String.valueOf(ex.getCause()), ex.getCause() instanceof TimeoutException);
+         }
+
+         assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+
+         // the only dispatch thread is released although the server has not responded
+         assertEquals("200:ok", single.submit(new TextCommand("quick", "key")).get(2, TimeUnit.SECONDS));
+      }
+      finally
+      {
+         release.countDown();
+         single.close();
+         stallingServer.stop(0);
+      }
+   }
+
+   @Test
+   public void cancellationAbortsRequests() throws Exception
+   {
+      CountDownLatch arrived = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      HttpServer stallingServer = createStallingServer(arrived, release);
+
+      URI rootUri = URI.create("http://localhost:" + stallingServer.getAddress().getPort());
+      ZoteroCommandExecutor single = new ZoteroCommandExecutor(rootUri, 1,
+            ConnectionSettings.DEFAULT.withPoolSize(1, 1));
+      single.setTransport(CommandTransport.async());
+      try
+      {
+         CompletableFuture<String> stalled = single.submit(new TextCommand("stalled", "key"));
+         assertTrue(arrived.await(5, TimeUnit.SECONDS));
+         assertTrue(stalled.cancel(true));
+
+         // the only pooled connection is released although the server has not responded
+         assertEquals("200:ok", single.submit(new TextCommand("quick", "key")).get(2, TimeUnit.SECONDS));
+      }
+      finally
+      {
+         release.countDown();
+         single.close();
+         stallingServer.stop(0);
+      }
+   }
+
+   /**
+    * Creates a server that holds requests for {@code /stalled} until released and responds
+    * immediately to requests for {@code /quick}.
+    */
+   private static HttpServer createStallingServer(CountDownLatch arrived, CountDownLatch release) throws IOException
+   {
+      HttpServer stallingServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      stallingServer.setExecutor(Executors.newCachedThreadPool());
+      stallingServer.createContext("/stalled", exchange -> {
+         arrived.countDown();
+         try
+         {
+            release.await(10, TimeUnit.SECONDS);
+         }
+         catch (InterruptedException ex)
+         {
+            Thread.currentThread().interrupt();
+         }
+         respond(exchange, 200, "late");
+      });
+      stallingServer.createContext("/quick", exchange -> respond(exchange, 200, "ok"));
+      stallingServer.start();
+      return stallingServer;
+   }
+
+   /**
+    * Simple command that returns the status code and body of the response.
+    */
+   static class TextCommand implements CommandRunnerContext<String>
+   {
+      private final String path;
+      private final String apiKey;
+      private final CommandPriority priority;
+
+      TextCommand(String path, String apiKey)
+      {
+         this(path, apiKey, CommandPriority.NORMAL);
+      }
+
+      TextCommand(String path, String apiKey, CommandPriority priority)
+      {
+         this.path = path;
+         this.apiKey = apiKey;
+         this.priority = priority;
+      }
+
+      @Override
+      public Invocation configure(WebTarget apiRoot)
+      {
+         return apiRoot.path(path).request().buildGet();
+      }
+
+      @Override
+      public String handleResponse(Response response)
+      {
+         return response.getStatus() + ":" + response.readEntity(String.class);
+      }
+
+      @Override
+      public URI getUri(URI zoteroEndpoint)
+      {
+         return zoteroEndpoint;
+      }
+
+      @Override
+      public String getApiKey()
+      {
+         return apiKey;
+      }
+
+      @Override
+      public CommandPriority getPriority()
+      {
+         return priority;
+      }
+   }
+}
@@ -0,0 +1,132 @@
+package edu.tamu.tcat.zotero;
+
+import static edu.tamu.tcat.zotero.ZoteroCommandExecutorTests.respond;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.tamu.tcat.zotero.basic.v3.BasicUserAccount;
+import edu.tamu.tcat.zotero.basic.v3.BasicZoteroLibrary;
+import edu.tamu.tcat.zotero.basic.v3.ZoteroClientService;
+import edu.tamu.tcat.zotero.basic.v3.commands.ZoteroCommandExecutor;
+
+/**
+ * A local HTTP server that simulates the Zotero API for tests of the user library
+ * {@code users/1}. The item type schema is served with a single {@code book} type that has a
+ * {@code title} field and an {@code author} creator type; tests register handlers for the
+ * library resources they exercise before calling {@link #start()}.
+ */
+class ZoteroTestServer
+{
+   static final String JSON = "application/json";
+
+   private final HttpServer server;
+   private ZoteroCommandExecutor executor;
+   private ZoteroClientService client;
+   private BasicZoteroLibrary library;
+
+   ZoteroTestServer() throws IOException
+   {
+      server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      server.createContext("/itemTypes", exchange ->
+            respond(exchange, 200, "[{\"itemType\":\"book\",\"localized\":\"Book\"}]", "Content-Type", JSON));
+      server.createContext("/itemTypeFields", exchange ->
+            respond(exchange, 200, "[{\"field\":\"title\",\"localized\":\"Title\"}]", "Content-Type", JSON));
+      server.createContext("/itemTypeCreatorTypes", exchange ->
+            respond(exchange, 200, "[{\"creatorType\":\"author\",\"localized\":\"Author\"}]", "Content-Type", JSON));
+   }
+
+   /**
+    * Registers a handler for requests to the supplied path. Must be called before the server
+    * is started.
+    */
+   void createContext(String path, HttpHandler handler)
+   {
+      server.createContext(path, handler);
+   }
+
+   /**
+    * Sets the executor used to handle requests. By default, requests are handled one at a
+    * time. Must be called before the server is started.
+    */
+   void setExecutor(Executor executor)
+   {
+      server.setExecutor(executor);
+   }
+
+   void start() throws IOException
+   {
+      start(client -> {});
+   }
+
+   /**
+    * Starts the server and creates a client service that issues requests to it.
+    *
+    * @param configure Configures the client service before it is activated.
+    */
+   void start(Consumer<ZoteroClientService> configure) throws IOException
+   {
+      server.start();
+
+      executor = new ZoteroCommandExecutor(getUri(), 5);
+      client = new ZoteroClientService();
+      client.bind(executor);
+      configure.accept(client);
+      client.activate();
+
+      library = newLibrary();
+   }
+
+   URI getUri()
+   {
+      return URI.create("http://localhost:" + server.getAddress().getPort());
+   }
+
+   ZoteroCommandExecutor getExecutor()
+   {
+      return executor;
+   }
+
+   ZoteroClientService getClient()
+   {
+      return client;
+   }
+
+   /**
+    * @return The library {@code users/1}, accessed using the API key {@code key}.
+    */
+   BasicZoteroLibrary getLibrary()
+   {
+      return library;
+   }
+
+   /**
+    * @return A new instance of the library {@code users/1}.
+    */
+   BasicZoteroLibrary newLibrary()
+   {
+      return (BasicZoteroLibrary)new BasicUserAccount("1", "key", client).getUserLibrary();
+   }
+
+   /**
+    * Closes the executor, unless the test has already done so.
+    */
+   void closeExecutor()
+   {
+      if (executor != null)
+         executor.close();
+      executor = null;
+   }
+
+   void stop()
+   {
+      closeExecutor();
+      server.stop(0);
+   }
+}